@@ -0,0 +1,78 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import generator.BatchRunner;
+import generator.BatchRunner.Job;
+import generator.BatchRunner.Result;
+
+/**
+ * Generates every race listed in a manifest from the command line, using a
+ * pool of worker threads.
+ *
+ * Usage: {@code BatchMain <manifest> [--threads <n>]} where the manifest format
+ * is described in {@link BatchRunner} and the number of threads defaults to the
+ * number of available processors. Exits with 1 if any race failed.
+ */
+public final class BatchMain {
+
+    private BatchMain() {
+    }
+
+    /**
+     * The main method for batch generation.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length != 1 && !(args.length == 3
+                && "--threads".equals(args[1]))) {
+            System.err.println("Usage: BatchMain <manifest> [--threads <n>]");
+            System.exit(2);
+        }
+
+        try {
+            final int threads = args.length == 3 ? Integer.parseInt(args[2])
+                    : Runtime.getRuntime().availableProcessors();
+            final List<Job> jobs = BatchRunner.readManifest(new File(args[0]));
+
+            final long start = System.nanoTime();
+            final List<Result> results = BatchRunner.run(jobs, threads,
+                    BatchMain::report);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+
+            int failed = 0;
+            for (Result result : results) {
+                if (!result.succeeded()) {
+                    failed++;
+                }
+            }
+            System.out.println(String.format(
+                    "Generated %d of %d races in %.2f s on %d threads",
+                    results.size() - failed, results.size(), seconds,
+                    threads));
+            if (failed > 0) {
+                System.exit(1);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not run batch: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    private static synchronized void report(final Result theResult) {
+        if (theResult.succeeded()) {
+            System.out.println(String.format("%s (%.2f s)",
+                    theResult.getJob().getOutput(),
+                    theResult.getElapsedNanos() / 1e9));
+        } else {
+            System.err.println("FAILED " + theResult.getJob() + ": "
+                    + theResult.getFailure());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+
+import output.BinaryRaceReader;
+import output.BinaryRaceWriter;
+import output.ChannelRaceFile;
+import output.MappedRaceReader;
+import output.RaceSink;
+import output.TextRaceWriter;
+
+/**
+ * Converts a race file between the binary and text race file formats. A
+ * binary race (.rceb) is converted back to text, anything else is read as a
+ * text race, in parallel by {@link MappedRaceReader}, and written as binary
+ * as it is read, so races bigger than the heap can be converted.
+ *
+ * Usage: {@code ConvertMain <input.rceb> <output.rce>} or
+ * {@code ConvertMain <input.rce> <output.rceb>}
+ */
+public final class ConvertMain {
+
+    private ConvertMain() {
+    }
+
+    /**
+     * The main method for converting races.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: ConvertMain <input.rceb> <output.rce> "
+                    + "| <input.rce> <output.rceb>");
+            System.exit(2);
+        }
+
+        final File input = new File(args[0]);
+        final File output = new File(args[1]);
+        try {
+            if (input.getName().endsWith(".rceb")) {
+                try (RaceSink sink = new TextRaceWriter(
+                        new ChannelRaceFile(output))) {
+                    BinaryRaceReader.read(input, sink);
+                }
+            } else {
+                toBinary(input, output);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not convert race: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void toBinary(final File theInput, final File theOutput)
+            throws IOException {
+        try (MappedRaceReader reader = MappedRaceReader.open(theInput);
+                RaceSink sink = new BinaryRaceWriter(
+                        new ChannelRaceFile(theOutput))) {
+            reader.sendHeader(sink);
+            reader.readInOrder(Runtime.getRuntime().availableProcessors(),
+                    sink);
+            sink.finish(reader.getTime());
+        }
+    }
+}
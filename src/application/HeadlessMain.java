@@ -0,0 +1,136 @@
+package application;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+import generator.RaceGenerator;
+import generator.RaceSpec;
+import metrics.RaceMetrics;
+import output.ChannelRaceFile;
+import output.GzipRaceFile;
+import output.MappedRaceFile;
+import output.RaceFile;
+import output.RaceFormat;
+import output.RaceSink;
+import output.TeeSink;
+
+/**
+ * Generates a race file from the command line without starting JavaFX.
+ *
+ * Usage: {@code HeadlessMain <spec.properties> <output.rce>
+ * [--binary <output.rceb>] [--mmap | --gzip] [--metrics] [key=value...]}
+ * where any
+ * key=value pairs override the values in the spec file (see {@link RaceSpec}
+ * for the keys), --binary also writes the race in the binary format, --mmap
+ * writes the files through memory mapped regions, which is faster for very
+ * long races, and --gzip compresses the files on every core as they are
+ * written.
+ *
+ * The race is measured while it runs (see {@link RaceMetrics}) and can be
+ * watched over JMX under {@code racegen:type=Race}, or recorded with JFR.
+ * --metrics also prints the numbers to standard error at the end.
+ */
+public final class HeadlessMain {
+
+    private HeadlessMain() {
+    }
+
+    /**
+     * The main method for headless generation.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: HeadlessMain <spec.properties> "
+                    + "<output.rce> [--binary <output.rceb>] "
+                    + "[--mmap | --gzip] [--metrics] [key=value...]");
+            System.exit(2);
+        }
+
+        try {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(args[0])) {
+                properties.load(in);
+            }
+            File binaryOutput = null;
+            boolean mapped = false;
+            boolean compressed = false;
+            boolean report = false;
+            for (int i = 2; i < args.length; i++) {
+                if ("--binary".equals(args[i]) && i + 1 < args.length) {
+                    binaryOutput = new File(args[++i]);
+                    continue;
+                }
+                if ("--mmap".equals(args[i])) {
+                    mapped = true;
+                    continue;
+                }
+                if ("--gzip".equals(args[i])) {
+                    compressed = true;
+                    continue;
+                }
+                if ("--metrics".equals(args[i])) {
+                    report = true;
+                    continue;
+                }
+                final int split = args[i].indexOf('=');
+                if (split <= 0) {
+                    throw new IllegalArgumentException(
+                            "override must be key=value but was " + args[i]);
+                }
+                properties.setProperty(args[i].substring(0, split),
+                        args[i].substring(split + 1));
+            }
+
+            if (mapped && compressed) {
+                throw new IllegalArgumentException(
+                        "--mmap and --gzip can't be used together");
+            }
+
+            final RaceSpec spec = RaceSpec.fromProperties(properties,
+                    RaceSpec.directoryOf(new File(args[0])));
+            // Opening the outputs truncates them, so check the spec first.
+            spec.validate();
+            final RaceMetrics metrics = new RaceMetrics(spec.getName());
+            final List<RaceSink> sinks = new ArrayList<>();
+            sinks.add(RaceFormat.TEXT.newWriter(metrics.meter(
+                    open(new File(args[1]), mapped, compressed))));
+            if (binaryOutput != null) {
+                sinks.add(RaceFormat.BINARY.newWriter(metrics.meter(
+                        open(binaryOutput, mapped, compressed))));
+            }
+            metrics.register();
+            try (RaceSink sink = new TeeSink(sinks)) {
+                RaceGenerator.generate(spec, sink, null, metrics);
+            } finally {
+                metrics.unregister();
+            }
+            if (report) {
+                System.err.println(metrics.summary());
+            }
+        } catch (IOException | UncheckedIOException
+                | IllegalArgumentException e) {
+            System.err.println("Could not generate race: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static RaceFile open(final File theFile, final boolean theMapped,
+            final boolean theCompressed) throws IOException {
+        if (theCompressed) {
+            return new GzipRaceFile(theFile,
+                    Runtime.getRuntime().availableProcessors(),
+                    Deflater.DEFAULT_COMPRESSION);
+        }
+        return theMapped ? new MappedRaceFile(theFile)
+                : new ChannelRaceFile(theFile);
+    }
+}
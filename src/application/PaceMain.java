@@ -0,0 +1,170 @@
+package application;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+
+import generator.PacedRace;
+import generator.RaceSpec;
+import output.RaceFormat;
+import output.RaceSink;
+import output.StreamRaceFile;
+import util.LatencyHistogram;
+
+/**
+ * Writes a race to standard output in real time, or a multiple of it, for
+ * feeding a live pipeline.
+ *
+ * Usage: {@code PaceMain <spec.properties> [--speed <factor>]
+ * [--buffer <ticks>] [--format text | binary] [key=value...]} where any
+ * key=value pairs override the values in the spec file. The speed is race
+ * milliseconds per wall clock millisecond and defaults to 1. The output
+ * can't be rewritten, so the header has the race's expected time, and the
+ * actual time is reported at the end on standard error, along with how late
+ * the ticks were and how long the race waited for the output.
+ */
+public final class PaceMain {
+
+    private static final int DEFAULT_BUFFER_TICKS = 1024;
+
+    private PaceMain() {
+    }
+
+    /**
+     * The main method for paced generation.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: PaceMain <spec.properties> "
+                    + "[--speed <factor>] [--buffer <ticks>] "
+                    + "[--format text | binary] [key=value...]");
+            System.exit(2);
+        }
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (FileOutputStream out = new FileOutputStream(FileDescriptor.out)) {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(args[0])) {
+                properties.load(in);
+            }
+            double speed = 1;
+            int bufferTicks = DEFAULT_BUFFER_TICKS;
+            RaceFormat format = RaceFormat.TEXT;
+            for (int i = 1; i < args.length; i++) {
+                if ("--speed".equals(args[i]) && i + 1 < args.length) {
+                    speed = Double.parseDouble(args[++i]);
+                    continue;
+                }
+                if ("--buffer".equals(args[i]) && i + 1 < args.length) {
+                    bufferTicks = Integer.parseInt(args[++i]);
+                    continue;
+                }
+                if ("--format".equals(args[i]) && i + 1 < args.length) {
+                    format = RaceFormat.fromName(args[++i]);
+                    continue;
+                }
+                final int split = args[i].indexOf('=');
+                if (split <= 0) {
+                    throw new IllegalArgumentException(
+                            "override must be key=value but was " + args[i]);
+                }
+                properties.setProperty(args[i].substring(0, split),
+                        args[i].substring(split + 1));
+            }
+
+            final PacedRace race = new PacedRace(
+                    RaceSpec.fromProperties(properties,
+                            RaceSpec.directoryOf(new File(args[0]))),
+                    speed, executor, bufferTicks);
+            final StreamRaceFile file = new StreamRaceFile(out.getChannel());
+            final EncodingSubscriber output = new EncodingSubscriber(
+                    format.newWriter(file), file);
+            race.subscribe(output);
+            race.run();
+            output.myDone.await();
+            output.myWriter.close();
+            if (output.myFailure != null) {
+                throw new IOException(output.myFailure);
+            }
+
+            System.err.println("Race time " + race.getRaceTime() + " ms");
+            System.err.println("Lateness     " + race.getLateness());
+            System.err.println("Backpressure " + race.getBackpressure());
+            System.err.println("Delivered    " + output.myDelivery);
+        } catch (IOException | UncheckedIOException
+                | IllegalArgumentException e) {
+            System.err.println("Could not pace race: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Encodes each tick and writes it out, asking for the next one only once
+     * it has been written, and records how late each tick got out.
+     */
+    private static final class EncodingSubscriber
+            implements Flow.Subscriber<PacedRace.Tick> {
+
+        private final RaceSink myWriter;
+        private final StreamRaceFile myFile;
+        private final LatencyHistogram myDelivery;
+        private final CountDownLatch myDone;
+        private Flow.Subscription mySubscription;
+        private volatile Throwable myFailure;
+
+        EncodingSubscriber(final RaceSink theWriter,
+                final StreamRaceFile theFile) {
+            myWriter = theWriter;
+            myFile = theFile;
+            myDelivery = new LatencyHistogram();
+            myDone = new CountDownLatch(1);
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription theSubscription) {
+            mySubscription = theSubscription;
+            mySubscription.request(1);
+        }
+
+        @Override
+        public void onNext(final PacedRace.Tick theTick) {
+            try {
+                theTick.sendTo(myWriter);
+                myFile.flush();
+                myDelivery.record(System.nanoTime() - theTick.getDeadline());
+                mySubscription.request(1);
+            } catch (IOException e) {
+                // Usually the reader went away.
+                myFailure = e;
+                mySubscription.cancel();
+                myDone.countDown();
+            }
+        }
+
+        @Override
+        public void onError(final Throwable theFailure) {
+            myFailure = theFailure;
+            myDone.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            myDone.countDown();
+        }
+    }
+}
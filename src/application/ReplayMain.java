@@ -0,0 +1,147 @@
+package application;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Properties;
+
+import generator.RaceSpec;
+import server.FileReplay;
+import server.LiveReplay;
+import server.ReplayServer;
+import server.SlowConsumerPolicy;
+
+/**
+ * Serves a race over TCP on the local machine for load testing race readers.
+ *
+ * Usage: {@code ReplayMain <race.rce | spec.properties> [--port <port>]
+ * [--speed <factor>] [--policy block | drop-telemetry | disconnect]
+ * [--buffer <frames>] [--clients <count>] [key=value...]}. A race file is
+ * replayed to every client from the start, until the server is stopped. A
+ * spec is generated once while it is sent, starting when --clients clients
+ * (1 by default) have connected, with later clients joining part way
+ * through. The server stops once the race is over and every client has had
+ * it; any key=value pairs override the values in the spec file.
+ *
+ * The speed is race milliseconds per wall clock millisecond, so 1 is real
+ * time, and defaults to as fast as the clients read. The policy (block by
+ * default) says what to do with clients that can't keep up, see
+ * {@link SlowConsumerPolicy}, and the buffer is how many frames of up to 16
+ * KiB each generated race client can have waiting.
+ */
+public final class ReplayMain {
+
+    private static final int DEFAULT_PORT = 7878;
+
+    private static final int DEFAULT_BUFFER_FRAMES = 64;
+
+    private ReplayMain() {
+    }
+
+    /**
+     * The main method for replaying races.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayMain <race.rce | spec.properties> "
+                    + "[--port <port>] [--speed <factor>] "
+                    + "[--policy block | drop-telemetry | disconnect] "
+                    + "[--buffer <frames>] [--clients <count>] "
+                    + "[key=value...]");
+            System.exit(2);
+        }
+
+        try {
+            final Properties overrides = new Properties();
+            int port = DEFAULT_PORT;
+            double speed = 0;
+            SlowConsumerPolicy policy = SlowConsumerPolicy.BLOCK;
+            int bufferFrames = DEFAULT_BUFFER_FRAMES;
+            int startClients = 1;
+            for (int i = 1; i < args.length; i++) {
+                if ("--port".equals(args[i]) && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                    continue;
+                }
+                if ("--speed".equals(args[i]) && i + 1 < args.length) {
+                    speed = Double.parseDouble(args[++i]);
+                    continue;
+                }
+                if ("--policy".equals(args[i]) && i + 1 < args.length) {
+                    policy = SlowConsumerPolicy.fromName(args[++i]);
+                    continue;
+                }
+                if ("--buffer".equals(args[i]) && i + 1 < args.length) {
+                    bufferFrames = Integer.parseInt(args[++i]);
+                    continue;
+                }
+                if ("--clients".equals(args[i]) && i + 1 < args.length) {
+                    startClients = Integer.parseInt(args[++i]);
+                    continue;
+                }
+                final int split = args[i].indexOf('=');
+                if (split <= 0) {
+                    throw new IllegalArgumentException(
+                            "override must be key=value but was " + args[i]);
+                }
+                overrides.setProperty(args[i].substring(0, split),
+                        args[i].substring(split + 1));
+            }
+
+            final InetSocketAddress address = new InetSocketAddress(
+                    InetAddress.getLoopbackAddress(), port);
+            if (args[0].endsWith(".properties")) {
+                final Properties properties = new Properties();
+                try (InputStream in = new FileInputStream(args[0])) {
+                    properties.load(in);
+                }
+                properties.putAll(overrides);
+                final LiveReplay live = new LiveReplay(
+                        RaceSpec.fromProperties(properties,
+                                RaceSpec.directoryOf(new File(args[0]))),
+                        speed, policy, bufferFrames, startClients);
+                try (ReplayServer server = new ReplayServer(address, live)) {
+                    server.start();
+                    System.out.println("Generating " + args[0] + " on port "
+                            + server.getPort() + " once " + startClients
+                            + " client(s) have connected");
+                    live.awaitFinished();
+                    while (server.getClientCount() > 0) {
+                        Thread.sleep(100);
+                    }
+                    System.out.printf("Served %d clients, %d failed, %d "
+                            + "disconnected for being slow, %d telemetry "
+                            + "frames dropped%n", server.getServedCount(),
+                            server.getFailedCount(),
+                            live.getDisconnectedCount(),
+                            live.getDroppedFrames());
+                }
+            } else {
+                if (!overrides.isEmpty()) {
+                    throw new IllegalArgumentException(
+                            "key=value overrides only apply to a spec");
+                }
+                try (ReplayServer server = new ReplayServer(address,
+                        new FileReplay(new File(args[0]), speed, policy))) {
+                    server.start();
+                    System.out.println("Replaying " + args[0] + " on port "
+                            + server.getPort());
+                    // Serves until the process is stopped.
+                    Thread.currentThread().join();
+                }
+            }
+        } catch (IOException | UncheckedIOException
+                | IllegalArgumentException e) {
+            System.err.println("Could not replay race: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package application;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Properties;
+
+import generator.RaceGenerator;
+import generator.RaceSpec;
+import generator.RaceSpec.RacerSpec;
+import model.Trajectory;
+import output.RaceSink;
+import util.IntIntMap;
+
+/**
+ * Checks that the closed form trajectories of a race match the racers stepped
+ * one millisecond at a time.
+ *
+ * Usage: {@code VerifyMain <spec.properties> [--tolerance <distance>]
+ * [key=value...]} where any key=value pairs override the values in the spec
+ * file. The race is generated with the array engine and telemetry from every
+ * racer on every millisecond, and each position is compared with the racer's
+ * {@link Trajectory}. Exits with 1 if any racer is further out than the
+ * tolerance, which defaults to {@value #DEFAULT_TOLERANCE}.
+ */
+public final class VerifyMain {
+
+    /**
+     * The distance a racer may be out by, by default. Race files are written
+     * to the hundredth, and rounding errors in summing millisecond steps grow
+     * with the length of the race.
+     */
+    private static final double DEFAULT_TOLERANCE = 1e-4;
+
+    private VerifyMain() {
+    }
+
+    /**
+     * The main method for verifying trajectories.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: VerifyMain <spec.properties> "
+                    + "[--tolerance <distance>] [key=value...]");
+            System.exit(2);
+        }
+
+        try {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(args[0])) {
+                properties.load(in);
+            }
+            double tolerance = DEFAULT_TOLERANCE;
+            for (int i = 1; i < args.length; i++) {
+                if ("--tolerance".equals(args[i]) && i + 1 < args.length) {
+                    tolerance = Double.parseDouble(args[++i]);
+                    continue;
+                }
+                final int split = args[i].indexOf('=');
+                if (split <= 0) {
+                    throw new IllegalArgumentException(
+                            "override must be key=value but was " + args[i]);
+                }
+                properties.setProperty(args[i].substring(0, split),
+                        args[i].substring(split + 1));
+            }
+
+            final RaceSpec spec = RaceSpec.fromProperties(properties,
+                    RaceSpec.directoryOf(new File(args[0])));
+            final Trajectory[] trajectories = RaceGenerator
+                    .createTrajectories(spec);
+
+            // Every racer reports where it is on every millisecond.
+            spec.setTelemetryInterval(1);
+            spec.setEngine(RaceSpec.Engine.ARRAY);
+            final CheckingSink check = new CheckingSink(spec.getRacers(),
+                    trajectories, spec.getTrackLength(), tolerance);
+            RaceGenerator.generate(spec, check, null);
+
+            System.out.printf("Checked %d positions of %d racers, largest "
+                    + "difference %.3g at %d ms, %d beyond %.3g%n",
+                    check.myChecked, trajectories.length, check.myWorst,
+                    check.myWorstTime, check.myFailures, tolerance);
+            if (check.myFailures > 0) {
+                System.exit(1);
+            }
+        } catch (IOException | UncheckedIOException
+                | IllegalArgumentException e) {
+            System.err.println("Could not verify race: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compares every telemetry position with the racer's trajectory.
+     */
+    private static final class CheckingSink implements RaceSink {
+
+        private final IntIntMap mySlots;
+        private final Trajectory[] myTrajectories;
+        private final double myTrackLength;
+        private final double myTolerance;
+        private long myChecked;
+        private long myFailures;
+        private double myWorst;
+        private int myWorstTime;
+
+        CheckingSink(final List<RacerSpec> theRacers,
+                final Trajectory[] theTrajectories, final int theTrackLength,
+                final double theTolerance) {
+            mySlots = new IntIntMap(theRacers.size());
+            for (int slot = 0; slot < theRacers.size(); slot++) {
+                mySlots.put(theRacers.get(slot).getID(), slot);
+            }
+            myTrajectories = theTrajectories;
+            myTrackLength = theTrackLength;
+            myTolerance = theTolerance;
+        }
+
+        @Override
+        public void telemetry(final int theTime, final int theID,
+                final double thePosition, final int theLap) {
+            final double distance = theLap * myTrackLength + thePosition;
+            final double difference = Math.abs(distance
+                    - myTrajectories[mySlots.get(theID)].getDistance(theTime));
+            myChecked++;
+            // Also counts NaN, which means the trajectory is broken.
+            if (!(difference <= myTolerance)) {
+                myFailures++;
+            }
+            if (!(difference <= myWorst)) {
+                myWorst = difference;
+                myWorstTime = theTime;
+            }
+        }
+
+        @Override
+        public void raceHeader(final String theRaceName,
+                final String theTrackName, final int theWidthRatio,
+                final int theHeightRatio, final int theDistance,
+                final int theExpectedTime, final int theNumParticipants) {
+        }
+
+        @Override
+        public void racer(final int theID, final String theName,
+                final double theStartPosition) {
+        }
+
+        @Override
+        public void leaderBoard(final int theTime, final int[] theRacerIDs) {
+        }
+
+        @Override
+        public void crossing(final int theTime, final int theID,
+                final int theLap, final boolean theFinished) {
+        }
+
+        @Override
+        public void finish(final int theRaceTime) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
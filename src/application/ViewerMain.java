@@ -0,0 +1,77 @@
+package application;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.stage.FileChooser;
+import javafx.stage.FileChooser.ExtensionFilter;
+import javafx.stage.Stage;
+import view.replay.RaceReplay;
+import view.replay.ReplayView;
+
+/**
+ * This class launches the JavaFX race replay viewer.
+ *
+ * Usage: {@code ViewerMain [race.rce]}, the race file is asked for if it
+ * isn't given.
+ */
+public class ViewerMain extends Application {
+
+    private ReplayView myView;
+
+    /**
+     * Opens the race file, puts a ReplayView of it on the stage, and shows
+     * it.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public void start(final Stage stage) throws Exception {
+        final List<String> args = getParameters().getRaw();
+        File file;
+        if (args.isEmpty()) {
+            final FileChooser chooser = new FileChooser();
+            chooser.getExtensionFilters()
+                    .add(new ExtensionFilter("Race File", "*.rce"));
+            file = chooser.showOpenDialog(stage);
+            if (file == null) {
+                return;
+            }
+        } else {
+            file = new File(args.get(0));
+        }
+
+        try {
+            myView = new ReplayView(RaceReplay.open(file));
+        } catch (IOException e) {
+            final Alert alert = new Alert(Alert.AlertType.ERROR,
+                    "Could not open " + file + ": " + e.getMessage());
+            alert.showAndWait();
+            return;
+        }
+        stage.setTitle("305 Race Replay - " + file.getName());
+        stage.setScene(new Scene(myView));
+        stage.centerOnScreen();
+        stage.show();
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (myView != null) {
+            myView.close();
+        }
+    }
+
+    /**
+     * The main method that kicks the viewer off.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) {
+        launch(args);
+    }
+}
@@ -0,0 +1,34 @@
+package benchmark;
+
+/**
+ * One benchmark: a piece of state set up once and an operation that is run
+ * over and over against it by the {@link BenchmarkRunner}.
+ */
+public interface Benchmark {
+
+    /**
+     * Builds the state the operation runs against. Called once before the
+     * warmup iterations.
+     *
+     * @throws Exception If the state can't be built.
+     */
+    default void setUp() throws Exception {
+    }
+
+    /**
+     * Runs the operation being measured once. Anything it computes should be
+     * handed to theBlackhole so the JIT can't throw the work away.
+     *
+     * @param theBlackhole Consumes results.
+     * @throws Exception If the operation fails.
+     */
+    void run(Blackhole theBlackhole) throws Exception;
+
+    /**
+     * Releases the state. Called once after the last iteration.
+     *
+     * @throws Exception If the state can't be released.
+     */
+    default void tearDown() throws Exception {
+    }
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import benchmark.BenchmarkRunner.Result;
+
+/**
+ * Runs the generator's benchmarks and prints a table of their throughput and
+ * allocation.
+ *
+ * Usage: {@code BenchmarkMain [-l] [-wi <n>] [-i <n>] [-r <ms>] [regex...]}
+ * where -l lists the benchmarks, -wi and -i set the number of warmup and
+ * measured iterations, -r the length of each iteration, and only benchmarks
+ * whose name contains a match for one of the regexes are run.
+ *
+ * Run it on an otherwise idle machine, with the same JVM flags each time, and
+ * compare the numbers from before and after a change.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    /**
+     * The main method for the benchmarks.
+     *
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args) throws Exception {
+        final Map<String, Supplier<Benchmark>> benchmarks =
+                new LinkedHashMap<>();
+        RaceBenchmarks.addTo(benchmarks);
+        OutputBenchmarks.addTo(benchmarks);
+
+        int warmups = 5;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        boolean list = false;
+        Pattern filter = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("-l".equals(args[i])) {
+                list = true;
+            } else if ("-wi".equals(args[i]) && i + 1 < args.length) {
+                warmups = Integer.parseInt(args[++i]);
+            } else if ("-i".equals(args[i]) && i + 1 < args.length) {
+                iterations = Integer.parseInt(args[++i]);
+            } else if ("-r".equals(args[i]) && i + 1 < args.length) {
+                iterationMillis = Long.parseLong(args[++i]);
+            } else {
+                filter = Pattern.compile(filter == null ? args[i]
+                        : filter.pattern() + "|" + args[i]);
+            }
+        }
+
+        if (list) {
+            for (String name : benchmarks.keySet()) {
+                if (filter == null || filter.matcher(name).find()) {
+                    System.out.println(name);
+                }
+            }
+            return;
+        }
+
+        final BenchmarkRunner runner = new BenchmarkRunner(warmups,
+                iterations, iterationMillis);
+        System.out.println(String.format(
+                "%-36s %4s %14s %12s %6s %12s %12s", "Benchmark", "Cnt",
+                "Score", "Error", "Units", "Alloc B/op", "Alloc MB/s"));
+        for (Map.Entry<String, Supplier<Benchmark>> entry
+                : benchmarks.entrySet()) {
+            if (filter != null && !filter.matcher(entry.getKey()).find()) {
+                continue;
+            }
+            final Result result = runner.run(entry.getKey(),
+                    entry.getValue().get());
+            System.out.println(String.format(
+                    "%-36s %4d %14.3f %12.3f %6s %12.1f %12.1f",
+                    result.getName(), result.getIterations(),
+                    result.getScore(), result.getError(), "ops/s",
+                    result.getBytesPerOperation(),
+                    result.getAllocationRate()));
+        }
+    }
+}
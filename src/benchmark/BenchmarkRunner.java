@@ -0,0 +1,195 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs a {@link Benchmark} for a number of warmup iterations and then a number
+ * of measured iterations of a fixed length, recording the throughput and the
+ * bytes allocated per operation of each measured iteration.
+ *
+ * Allocation is read from the per thread allocation counter of the HotSpot
+ * ThreadMXBean, which is what the JMH gc profiler reports as
+ * gc.alloc.rate.norm. The operation runs on the calling thread, so work a
+ * benchmark hands to other threads isn't counted.
+ */
+public final class BenchmarkRunner {
+
+    /** How long the operation runs between checks of the clock. */
+    private static final long BATCH_NANOS = 1_000_000L;
+
+    private final int myWarmups;
+    private final int myIterations;
+    private final long myIterationNanos;
+    private final com.sun.management.ThreadMXBean myThreads;
+
+    /**
+     * Constructs a BenchmarkRunner.
+     *
+     * @param theWarmups        The number of warmup iterations.
+     * @param theIterations     The number of measured iterations.
+     * @param theIterationMillis The length of each iteration.
+     */
+    public BenchmarkRunner(final int theWarmups, final int theIterations,
+            final long theIterationMillis) {
+        myWarmups = theWarmups;
+        myIterations = theIterations;
+        myIterationNanos = theIterationMillis * 1_000_000L;
+        final java.lang.management.ThreadMXBean threads = ManagementFactory
+                .getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads)
+                        .isThreadAllocatedMemorySupported()) {
+            myThreads = (com.sun.management.ThreadMXBean) threads;
+            myThreads.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            myThreads = null;
+        }
+    }
+
+    /**
+     * Runs theBenchmark.
+     *
+     * @param theName      The name to report the benchmark under.
+     * @param theBenchmark The benchmark to run.
+     * @return The measurements.
+     * @throws Exception If the benchmark fails.
+     */
+    public Result run(final String theName, final Benchmark theBenchmark)
+            throws Exception {
+        final Blackhole blackhole = new Blackhole();
+        final double[] scores = new double[myIterations];
+        final double[] allocations = new double[myIterations];
+        theBenchmark.setUp();
+        try {
+            for (int i = 0; i < myWarmups; i++) {
+                iterate(theBenchmark, blackhole, null);
+            }
+            for (int i = 0; i < myIterations; i++) {
+                final double[] sample = new double[2];
+                iterate(theBenchmark, blackhole, sample);
+                scores[i] = sample[0];
+                allocations[i] = sample[1];
+            }
+        } finally {
+            theBenchmark.tearDown();
+        }
+        return new Result(theName, scores, allocations);
+    }
+
+    /**
+     * Runs the operation for one iteration, storing the throughput and bytes
+     * per operation in theSample if it isn't null. The operation is run in
+     * batches that grow until a batch takes about BATCH_NANOS, so reading the
+     * clock doesn't swamp operations that only take nanoseconds.
+     */
+    private void iterate(final Benchmark theBenchmark,
+            final Blackhole theBlackhole, final double[] theSample)
+            throws Exception {
+        final long threadID = Thread.currentThread().getId();
+        final long allocatedBefore = myThreads == null ? 0
+                : myThreads.getThreadAllocatedBytes(threadID);
+        final long start = System.nanoTime();
+        final long deadline = start + myIterationNanos;
+        long operations = 0;
+        long batch = 1;
+        long now;
+        do {
+            final long batchStart = System.nanoTime();
+            for (long i = 0; i < batch; i++) {
+                theBenchmark.run(theBlackhole);
+            }
+            operations += batch;
+            now = System.nanoTime();
+            if (now - batchStart < BATCH_NANOS) {
+                batch *= 2;
+            }
+        } while (now < deadline);
+        final long allocatedAfter = myThreads == null ? 0
+                : myThreads.getThreadAllocatedBytes(threadID);
+        theBlackhole.flush();
+
+        if (theSample != null) {
+            theSample[0] = operations * 1e9 / (now - start);
+            theSample[1] = myThreads == null ? Double.NaN
+                    : (double) (allocatedAfter - allocatedBefore) / operations;
+        }
+    }
+
+    /**
+     * The measurements of one benchmark.
+     */
+    public static final class Result {
+
+        private final String myName;
+        private final double[] myScores;
+        private final double[] myAllocations;
+
+        private Result(final String theName, final double[] theScores,
+                final double[] theAllocations) {
+            myName = theName;
+            myScores = theScores;
+            myAllocations = theAllocations;
+        }
+
+        public String getName() {
+            return myName;
+        }
+
+        public int getIterations() {
+            return myScores.length;
+        }
+
+        /**
+         * Returns the mean throughput in operations per second.
+         *
+         * @return The mean throughput.
+         */
+        public double getScore() {
+            return mean(myScores);
+        }
+
+        /**
+         * Returns the standard deviation of the throughput across iterations.
+         *
+         * @return The standard deviation of the throughput.
+         */
+        public double getError() {
+            if (myScores.length < 2) {
+                return Double.NaN;
+            }
+            final double mean = mean(myScores);
+            double sum = 0;
+            for (double score : myScores) {
+                sum += (score - mean) * (score - mean);
+            }
+            return Math.sqrt(sum / (myScores.length - 1));
+        }
+
+        /**
+         * Returns the mean bytes allocated per operation, NaN if the JVM
+         * can't count allocations.
+         *
+         * @return The bytes allocated per operation.
+         */
+        public double getBytesPerOperation() {
+            return mean(myAllocations);
+        }
+
+        /**
+         * Returns the allocation rate in MB per second.
+         *
+         * @return The allocation rate.
+         */
+        public double getAllocationRate() {
+            return getBytesPerOperation() * getScore() / 1e6;
+        }
+
+        private static double mean(final double[] theValues) {
+            double sum = 0;
+            for (double value : theValues) {
+                sum += value;
+            }
+            return sum / theValues.length;
+        }
+    }
+}
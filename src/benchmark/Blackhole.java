@@ -0,0 +1,71 @@
+package benchmark;
+
+/**
+ * Consumes benchmark results so the JIT can't prove they are unused and
+ * remove the code that computed them.
+ */
+public final class Blackhole {
+
+    private volatile long mySink;
+    private volatile Object myTrap;
+    private long myAccumulator;
+
+    Blackhole() {
+    }
+
+    /**
+     * Consumes an int.
+     *
+     * @param theValue The value to consume.
+     */
+    public void consume(final int theValue) {
+        myAccumulator += theValue;
+    }
+
+    /**
+     * Consumes a long.
+     *
+     * @param theValue The value to consume.
+     */
+    public void consume(final long theValue) {
+        myAccumulator += theValue;
+    }
+
+    /**
+     * Consumes a double.
+     *
+     * @param theValue The value to consume.
+     */
+    public void consume(final double theValue) {
+        myAccumulator += Double.doubleToRawLongBits(theValue);
+    }
+
+    /**
+     * Consumes a boolean.
+     *
+     * @param theValue The value to consume.
+     */
+    public void consume(final boolean theValue) {
+        myAccumulator += theValue ? 1 : 0;
+    }
+
+    /**
+     * Consumes an object.
+     *
+     * @param theValue The value to consume.
+     */
+    public void consume(final Object theValue) {
+        // Never true, but the JIT can't know that.
+        if (theValue == myTrap) {
+            myAccumulator++;
+        }
+    }
+
+    /**
+     * Publishes everything consumed so far, called at the end of every
+     * iteration.
+     */
+    void flush() {
+        mySink = myAccumulator;
+    }
+}
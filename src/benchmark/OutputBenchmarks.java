@@ -0,0 +1,156 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import output.BinaryRaceWriter;
+import output.ChannelRaceFile;
+import output.RaceFile;
+import output.RaceSink;
+import output.TextRaceWriter;
+
+/**
+ * Benchmarks of the output: formatting $T lines and writing them to disk.
+ */
+final class OutputBenchmarks {
+
+    private static final int RACERS = 1000;
+
+    /** Files written by the write benchmarks start over at this size. */
+    private static final long MAX_FILE_SIZE = 256L * 1024 * 1024;
+
+    private OutputBenchmarks() {
+    }
+
+    /**
+     * Adds the benchmarks in this class to theBenchmarks.
+     *
+     * @param theBenchmarks The benchmarks by name.
+     */
+    static void addTo(final Map<String, Supplier<Benchmark>> theBenchmarks) {
+        theBenchmarks.put("output.telemetry.stringFormat",
+                StringFormatTelemetry::new);
+        theBenchmarks.put("output.telemetry.text",
+                () -> new Telemetry(TextRaceWriter::new, false));
+        theBenchmarks.put("output.telemetry.binary",
+                () -> new Telemetry(BinaryRaceWriter::new, false));
+        theBenchmarks.put("output.write.text",
+                () -> new Telemetry(TextRaceWriter::new, true));
+        theBenchmarks.put("output.write.binary",
+                () -> new Telemetry(BinaryRaceWriter::new, true));
+    }
+
+    /**
+     * The next position to write, a racer moving around the track.
+     */
+    private static double position(final long theTick) {
+        return (theTick * 10.37) % 500000;
+    }
+
+    /**
+     * Formatting a $T line the way the original generator did, as a baseline.
+     */
+    private static final class StringFormatTelemetry implements Benchmark {
+
+        private long myTick;
+
+        @Override
+        public void run(final Blackhole theBlackhole) {
+            final long tick = myTick++;
+            theBlackhole.consume(String.format("$T:%d:%d:%.2f:%d",
+                    (int) (tick / RACERS), (int) (tick % RACERS),
+                    position(tick), 0));
+        }
+    }
+
+    /**
+     * One telemetry event through a writer, either into a RaceFile that
+     * throws the bytes away or into a real file on disk.
+     */
+    private static final class Telemetry implements Benchmark {
+
+        private final Function<RaceFile, RaceSink> myWriterFactory;
+        private final boolean myToDisk;
+        private File myFile;
+        private RaceFile myRaceFile;
+        private RaceSink myWriter;
+        private long myTick;
+
+        Telemetry(final Function<RaceFile, RaceSink> theWriterFactory,
+                final boolean theToDisk) {
+            myWriterFactory = theWriterFactory;
+            myToDisk = theToDisk;
+        }
+
+        @Override
+        public void setUp() throws IOException {
+            if (myToDisk) {
+                myFile = File.createTempFile("benchmark", ".race");
+                myFile.deleteOnExit();
+            }
+            open();
+        }
+
+        private void open() throws IOException {
+            myRaceFile = myToDisk ? new ChannelRaceFile(myFile)
+                    : new NullRaceFile();
+            myWriter = myWriterFactory.apply(myRaceFile);
+            myWriter.raceHeader("Bench", "OvalTrack", 2, 1, 500000, 0,
+                    RACERS);
+            for (int id = 0; id < RACERS; id++) {
+                myWriter.racer(id, "R" + id, 0);
+            }
+        }
+
+        @Override
+        public void run(final Blackhole theBlackhole) throws IOException {
+            final long tick = myTick++;
+            myWriter.telemetry((int) (tick / RACERS), (int) (tick % RACERS),
+                    position(tick), 0);
+            if (myToDisk && myRaceFile.position() > MAX_FILE_SIZE) {
+                myWriter.close();
+                open();
+            }
+        }
+
+        @Override
+        public void tearDown() throws IOException {
+            myWriter.close();
+            if (myFile != null) {
+                myFile.delete();
+            }
+        }
+    }
+
+    /**
+     * A RaceFile that only counts the bytes written to it.
+     */
+    private static final class NullRaceFile implements RaceFile {
+
+        private long myPosition;
+        private int myChecksum;
+
+        @Override
+        public void write(final byte[] theBytes, final int theOffset,
+                final int theLength) {
+            myPosition += theLength;
+            myChecksum += theBytes[theOffset + theLength - 1];
+        }
+
+        @Override
+        public long position() {
+            return myPosition + (myChecksum & 0);
+        }
+
+        @Override
+        public void patch(final long thePosition, final byte[] theBytes) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
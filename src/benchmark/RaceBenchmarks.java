@@ -0,0 +1,297 @@
+package benchmark;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import generator.RaceGenerator;
+import generator.RaceSpec;
+import model.LeaderBoard;
+import model.Participant;
+import model.ParticipantSpeed;
+import model.RaceEngine;
+import model.RaceRandom;
+import model.SpeedSettings;
+import model.track.OvalTrack;
+import model.track.Track;
+import model.track.TrackCursor;
+import model.track.TrackSpeed;
+import output.RaceSink;
+import race_constraints.ParticipantConstraint;
+
+/**
+ * Benchmarks of the simulation: stepping whole races, the leader board, a
+ * single participant's step and the track lookups.
+ */
+final class RaceBenchmarks {
+
+    private static final int TRACK_LENGTH = 500000;
+
+    private RaceBenchmarks() {
+    }
+
+    /**
+     * Adds the benchmarks in this class to theBenchmarks.
+     *
+     * @param theBenchmarks The benchmarks by name.
+     */
+    static void addTo(final Map<String, Supplier<Benchmark>> theBenchmarks) {
+        for (int racers : new int[] {10, 1000, 100000}) {
+            theBenchmarks.put("race.step.object." + racers,
+                    () -> new RaceStep(RaceSpec.Engine.OBJECT, racers));
+            theBenchmarks.put("race.step.array." + racers,
+                    () -> new RaceStep(RaceSpec.Engine.ARRAY, racers));
+        }
+        for (int racers : new int[] {1000, 100000}) {
+            theBenchmarks.put("race.leaderBoard." + racers,
+                    () -> new LeaderBoardUpdate(racers));
+        }
+        theBenchmarks.put("participant.step.none",
+                () -> new ParticipantStep(false, false, 0));
+        theBenchmarks.put("participant.step.track",
+                () -> new ParticipantStep(true, false, 0));
+        theBenchmarks.put("participant.step.trackAcceleration",
+                () -> new ParticipantStep(true, true, 0));
+        theBenchmarks.put("participant.step.custom4",
+                () -> new ParticipantStep(true, true, 4));
+        theBenchmarks.put("participant.step.custom16",
+                () -> new ParticipantStep(true, true, 16));
+        theBenchmarks.put("track.lookup", TrackLookup::new);
+        theBenchmarks.put("track.cursor", CursorAdvance::new);
+    }
+
+    /**
+     * One tick of a whole race, with every event sent to the blackhole.
+     */
+    private static final class RaceStep implements Benchmark {
+
+        private final RaceSpec.Engine myEngine;
+        private final int myRacers;
+        private RaceSpec mySpec;
+        private Track myTrack;
+        private RaceEngine myRace;
+        private RaceSink mySink;
+
+        RaceStep(final RaceSpec.Engine theEngine, final int theRacers) {
+            myEngine = theEngine;
+            myRacers = theRacers;
+        }
+
+        @Override
+        public void setUp() {
+            mySpec = new RaceSpec();
+            mySpec.setEngine(myEngine);
+            mySpec.setSeed(1);
+            mySpec.setLaps(1000);
+            mySpec.getRoster().generate(myRacers, 1);
+            myTrack = RaceGenerator.createTrack(mySpec);
+            myRace = RaceGenerator.createEngine(mySpec, myTrack, null);
+        }
+
+        @Override
+        public void run(final Blackhole theBlackhole) throws Exception {
+            if (!myRace.stillGoing()) {
+                myRace = RaceGenerator.createEngine(mySpec, myTrack, null);
+            }
+            if (mySink == null) {
+                mySink = new BlackholeSink(theBlackhole);
+            }
+            myRace.stepRace(mySink);
+        }
+    }
+
+    /**
+     * Every racer moves forward a little, then the leader board catches up,
+     * which is what Race.newLeaderBoard does each tick.
+     */
+    private static final class LeaderBoardUpdate implements Benchmark {
+
+        private final int myRacers;
+        private int[] myLaps;
+        private double[] myPositions;
+        private double[] myVelocities;
+        private LeaderBoard myLeaderBoard;
+        private int myTick;
+
+        LeaderBoardUpdate(final int theRacers) {
+            myRacers = theRacers;
+        }
+
+        @Override
+        public void setUp() {
+            final SplittableRandom rng = new SplittableRandom(1);
+            myLaps = new int[myRacers];
+            myPositions = new double[myRacers];
+            myVelocities = new double[myRacers];
+            for (int i = 0; i < myRacers; i++) {
+                myPositions[i] = -i * 10.0;
+                myVelocities[i] = 9 + rng.nextDouble() * 3;
+            }
+            myLeaderBoard = new LeaderBoard(myLaps, myPositions);
+        }
+
+        @Override
+        public void run(final Blackhole theBlackhole) {
+            // Change who is fast now and then so racers keep overtaking.
+            final int shift = (myTick++ >> 10) & 1;
+            for (int i = 0; i < myRacers; i++) {
+                myPositions[i] += ((i & 1) == shift) ? myVelocities[i]
+                        : myVelocities[i] * 0.9;
+            }
+            theBlackhole.consume(myLeaderBoard.update());
+            theBlackhole.consume(myLeaderBoard.getFirstChangedRank());
+        }
+    }
+
+    /**
+     * A single participant's step with different sets of constraints.
+     */
+    private static final class ParticipantStep implements Benchmark {
+
+        private final boolean myTrackConstraint;
+        private final boolean myAcceleration;
+        private final int myCustomConstraints;
+        private Participant myParticipant;
+
+        ParticipantStep(final boolean theTrackConstraint,
+                final boolean theAcceleration,
+                final int theCustomConstraints) {
+            myTrackConstraint = theTrackConstraint;
+            myAcceleration = theAcceleration;
+            myCustomConstraints = theCustomConstraints;
+        }
+
+        @Override
+        public void setUp() {
+            myParticipant = new Participant(1, "Bench", 0, TRACK_LENGTH,
+                    ParticipantSpeed.MEDIUM, SpeedSettings.DEFAULT,
+                    new RaceRandom(1));
+            if (myTrackConstraint) {
+                myParticipant.setTrackSpeed(TrackSpeed.FAST);
+            }
+            if (myAcceleration) {
+                myParticipant.startAccelerating(0, 10);
+            }
+            final ParticipantConstraint unchanged = (theSpeed,
+                    theBracket) -> theSpeed;
+            for (int i = 0; i < myCustomConstraints; i++) {
+                myParticipant.addConstraint(unchanged);
+            }
+        }
+
+        @Override
+        public void run(final Blackhole theBlackhole) {
+            theBlackhole.consume(myParticipant.step());
+        }
+    }
+
+    /**
+     * Looking up the speed of the section at a distance, the way the engines
+     * did before they kept a cursor per racer.
+     */
+    private static final class TrackLookup implements Benchmark {
+
+        private Track myTrack;
+        private double[] myDistances;
+        private int myNext;
+
+        @Override
+        public void setUp() {
+            myTrack = new OvalTrack(TRACK_LENGTH, 2, 1);
+            final SplittableRandom rng = new SplittableRandom(1);
+            myDistances = new double[4096];
+            for (int i = 0; i < myDistances.length; i++) {
+                myDistances[i] = rng.nextDouble() * TRACK_LENGTH;
+            }
+        }
+
+        @Override
+        public void run(final Blackhole theBlackhole) {
+            final double distance = myDistances[myNext];
+            myNext = (myNext + 1) & (myDistances.length - 1);
+            theBlackhole.consume(myTrack.getTrackSpeed(distance));
+            theBlackhole.consume(myTrack.getNextTrackSpeed(distance));
+            theBlackhole.consume(
+                    myTrack.getDistanceUntilNextTrackPiece(distance));
+        }
+    }
+
+    /**
+     * A racer's cursor moving around the track, with the same lookups.
+     */
+    private static final class CursorAdvance implements Benchmark {
+
+        private TrackCursor myCursor;
+        private double myPosition;
+
+        @Override
+        public void setUp() {
+            final Track track = new OvalTrack(TRACK_LENGTH, 2, 1);
+            myCursor = track.newCursor(0);
+        }
+
+        @Override
+        public void run(final Blackhole theBlackhole) {
+            myPosition += 10.5;
+            if (myPosition >= TRACK_LENGTH) {
+                myPosition -= TRACK_LENGTH;
+            }
+            theBlackhole.consume(myCursor.advance(myPosition));
+            theBlackhole.consume(myCursor.getTrackSpeed());
+            theBlackhole.consume(myCursor.getNextTrackSpeed());
+            theBlackhole.consume(myCursor.getDistanceUntilNextGate());
+        }
+    }
+
+    /**
+     * A RaceSink that hands everything to a blackhole.
+     */
+    static final class BlackholeSink implements RaceSink {
+
+        private final Blackhole myBlackhole;
+
+        BlackholeSink(final Blackhole theBlackhole) {
+            myBlackhole = theBlackhole;
+        }
+
+        @Override
+        public void raceHeader(final String theRaceName,
+                final String theTrackName, final int theWidthRatio,
+                final int theHeightRatio, final int theDistance,
+                final int theExpectedTime, final int theNumParticipants) {
+            myBlackhole.consume(theRaceName);
+        }
+
+        @Override
+        public void racer(final int theID, final String theName,
+                final double theStartPosition) {
+            myBlackhole.consume(theID);
+        }
+
+        @Override
+        public void telemetry(final int theTime, final int theID,
+                final double thePosition, final int theLap) {
+            myBlackhole.consume(thePosition);
+        }
+
+        @Override
+        public void leaderBoard(final int theTime, final int[] theRacerIDs) {
+            myBlackhole.consume(theRacerIDs);
+        }
+
+        @Override
+        public void crossing(final int theTime, final int theID,
+                final int theLap, final boolean theFinished) {
+            myBlackhole.consume(theID);
+        }
+
+        @Override
+        public void finish(final int theRaceTime) {
+            myBlackhole.consume(theRaceTime);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
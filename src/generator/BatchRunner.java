@@ -0,0 +1,282 @@
+package generator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates many independent races at once on a pool of worker threads.
+ *
+ * The races to generate are listed in a manifest, one per line:
+ *
+ * <pre>
+ * # spec                output             overrides
+ * specs/small.properties  out/small-1.rce  seed=1
+ * specs/small.properties  out/small-2.rce  seed=2 laps=3
+ * </pre>
+ *
+ * Blank lines and lines starting with # are ignored, relative paths are
+ * resolved against the directory the manifest is in, and the key=value
+ * overrides replace values in the spec file (see {@link RaceSpec} for the
+ * keys).
+ *
+ * Races share nothing while they run, so throughput grows with the number of
+ * threads until the disk can't keep up. A race that fails is reported in its
+ * {@link Result} and its partial output is deleted, the rest of the batch
+ * carries on.
+ */
+public final class BatchRunner {
+
+    private BatchRunner() {
+    }
+
+    /**
+     * Notified as each race in a batch finishes. Called from the worker
+     * threads, so implementations must be thread safe.
+     */
+    public interface BatchListener {
+
+        /**
+         * Called when a race finishes, successfully or not.
+         *
+         * @param theResult The result of the race.
+         */
+        void finished(Result theResult);
+    }
+
+    /**
+     * One race in a batch.
+     */
+    public static final class Job {
+
+        private final File mySpecFile;
+        private final File myOutput;
+        private final Properties myOverrides;
+
+        /**
+         * Constructs a new Job.
+         *
+         * @param theSpecFile  The spec properties file.
+         * @param theOutput    The race file to write.
+         * @param theOverrides Values that replace the ones in the spec file.
+         */
+        public Job(final File theSpecFile, final File theOutput,
+                final Properties theOverrides) {
+            mySpecFile = theSpecFile;
+            myOutput = theOutput;
+            myOverrides = new Properties();
+            myOverrides.putAll(theOverrides);
+        }
+
+        public File getSpecFile() {
+            return mySpecFile;
+        }
+
+        public File getOutput() {
+            return myOutput;
+        }
+
+        /**
+         * Loads the spec file and applies the overrides.
+         *
+         * @return The spec for this race.
+         * @throws IOException If the spec file can't be read.
+         */
+        public RaceSpec loadSpec() throws IOException {
+            final Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(mySpecFile)) {
+                properties.load(in);
+            }
+            properties.putAll(myOverrides);
+            return RaceSpec.fromProperties(properties,
+                    RaceSpec.directoryOf(mySpecFile));
+        }
+
+        @Override
+        public String toString() {
+            return mySpecFile + " -> " + myOutput;
+        }
+    }
+
+    /**
+     * The outcome of one race in a batch.
+     */
+    public static final class Result {
+
+        private final Job myJob;
+        private final Throwable myFailure;
+        private final long myElapsedNanos;
+
+        private Result(final Job theJob, final Throwable theFailure,
+                final long theElapsedNanos) {
+            myJob = theJob;
+            myFailure = theFailure;
+            myElapsedNanos = theElapsedNanos;
+        }
+
+        public Job getJob() {
+            return myJob;
+        }
+
+        /**
+         * Returns why the race failed, or null if it succeeded.
+         *
+         * @return The failure or null.
+         */
+        public Throwable getFailure() {
+            return myFailure;
+        }
+
+        public boolean succeeded() {
+            return myFailure == null;
+        }
+
+        public long getElapsedNanos() {
+            return myElapsedNanos;
+        }
+    }
+
+    /**
+     * Reads the jobs in a manifest, see the class comment for the format.
+     *
+     * @param theManifest The manifest to read.
+     * @return The jobs in the order they are listed.
+     * @throws IOException              If the manifest can't be read.
+     * @throws IllegalArgumentException If a line is malformed.
+     */
+    public static List<Job> readManifest(final File theManifest)
+            throws IOException {
+        final File base = theManifest.getAbsoluteFile().getParentFile();
+        final List<Job> jobs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(
+                theManifest.toPath(), StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final String[] parts = line.split("\\s+");
+                if (parts.length < 2) {
+                    throw new IllegalArgumentException(theManifest + ":"
+                            + lineNumber + ": expected <spec> <output>");
+                }
+                final Properties overrides = new Properties();
+                for (int i = 2; i < parts.length; i++) {
+                    final int split = parts[i].indexOf('=');
+                    if (split <= 0) {
+                        throw new IllegalArgumentException(theManifest + ":"
+                                + lineNumber + ": override must be key=value "
+                                + "but was " + parts[i]);
+                    }
+                    overrides.setProperty(parts[i].substring(0, split),
+                            parts[i].substring(split + 1));
+                }
+                jobs.add(new Job(resolve(base, parts[0]),
+                        resolve(base, parts[1]), overrides));
+            }
+        }
+        return jobs;
+    }
+
+    private static File resolve(final File theBase, final String thePath) {
+        final File file = new File(thePath);
+        return file.isAbsolute() ? file : new File(theBase, thePath);
+    }
+
+    /**
+     * Generates every race in theJobs on theThreads worker threads.
+     *
+     * @param theJobs     The races to generate.
+     * @param theThreads  The number of worker threads.
+     * @param theListener Notified as each race finishes, may be null.
+     * @return The result of every job, in the same order as theJobs.
+     * @throws InterruptedException If interrupted while waiting for the
+     *                              races. Races already running are
+     *                              interrupted too.
+     */
+    public static List<Result> run(final List<Job> theJobs,
+            final int theThreads, final BatchListener theListener)
+            throws InterruptedException {
+        if (theThreads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        final ExecutorService pool = Executors.newFixedThreadPool(
+                theThreads, new WorkerFactory());
+        try {
+            final List<Future<Result>> futures = new ArrayList<>();
+            for (Job job : theJobs) {
+                futures.add(pool.submit(() -> runJob(job, theListener)));
+            }
+            final List<Result> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    // Only errors escape runJob, the batch still carries on.
+                    results.add(new Result(theJobs.get(i), e.getCause(), 0));
+                }
+            }
+            return Collections.unmodifiableList(results);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Result runJob(final Job theJob,
+            final BatchListener theListener) {
+        final long start = System.nanoTime();
+        Throwable failure = null;
+        RaceSpec spec = null;
+        try {
+            spec = theJob.loadSpec();
+            spec.validate();
+            RaceGenerator.generate(spec, theJob.getOutput());
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            if (spec != null) {
+                // Don't leave a truncated race behind in the corpus.
+                theJob.getOutput().delete();
+            }
+        }
+        final Result result = new Result(theJob, failure,
+                System.nanoTime() - start);
+        if (theListener != null) {
+            theListener.finished(result);
+        }
+        return result;
+    }
+
+    /**
+     * Names the worker threads and makes them daemons so a stuck race can't
+     * keep the JVM alive.
+     */
+    private static final class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger myCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable theTask) {
+            final Thread thread = new Thread(theTask,
+                    "race-batch-" + myCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
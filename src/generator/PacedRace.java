@@ -0,0 +1,226 @@
+package generator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+import model.RaceEngine;
+import model.track.Track;
+import output.RaceEvent;
+import output.RaceEventCollector;
+import output.RaceSink;
+import util.LatencyHistogram;
+import util.Pacer;
+
+/**
+ * Generates a race in real time, or a set multiple of it, and publishes each
+ * millisecond's events when that millisecond is due on the wall clock, for
+ * feeding live pipelines at a realistic rate.
+ *
+ * Each {@link Tick} carries the {@link RaceEvent}s of one millisecond, the
+ * first the header and racers and the last the finish, and each subscriber
+ * encodes them however it needs to, for example by sending them to a
+ * {@link output.RaceFormat} writer. The race is published through
+ * {@link Flow}: every subscriber is sent ticks only as fast as it requests
+ * them, and once any subscriber has {@code bufferTicks} ticks it hasn't taken
+ * the race waits for it. A race held up like that, or by a slow step, falls
+ * behind the clock and then sends what is due straight away until it has
+ * caught up, because every deadline is measured from the start (see
+ * {@link Pacer}, which is run in its precise mode here).
+ *
+ * How late each tick went out after its deadline is recorded in
+ * {@link #getLateness()}, and how long publishing waited for subscribers in
+ * {@link #getBackpressure()}, so a run can show how far it can be trusted as
+ * a load source.
+ */
+public final class PacedRace implements Flow.Publisher<PacedRace.Tick> {
+
+    private final RaceSpec mySpec;
+    private final Pacer myPacer;
+    private final SubmissionPublisher<Tick> myPublisher;
+    private final LatencyHistogram myLateness;
+    private final LatencyHistogram myBackpressure;
+    private volatile int myRaceTime;
+
+    /**
+     * Constructs a PacedRace of the race described by theSpec. Nothing is
+     * generated until {@link #run()}.
+     *
+     * @param theSpec        The race to generate.
+     * @param theSpeed       Race milliseconds per wall clock millisecond, 1
+     *                       for real time.
+     * @param theExecutor    Runs the subscribers, see
+     *                       {@link SubmissionPublisher}.
+     * @param theBufferTicks The most ticks a subscriber can have waiting.
+     */
+    public PacedRace(final RaceSpec theSpec, final double theSpeed,
+            final Executor theExecutor, final int theBufferTicks) {
+        if (!(theSpeed > 0)) {
+            throw new IllegalArgumentException(
+                    "the speed must be more than 0 but was " + theSpeed);
+        }
+        theSpec.validate();
+        mySpec = theSpec;
+        myPacer = new Pacer(theSpeed);
+        myPacer.setPrecise(true);
+        myPublisher = new SubmissionPublisher<>(theExecutor, theBufferTicks);
+        myLateness = new LatencyHistogram();
+        myBackpressure = new LatencyHistogram();
+        myRaceTime = -1;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super Tick> theSubscriber) {
+        myPublisher.subscribe(theSubscriber);
+    }
+
+    /**
+     * Generates the race on the calling thread, publishing each tick as it is
+     * due and completing every subscriber at the end, or failing them if the
+     * race can't be generated. Subscribe first: the race stops early once
+     * there are no subscribers left.
+     *
+     * @throws InterruptedException If the thread is interrupted, the
+     *                              subscribers are failed with it.
+     */
+    public void run() throws InterruptedException {
+        final List<RaceEvent> events = new ArrayList<>();
+        final RaceSink sink = new RaceEventCollector(events::add);
+        try {
+            final Track track = RaceGenerator.createTrack(mySpec);
+            final RaceEngine race = RaceGenerator.createEngine(mySpec, track,
+                    null);
+            myPacer.restart();
+            RaceGenerator.sendHeader(mySpec, track, sink);
+            publish(new Tick(-1, myPacer.deadline(0), events));
+
+            while (race.stillGoing() && myPublisher.hasSubscribers()) {
+                race.stepRace(sink);
+                if (events.isEmpty()) {
+                    continue;
+                }
+                // Everything sent in the step happened before the new time.
+                final int time = race.getTime() - 1;
+                myLateness.record(myPacer.awaitRaceTime(time));
+                publish(new Tick(time, myPacer.deadline(time), events));
+            }
+            if (!race.stillGoing()) {
+                myRaceTime = race.getLastCrossingTime() + 1;
+                sink.finish(myRaceTime);
+                publish(new Tick(myRaceTime, myPacer.deadline(myRaceTime),
+                        events));
+            }
+            myPublisher.close();
+        } catch (IOException e) {
+            // Can't happen, events are only collected in memory
+            myPublisher.closeExceptionally(e);
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException | RuntimeException e) {
+            myPublisher.closeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns how late each tick was published after its deadline, in
+     * nanoseconds.
+     *
+     * @return The lateness of each tick.
+     */
+    public LatencyHistogram getLateness() {
+        return myLateness;
+    }
+
+    /**
+     * Returns how long each tick waited for subscribers to make room for it,
+     * in nanoseconds.
+     *
+     * @return The time each tick waited.
+     */
+    public LatencyHistogram getBackpressure() {
+        return myBackpressure;
+    }
+
+    /**
+     * Returns the actual length of the race once it has finished, which the
+     * header in the first tick only estimates, or -1 before then.
+     *
+     * @return The length of the race.
+     */
+    public int getRaceTime() {
+        return myRaceTime;
+    }
+
+    private void publish(final Tick theTick) {
+        final long start = System.nanoTime();
+        myPublisher.submit(theTick);
+        myBackpressure.record(System.nanoTime() - start);
+    }
+
+    /**
+     * The events of one millisecond of a race.
+     */
+    public static final class Tick {
+
+        private final int myTime;
+        private final long myDeadline;
+        private final List<RaceEvent> myEvents;
+
+        /**
+         * Constructs a Tick, taking the events out of theEvents.
+         */
+        Tick(final int theTime, final long theDeadline,
+                final List<RaceEvent> theEvents) {
+            myTime = theTime;
+            myDeadline = theDeadline;
+            myEvents = Collections.unmodifiableList(
+                    new ArrayList<>(theEvents));
+            theEvents.clear();
+        }
+
+        /**
+         * Returns the race time of the events, -1 for the header.
+         *
+         * @return The race time in milliseconds.
+         */
+        public int getTime() {
+            return myTime;
+        }
+
+        /**
+         * Returns when the tick was due, on the {@link System#nanoTime()}
+         * clock, so a subscriber can measure how late it got it.
+         *
+         * @return The deadline.
+         */
+        public long getDeadline() {
+            return myDeadline;
+        }
+
+        /**
+         * Returns the events in the order they happened.
+         *
+         * @return The events, which can't be changed.
+         */
+        public List<RaceEvent> getEvents() {
+            return myEvents;
+        }
+
+        /**
+         * Sends every event to theSink in order.
+         *
+         * @param theSink The sink to send the events to.
+         * @throws IOException If the sink can't write.
+         */
+        public void sendTo(final RaceSink theSink) throws IOException {
+            for (RaceEvent event : myEvents) {
+                event.sendTo(theSink);
+            }
+        }
+    }
+}
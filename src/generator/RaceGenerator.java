@@ -0,0 +1,286 @@
+package generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import generator.RaceSpec.RacerSpec;
+import metrics.RaceMetrics;
+import model.ArrayRace;
+import model.EventRace;
+import model.Participant;
+import model.ParticipantSpeed;
+import model.Race;
+import model.RaceEngine;
+import model.RaceSeed;
+import model.SpeedSettings;
+import model.Trajectory;
+import model.track.OvalTrack;
+import model.track.Track;
+import output.ChannelRaceFile;
+import output.RaceFile;
+import output.RaceSink;
+import output.TeeSink;
+import output.TextRaceWriter;
+
+/**
+ * Generates a race file from a {@link RaceSpec} by driving {@link Race}
+ * directly. Nothing in here touches JavaFX, so it can be used from the command
+ * line on machines without a display.
+ *
+ * Events are streamed to the output as the race runs, nothing is held in
+ * memory between ticks. Every race reads its speeds from its own snapshot of
+ * the spec, so any number of races can be generated at once on different
+ * threads.
+ */
+public final class RaceGenerator {
+
+    private RaceGenerator() {
+    }
+
+    /**
+     * Notified after every millisecond of the race is generated.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called with the current race time and the expected race time.
+         *
+         * @param theTime         The current race time.
+         * @param theExpectedTime The expected length of the race.
+         */
+        void progress(int theTime, int theExpectedTime);
+    }
+
+    /**
+     * Generates the race described by theSpec and writes it to theOutput.
+     *
+     * @param theSpec   The race to generate.
+     * @param theOutput The file to write the race to.
+     * @throws IOException If the race file can't be written.
+     */
+    public static void generate(final RaceSpec theSpec, final File theOutput)
+            throws IOException {
+        generate(theSpec, theOutput, null);
+    }
+
+    /**
+     * Generates the race described by theSpec and writes it to theOutput,
+     * reporting progress to theListener.
+     *
+     * @param theSpec     The race to generate.
+     * @param theOutput   The file to write the race to.
+     * @param theListener Notified of progress, may be null.
+     * @throws IOException If the race file can't be written.
+     */
+    public static void generate(final RaceSpec theSpec, final File theOutput,
+            final ProgressListener theListener) throws IOException {
+        generate(theSpec, theOutput, theListener, null);
+    }
+
+    /**
+     * Generates the race described by theSpec and writes it to theOutput,
+     * reporting progress to theListener and measuring the race, including the
+     * bytes written, in theMetrics.
+     *
+     * @param theSpec     The race to generate.
+     * @param theOutput   The file to write the race to.
+     * @param theListener Notified of progress, may be null.
+     * @param theMetrics  The metrics of the race, may be null.
+     * @throws IOException If the race file can't be written.
+     */
+    public static void generate(final RaceSpec theSpec, final File theOutput,
+            final ProgressListener theListener, final RaceMetrics theMetrics)
+            throws IOException {
+        // Check the spec before the output is opened, which truncates it.
+        theSpec.validate();
+        final RaceFile file = new ChannelRaceFile(theOutput);
+        try (RaceSink sink = new TextRaceWriter(
+                theMetrics == null ? file : theMetrics.meter(file))) {
+            generate(theSpec, sink, theListener, theMetrics);
+        }
+    }
+
+    /**
+     * Generates the race described by theSpec, sending every event to
+     * theSink. The sink is not closed.
+     *
+     * @param theSpec     The race to generate.
+     * @param theSink     The sink to send the race to.
+     * @param theListener Notified of progress, may be null.
+     * @throws IOException If the sink can't write.
+     */
+    public static void generate(final RaceSpec theSpec, final RaceSink theSink,
+            final ProgressListener theListener) throws IOException {
+        generate(theSpec, theSink, theListener, null);
+    }
+
+    /**
+     * Generates the race described by theSpec, sending every event to
+     * theSink and measuring the race in theMetrics. The sink is not closed.
+     *
+     * @param theSpec     The race to generate.
+     * @param theSink     The sink to send the race to.
+     * @param theListener Notified of progress, may be null.
+     * @param theMetrics  The metrics of the race, may be null.
+     * @throws IOException If the sink can't write.
+     */
+    public static void generate(final RaceSpec theSpec, final RaceSink theSink,
+            final ProgressListener theListener, final RaceMetrics theMetrics)
+            throws IOException {
+        theSpec.validate();
+
+        final RaceSink sink = theMetrics == null ? theSink
+                : theMetrics.meter(theSink);
+        if (theMetrics != null) {
+            theMetrics.raceStarted();
+        }
+        final Track track = createTrack(theSpec);
+        final int expectedTime = sendHeader(theSpec, track, sink);
+
+        final ForkJoinPool pool = theSpec.getThreads() > 1
+                ? new ForkJoinPool(theSpec.getThreads()) : null;
+        final RaceEngine race = createEngine(theSpec, track, pool);
+        race.setMetrics(theMetrics);
+        try {
+            while (race.stillGoing()) {
+                race.stepRace(sink);
+                if (theMetrics != null) {
+                    theMetrics.tickDone(race.getTime());
+                }
+                if (theListener != null) {
+                    theListener.progress(race.getTime(), expectedTime);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        // The variability in speeds means the last racer usually doesn't
+        // finish at the expected time, so report when they actually did.
+        // Because the crossing time is an index, add one to get the length.
+        final int raceTime = race.getLastCrossingTime() + 1;
+        sink.finish(raceTime);
+        if (theMetrics != null) {
+            theMetrics.raceFinished(raceTime);
+        }
+    }
+
+    /**
+     * Sends the header of the race described by theSpec to theSink.
+     *
+     * @return The expected length of the race.
+     */
+    static int sendHeader(final RaceSpec theSpec, final Track theTrack,
+            final RaceSink theSink) throws IOException {
+        // The expected time is roughly the speed of the slowest participant.
+        final int expectedTime = theTrack.getTrackLength() / (int) theSpec
+                .getBracketVelocity(ParticipantSpeed.SLOW);
+
+        theSink.raceHeader(theSpec.getName(), theTrack.getTrackName(),
+                theTrack.getWidthRatio(), theTrack.getHeightRatio(),
+                theTrack.getTrackLength(), expectedTime,
+                theSpec.getRacers().size());
+        return expectedTime;
+    }
+
+    /**
+     * Builds the track described by theSpec.
+     *
+     * @param theSpec The race to build the track for.
+     * @return The track.
+     */
+    public static Track createTrack(final RaceSpec theSpec) {
+        final Track track = new OvalTrack(theSpec.getTrackLength(),
+                theSpec.getXRatio(), theSpec.getYRatio());
+        track.setSections(theSpec.getSections());
+        return track;
+    }
+
+    /**
+     * Builds the engine for the race described by theSpec, with every racer
+     * on the start grid, ready for its first step.
+     *
+     * @param theSpec  The race to build.
+     * @param theTrack The track from {@link #createTrack(RaceSpec)}.
+     * @param thePool  The pool the array engine steps racers on, may be null.
+     * @return The engine.
+     */
+    public static RaceEngine createEngine(final RaceSpec theSpec,
+            final Track theTrack, final ForkJoinPool thePool) {
+        final SpeedSettings settings = theSpec.getSpeedSettings();
+
+        // Every random draw comes from a generator derived from the spec's
+        // seed, one per racer and purpose.
+        final RaceSeed seed = new RaceSeed(theSpec.getSeed());
+        final List<Participant> participants = createParticipants(theSpec,
+                theTrack, settings, seed);
+
+        if (theSpec.getEngine() == RaceSpec.Engine.ARRAY) {
+            return new ArrayRace(theTrack, settings, theSpec.getLaps(),
+                    theSpec.getTelemetryInterval(), participants, seed,
+                    thePool);
+        }
+        if (theSpec.getEngine() == RaceSpec.Engine.EVENT) {
+            return new EventRace(theTrack, settings, theSpec.getLaps(),
+                    theSpec.getTelemetryInterval(), participants, seed);
+        }
+        return new Race(theTrack, settings, theSpec.getLaps(),
+                theSpec.getTelemetryInterval(), participants, seed);
+    }
+
+    /**
+     * Works out where every racer in the race described by theSpec is at
+     * every millisecond of the race, without writing the race anywhere. The
+     * racers follow the same draws as every engine given the same seed, see
+     * {@link Trajectory} for how close the positions are.
+     *
+     * @param theSpec The race to work out.
+     * @return The trajectory of each racer, in roster order.
+     */
+    public static Trajectory[] createTrajectories(final RaceSpec theSpec) {
+        theSpec.validate();
+        final Track track = createTrack(theSpec);
+        final SpeedSettings settings = theSpec.getSpeedSettings();
+        final RaceSeed seed = new RaceSeed(theSpec.getSeed());
+        final EventRace race = new EventRace(track, settings,
+                theSpec.getLaps(), theSpec.getTelemetryInterval(),
+                createParticipants(theSpec, track, settings, seed), seed);
+        final Trajectory[] trajectories = race.recordTrajectories();
+        // A tee to no sinks throws every event away
+        try (RaceSink sink = new TeeSink()) {
+            while (race.stillGoing()) {
+                race.stepRace(sink);
+            }
+        } catch (IOException e) {
+            // Can't happen, nothing is written anywhere
+            throw new UncheckedIOException(e);
+        }
+        return trajectories;
+    }
+
+    /**
+     * Builds the racers of theSpec on the start grid, each drawing its
+     * velocities from its own generator derived from theSeed.
+     */
+    static List<Participant> createParticipants(
+            final RaceSpec theSpec, final Track theTrack,
+            final SpeedSettings theSettings, final RaceSeed theSeed) {
+        final List<Participant> participants = new ArrayList<>();
+        double start = 0;
+        for (RacerSpec racer : theSpec.getRacers()) {
+            final Participant p = new Participant(racer.getID(),
+                    racer.getName(), start, theTrack.getTrackLength(),
+                    racer.getSpeed(), theSettings, theSeed.forRacer(
+                            participants.size(), RaceSeed.Purpose.VELOCITY));
+            participants.add(p);
+            start -= theTrack.getTrackLength() * 0.01;
+        }
+        return participants;
+    }
+}
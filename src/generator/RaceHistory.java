@@ -0,0 +1,143 @@
+package generator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Race;
+import model.RaceSeed;
+import model.RaceSnapshot;
+import model.SpeedSettings;
+import model.track.Track;
+import output.RaceSink;
+import output.TeeSink;
+
+/**
+ * Answers "where was everyone at time t" for a race without regenerating it
+ * from the start.
+ *
+ * The race is run once with {@link Race}, taking a {@link RaceSnapshot} every
+ * interval milliseconds. A question about any time restores the snapshot just
+ * before it and steps forward from there, so it never steps more than the
+ * interval no matter how long the race is, and the answer is exactly what the
+ * race file says. Answers are worked out on the history's own race, so a
+ * RaceHistory can only be asked from one thread at a time.
+ */
+public final class RaceHistory {
+
+    private final Race myRace;
+    private final int myInterval;
+    private final List<RaceSnapshot> mySnapshots;
+    private final int myRaceTime;
+
+    private RaceHistory(final Race theRace, final int theInterval,
+            final List<RaceSnapshot> theSnapshots, final int theRaceTime) {
+        myRace = theRace;
+        myInterval = theInterval;
+        mySnapshots = theSnapshots;
+        myRaceTime = theRaceTime;
+    }
+
+    /**
+     * Runs the race described by theSpec with the object engine, taking a
+     * snapshot every theInterval milliseconds.
+     *
+     * @param theSpec     The race to run.
+     * @param theInterval The milliseconds between snapshots.
+     * @param theSink     Sent the whole race as it runs, the same as
+     *                    {@link RaceGenerator#generate(RaceSpec, RaceSink,
+     *                    RaceGenerator.ProgressListener)} sends it. May be
+     *                    null, it isn't closed.
+     * @return The history of the race.
+     * @throws IOException If theSink can't write.
+     */
+    public static RaceHistory record(final RaceSpec theSpec,
+            final int theInterval, final RaceSink theSink) throws IOException {
+        if (theInterval < 1) {
+            throw new IllegalArgumentException(
+                    "the snapshot interval must be at least 1");
+        }
+        theSpec.validate();
+        final Track track = RaceGenerator.createTrack(theSpec);
+        final SpeedSettings settings = theSpec.getSpeedSettings();
+        final RaceSeed seed = new RaceSeed(theSpec.getSeed());
+        final Race race = new Race(track, settings, theSpec.getLaps(),
+                theSpec.getTelemetryInterval(),
+                RaceGenerator.createParticipants(theSpec, track, settings,
+                        seed),
+                seed);
+
+        final RaceSink sink = theSink == null ? new TeeSink() : theSink;
+        RaceGenerator.sendHeader(theSpec, track, sink);
+        final List<RaceSnapshot> snapshots = new ArrayList<>();
+        while (race.stillGoing()) {
+            if (race.getTime() % theInterval == 0) {
+                snapshots.add(race.snapshot());
+            }
+            race.stepRace(sink);
+        }
+        sink.finish(race.getLastCrossingTime() + 1);
+        return new RaceHistory(race, theInterval, snapshots,
+                race.getLastCrossingTime() + 1);
+    }
+
+    /**
+     * Returns the state of the race after the given millisecond, so the
+     * positions are the ones a racer reporting telemetry at that time sends.
+     * Use -1 for the start grid.
+     *
+     * @param theTime The millisecond, from -1 to the race time less one.
+     * @return The state of the race.
+     */
+    public RaceSnapshot stateAt(final int theTime) {
+        if (theTime < -1 || theTime >= myRaceTime) {
+            throw new IllegalArgumentException("the race runs from -1 to "
+                    + (myRaceTime - 1) + " but the time was " + theTime);
+        }
+        final int target = theTime + 1;
+        final RaceSnapshot nearest = mySnapshots.get(Math.min(
+                target / myInterval, mySnapshots.size() - 1));
+        if (nearest.getTime() == target) {
+            return nearest;
+        }
+        myRace.restore(nearest);
+        try (RaceSink sink = new TeeSink()) {
+            while (myRace.getTime() < target) {
+                myRace.stepRace(sink);
+            }
+        } catch (IOException e) {
+            // Can't happen, nothing is written anywhere
+            throw new UncheckedIOException(e);
+        }
+        return myRace.snapshot();
+    }
+
+    /**
+     * Returns the length of the race in milliseconds.
+     *
+     * @return The length of the race.
+     */
+    public int getRaceTime() {
+        return myRaceTime;
+    }
+
+    /**
+     * Returns the milliseconds between snapshots, the most any question has
+     * to step the race forward.
+     *
+     * @return The snapshot interval.
+     */
+    public int getInterval() {
+        return myInterval;
+    }
+
+    /**
+     * Returns how many snapshots were taken while the race was recorded.
+     *
+     * @return The number of snapshots.
+     */
+    public int getSnapshotCount() {
+        return mySnapshots.size();
+    }
+}
@@ -0,0 +1,519 @@
+package generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import model.ParticipantSpeed;
+import model.SpeedSettings;
+import model.track.TrackSpeed;
+
+/**
+ * A RaceSpec holds everything needed to generate a race file without the GUI:
+ * the track, the section speeds and multipliers, the speed brackets, the
+ * number of laps, the telemetry interval and the roster.
+ *
+ * Specs are usually loaded from a properties file, for example:
+ *
+ * <pre>
+ * name=My305Race
+ * track.length=500000
+ * track.xRatio=2
+ * track.yRatio=1
+ * track.sections=SLOW,MEDIUM,FAST,SLOW,MEDIUM,FAST
+ * multiplier.slow=0.5
+ * multiplier.medium=1.0
+ * multiplier.fast=1.5
+ * bracket.fast.velocity=10.75
+ * bracket.fast.range=1
+ * laps=1
+ * telemetryInterval=10
+ * racers=12:Myles:FAST,7:Sally:SLOW
+ * roster=racers.csv
+ * roster.generate=100000
+ * seed=305
+ * engine=array
+ * threads=8
+ * </pre>
+ *
+ * The roster is built from the racers listed in racers, then the ones in the
+ * roster CSV file (see {@link Roster} for the format), then roster.generate
+ * generated racers, in that order. IDs and names must be unique. A relative
+ * roster path is resolved against the directory of the spec file.
+ *
+ * Any key that is left out keeps the same default the GUI starts with. The
+ * seed defaults to a random one, the engine to {@link Engine#OBJECT} and the
+ * threads to 1. More than one thread steps the racers of each tick in
+ * parallel, which only the array engine supports; the race generated is the
+ * same either way.
+ */
+public class RaceSpec {
+
+    /**
+     * The race engines a spec can be generated with.
+     */
+    public enum Engine {
+        /** One Participant object per racer, see model.Race. */
+        OBJECT,
+        /** Parallel primitive arrays for big fields, see model.ArrayRace. */
+        ARRAY,
+        /**
+         * Skips the ticks where nothing is reported, see model.EventRace. The
+         * race follows the same rules, but telemetry is timed differently.
+         */
+        EVENT
+    }
+
+    /** The number of sections on an OvalTrack. */
+    public static final int NUM_SECTIONS = 6;
+
+    private String myName;
+    private int myTrackLength;
+    private int myXRatio;
+    private int myYRatio;
+    private List<TrackSpeed> mySections;
+    private double[] myMultipliers;
+    private double[] myBracketVelocities;
+    private double[] myBracketRanges;
+    private int myLaps;
+    private int myTelemetryInterval;
+    private Roster myRoster;
+    private long mySeed;
+    private Engine myEngine;
+    private int myThreads;
+
+    /**
+     * Constructs a RaceSpec with the same defaults the GUI starts with and an
+     * empty roster.
+     */
+    public RaceSpec() {
+        myName = "My305Race";
+        myTrackLength = 500000;
+        myXRatio = 2;
+        myYRatio = 1;
+        mySections = new ArrayList<>();
+        Collections.addAll(mySections, TrackSpeed.SLOW, TrackSpeed.MEDIUM,
+                TrackSpeed.FAST, TrackSpeed.SLOW, TrackSpeed.MEDIUM,
+                TrackSpeed.FAST);
+        myMultipliers = new double[TrackSpeed.values().length];
+        for (TrackSpeed speed : TrackSpeed.values()) {
+            myMultipliers[speed.ordinal()] = speed.getMultiplier();
+        }
+        myBracketVelocities = new double[ParticipantSpeed.values().length];
+        myBracketRanges = new double[ParticipantSpeed.values().length];
+        for (ParticipantSpeed speed : ParticipantSpeed.values()) {
+            myBracketVelocities[speed.ordinal()] = speed.getVelocity();
+            myBracketRanges[speed.ordinal()] = speed.getRange();
+        }
+        myLaps = 1;
+        myTelemetryInterval = 10;
+        myRoster = new Roster();
+        mySeed = new Random().nextLong();
+        myEngine = Engine.OBJECT;
+        myThreads = 1;
+    }
+
+    /**
+     * Loads a RaceSpec from the given properties file.
+     *
+     * @param theFile The properties file to read.
+     * @return The loaded RaceSpec.
+     * @throws IOException If the file can't be read.
+     */
+    public static RaceSpec load(final File theFile) throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(theFile)) {
+            properties.load(in);
+        }
+        return fromProperties(properties, directoryOf(theFile));
+    }
+
+    /**
+     * Builds a RaceSpec from the given properties, see the class comment for
+     * the recognized keys. A relative roster path is resolved against the
+     * working directory.
+     *
+     * @param theProperties The properties to read.
+     * @return The RaceSpec.
+     * @throws IllegalArgumentException If a value can't be parsed.
+     * @throws UncheckedIOException     If the roster file can't be read.
+     */
+    public static RaceSpec fromProperties(final Properties theProperties) {
+        return fromProperties(theProperties, null);
+    }
+
+    /**
+     * Builds a RaceSpec from the given properties, see the class comment for
+     * the recognized keys.
+     *
+     * @param theProperties The properties to read.
+     * @param theBase       The directory a relative roster path is resolved
+     *                      against, usually the spec file's, see
+     *                      {@link #directoryOf(File)}. Null for the working
+     *                      directory.
+     * @return The RaceSpec.
+     * @throws IllegalArgumentException If a value can't be parsed.
+     * @throws UncheckedIOException     If the roster file can't be read.
+     */
+    public static RaceSpec fromProperties(final Properties theProperties,
+            final File theBase) {
+        final RaceSpec spec = new RaceSpec();
+        spec.setName(theProperties.getProperty("name", spec.getName()));
+        spec.setTrackLength(intProperty(theProperties, "track.length",
+                spec.getTrackLength()));
+        spec.setXRatio(intProperty(theProperties, "track.xRatio",
+                spec.getXRatio()));
+        spec.setYRatio(intProperty(theProperties, "track.yRatio",
+                spec.getYRatio()));
+
+        final String sections = theProperties.getProperty("track.sections");
+        if (sections != null) {
+            final List<TrackSpeed> speeds = new ArrayList<>();
+            for (String section : sections.split(",")) {
+                speeds.add(TrackSpeed.valueOf(section.trim().toUpperCase()));
+            }
+            spec.setSections(speeds);
+        }
+
+        for (TrackSpeed speed : TrackSpeed.values()) {
+            final String key = "multiplier." + speed.name().toLowerCase();
+            spec.setMultiplier(speed, doubleProperty(theProperties, key,
+                    spec.getMultiplier(speed)));
+        }
+        for (ParticipantSpeed speed : ParticipantSpeed.values()) {
+            final String key = "bracket." + speed.name().toLowerCase();
+            spec.setBracket(speed,
+                    doubleProperty(theProperties, key + ".velocity",
+                            spec.getBracketVelocity(speed)),
+                    doubleProperty(theProperties, key + ".range",
+                            spec.getBracketRange(speed)));
+        }
+
+        spec.setLaps(intProperty(theProperties, "laps", spec.getLaps()));
+        spec.setTelemetryInterval(intProperty(theProperties,
+                "telemetryInterval", spec.getTelemetryInterval()));
+
+        final String seed = theProperties.getProperty("seed");
+        if (seed != null) {
+            try {
+                spec.setSeed(Long.parseLong(seed.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "seed is not an integer: " + seed, e);
+            }
+        }
+        final String engine = theProperties.getProperty("engine");
+        if (engine != null) {
+            spec.setEngine(Engine.valueOf(engine.trim().toUpperCase()));
+        }
+        spec.setThreads(intProperty(theProperties, "threads",
+                spec.getThreads()));
+
+        final String racers = theProperties.getProperty("racers");
+        if (racers != null && !racers.trim().isEmpty()) {
+            for (String racer : racers.split(",")) {
+                spec.addRacer(RacerSpec.parse(racer.trim()));
+            }
+        }
+        final String roster = theProperties.getProperty("roster");
+        if (roster != null) {
+            File rosterFile = new File(roster.trim());
+            if (theBase != null && !rosterFile.isAbsolute()) {
+                rosterFile = new File(theBase, roster.trim());
+            }
+            try {
+                spec.getRoster().readCsv(rosterFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        final int generated = intProperty(theProperties, "roster.generate", 0);
+        if (generated > 0) {
+            spec.getRoster().generate(generated, spec.getSeed());
+        }
+        return spec;
+    }
+
+    /**
+     * Returns the directory relative paths in theSpecFile are resolved
+     * against.
+     *
+     * @param theSpecFile The spec file.
+     * @return The directory the spec file is in.
+     */
+    public static File directoryOf(final File theSpecFile) {
+        return theSpecFile.getAbsoluteFile().getParentFile();
+    }
+
+    /**
+     * Checks that this spec describes a race that can be generated.
+     *
+     * @throws IllegalArgumentException If the spec is not valid.
+     */
+    public void validate() {
+        if (myTrackLength <= 0) {
+            throw new IllegalArgumentException(
+                    "track.length must be positive");
+        }
+        if (myYRatio > myXRatio) {
+            throw new IllegalArgumentException(
+                    "width must be greater than height");
+        }
+        if (mySections.size() != NUM_SECTIONS) {
+            throw new IllegalArgumentException("track.sections must list "
+                    + NUM_SECTIONS + " speeds");
+        }
+        if (myLaps <= 0) {
+            throw new IllegalArgumentException("laps must be positive");
+        }
+        if (myTelemetryInterval <= 0) {
+            throw new IllegalArgumentException(
+                    "telemetryInterval must be positive");
+        }
+        for (ParticipantSpeed speed : ParticipantSpeed.values()) {
+            // The expected race time is the track length over the velocity
+            // as an int, which needs at least 1.
+            if (!(getBracketVelocity(speed) >= 1)) {
+                throw new IllegalArgumentException("bracket."
+                        + speed.name().toLowerCase()
+                        + ".velocity must be at least 1");
+            }
+        }
+        if (myRoster.size() == 0) {
+            throw new IllegalArgumentException("racers must not be empty");
+        }
+        if (myThreads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (myThreads > 1 && myEngine != Engine.ARRAY) {
+            throw new IllegalArgumentException(
+                    "threads greater than 1 needs engine=array");
+        }
+    }
+
+    private static int intProperty(final Properties theProperties,
+            final String theKey, final int theDefault) {
+        final String value = theProperties.getProperty(theKey);
+        if (value == null) {
+            return theDefault;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    theKey + " is not an integer: " + value, e);
+        }
+    }
+
+    private static double doubleProperty(final Properties theProperties,
+            final String theKey, final double theDefault) {
+        final String value = theProperties.getProperty(theKey);
+        if (value == null) {
+            return theDefault;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    theKey + " is not a number: " + value, e);
+        }
+    }
+
+    public String getName() {
+        return myName;
+    }
+
+    public void setName(final String theName) {
+        myName = theName;
+    }
+
+    public int getTrackLength() {
+        return myTrackLength;
+    }
+
+    public void setTrackLength(final int theTrackLength) {
+        myTrackLength = theTrackLength;
+    }
+
+    public int getXRatio() {
+        return myXRatio;
+    }
+
+    public void setXRatio(final int theXRatio) {
+        myXRatio = theXRatio;
+    }
+
+    public int getYRatio() {
+        return myYRatio;
+    }
+
+    public void setYRatio(final int theYRatio) {
+        myYRatio = theYRatio;
+    }
+
+    public List<TrackSpeed> getSections() {
+        return mySections;
+    }
+
+    public void setSections(final List<TrackSpeed> theSections) {
+        mySections = new ArrayList<>(theSections);
+    }
+
+    public double getMultiplier(final TrackSpeed theSpeed) {
+        return myMultipliers[theSpeed.ordinal()];
+    }
+
+    public void setMultiplier(final TrackSpeed theSpeed,
+            final double theMultiplier) {
+        myMultipliers[theSpeed.ordinal()] = theMultiplier;
+    }
+
+    /**
+     * Returns a snapshot of the multipliers and brackets in this spec. Later
+     * changes to the spec don't affect it.
+     *
+     * @return The speed settings of this spec.
+     */
+    public SpeedSettings getSpeedSettings() {
+        return new SpeedSettings(myMultipliers, myBracketVelocities,
+                myBracketRanges);
+    }
+
+    public double getBracketVelocity(final ParticipantSpeed theSpeed) {
+        return myBracketVelocities[theSpeed.ordinal()];
+    }
+
+    public double getBracketRange(final ParticipantSpeed theSpeed) {
+        return myBracketRanges[theSpeed.ordinal()];
+    }
+
+    public void setBracket(final ParticipantSpeed theSpeed,
+            final double theVelocity, final double theRange) {
+        myBracketVelocities[theSpeed.ordinal()] = theVelocity;
+        myBracketRanges[theSpeed.ordinal()] = theRange;
+    }
+
+    public int getLaps() {
+        return myLaps;
+    }
+
+    public void setLaps(final int theLaps) {
+        myLaps = theLaps;
+    }
+
+    public int getTelemetryInterval() {
+        return myTelemetryInterval;
+    }
+
+    public void setTelemetryInterval(final int theTelemetryInterval) {
+        myTelemetryInterval = theTelemetryInterval;
+    }
+
+    public List<RacerSpec> getRacers() {
+        return myRoster.getRacers();
+    }
+
+    public Roster getRoster() {
+        return myRoster;
+    }
+
+    /**
+     * Adds a racer to the roster.
+     *
+     * @param theRacer The racer to add.
+     * @throws IllegalArgumentException If the ID or name is already taken.
+     */
+    public void addRacer(final RacerSpec theRacer) {
+        myRoster.add(theRacer);
+    }
+
+    public long getSeed() {
+        return mySeed;
+    }
+
+    public void setSeed(final long theSeed) {
+        mySeed = theSeed;
+    }
+
+    public Engine getEngine() {
+        return myEngine;
+    }
+
+    public void setEngine(final Engine theEngine) {
+        myEngine = theEngine;
+    }
+
+    public int getThreads() {
+        return myThreads;
+    }
+
+    public void setThreads(final int theThreads) {
+        myThreads = theThreads;
+    }
+
+    /**
+     * A single entry on the roster.
+     */
+    public static final class RacerSpec {
+
+        private final int myID;
+        private final String myName;
+        private final ParticipantSpeed mySpeed;
+
+        /**
+         * Constructs a new RacerSpec.
+         *
+         * @param theID    The racer's ID.
+         * @param theName  The racer's name.
+         * @param theSpeed The racer's speed bracket.
+         */
+        public RacerSpec(final int theID, final String theName,
+                final ParticipantSpeed theSpeed) {
+            myID = theID;
+            myName = theName;
+            mySpeed = theSpeed;
+        }
+
+        /**
+         * Parses a racer in the form "id:name:bracket".
+         *
+         * @param theRacer The racer to parse.
+         * @return The parsed RacerSpec.
+         * @throws IllegalArgumentException If the racer can't be parsed.
+         */
+        public static RacerSpec parse(final String theRacer) {
+            final String[] parts = theRacer.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException(
+                        "racer must be id:name:bracket but was " + theRacer);
+            }
+            try {
+                return new RacerSpec(Integer.parseInt(parts[0].trim()),
+                        parts[1].trim(), ParticipantSpeed
+                                .valueOf(parts[2].trim().toUpperCase()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        "racer id is not an integer: " + theRacer, e);
+            }
+        }
+
+        public int getID() {
+            return myID;
+        }
+
+        public String getName() {
+            return myName;
+        }
+
+        public ParticipantSpeed getSpeed() {
+            return mySpeed;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package metrics;
+
+import java.io.IOException;
+
+import output.RaceFile;
+
+/**
+ * A RaceFile that counts the bytes it passes on, and on sampled ticks times
+ * how long the file they are passed on to takes to write them.
+ */
+final class MeteredRaceFile implements RaceFile {
+
+    private final RaceFile myFile;
+    private final RaceMetrics myMetrics;
+
+    MeteredRaceFile(final RaceFile theFile, final RaceMetrics theMetrics) {
+        myFile = theFile;
+        myMetrics = theMetrics;
+    }
+
+    @Override
+    public void write(final byte[] theBytes, final int theOffset,
+            final int theLength) throws IOException {
+        myMetrics.written(theLength);
+        if (!myMetrics.isSampling()) {
+            myFile.write(theBytes, theOffset, theLength);
+            return;
+        }
+        final long start = System.nanoTime();
+        myFile.write(theBytes, theOffset, theLength);
+        myMetrics.add(RaceMetrics.Phase.WRITE, start);
+    }
+
+    @Override
+    public long position() {
+        return myFile.position();
+    }
+
+    @Override
+    public void patch(final long thePosition, final byte[] theBytes)
+            throws IOException {
+        myFile.patch(thePosition, theBytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            myFile.close();
+        } finally {
+            myMetrics.fileClosed();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package metrics;
+
+import java.io.IOException;
+
+import output.RaceSink;
+
+/**
+ * A RaceSink that counts the events it passes on, and on sampled ticks times
+ * how long the sink they are passed on to takes.
+ */
+final class MeteredSink implements RaceSink {
+
+    private final RaceSink mySink;
+    private final RaceMetrics myMetrics;
+
+    MeteredSink(final RaceSink theSink, final RaceMetrics theMetrics) {
+        mySink = theSink;
+        myMetrics = theMetrics;
+    }
+
+    @Override
+    public void raceHeader(final String theRaceName, final String theTrackName,
+            final int theWidthRatio, final int theHeightRatio,
+            final int theDistance, final int theExpectedTime,
+            final int theNumParticipants) throws IOException {
+        myMetrics.headerSent(theNumParticipants, theExpectedTime);
+        final long start = start();
+        mySink.raceHeader(theRaceName, theTrackName, theWidthRatio,
+                theHeightRatio, theDistance, theExpectedTime,
+                theNumParticipants);
+        end(start);
+    }
+
+    @Override
+    public void racer(final int theID, final String theName,
+            final double theStartPosition) throws IOException {
+        final long start = start();
+        mySink.racer(theID, theName, theStartPosition);
+        end(start);
+    }
+
+    @Override
+    public void telemetry(final int theTime, final int theID,
+            final double thePosition, final int theLap) throws IOException {
+        final long start = start();
+        mySink.telemetry(theTime, theID, thePosition, theLap);
+        end(start);
+    }
+
+    @Override
+    public void leaderBoard(final int theTime, final int[] theRacerIDs)
+            throws IOException {
+        final long start = start();
+        mySink.leaderBoard(theTime, theRacerIDs);
+        end(start);
+    }
+
+    @Override
+    public void crossing(final int theTime, final int theID, final int theLap,
+            final boolean theFinished) throws IOException {
+        if (theFinished) {
+            myMetrics.racerFinished();
+        }
+        final long start = start();
+        mySink.crossing(theTime, theID, theLap, theFinished);
+        end(start);
+    }
+
+    @Override
+    public void finish(final int theRaceTime) throws IOException {
+        final long start = start();
+        mySink.finish(theRaceTime);
+        end(start);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mySink.close();
+    }
+
+    /**
+     * Returns the time now if the tick is sampled, 0 if it isn't.
+     */
+    private long start() {
+        return myMetrics.isSampling() ? System.nanoTime() : 0;
+    }
+
+    private void end(final long theStart) {
+        myMetrics.eventSent();
+        if (theStart != 0) {
+            myMetrics.add(RaceMetrics.Phase.ENCODE, theStart);
+        }
+    }
+}
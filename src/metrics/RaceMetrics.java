@@ -0,0 +1,471 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import output.RaceFile;
+import output.RaceSink;
+import util.LatencyHistogram;
+
+/**
+ * Measures one race as it is generated: how many ticks, events and bytes it
+ * has made and how fast, how many racers are still running, and how long
+ * each {@link Phase} of a tick takes. The numbers can be read at any time
+ * from any thread, directly or as an MXBean once {@link #register()}ed, and
+ * every sampled tick and the whole run are also recorded as JFR events
+ * ({@link RaceTickEvent}, {@link RaceRunEvent}) whenever a flight recording
+ * has them enabled.
+ *
+ * A RaceMetrics measures a single race. Only the thread generating it
+ * writes to it, so counting is plain arithmetic on fields, and the phases are
+ * only timed every {@code sampleInterval} ticks, so leaving it on costs a few
+ * percent at most. What readers see is published on those sampled ticks and
+ * at the end of the race, so it can be up to one interval behind.
+ *
+ * A race is measured by passing its RaceMetrics to
+ * {@link generator.RaceGenerator}, which meters the sink and tells the engine
+ * to time its phases. Files wrapped with {@link #meter(RaceFile)} have their
+ * bytes counted and writes timed too.
+ */
+public final class RaceMetrics implements RaceMetricsMXBean {
+
+    /** How often the phases are timed by default, in ticks. */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    /**
+     * The parts a tick of a race is made of. The engine phases don't include
+     * sending events, which is {@link #ENCODE}, and encoding doesn't include
+     * {@link #WRITE}. Engines that step every racer in one go time it all as
+     * {@link #STEP}.
+     */
+    public enum Phase {
+        /** Working out each racer's track and acceleration constraints. */
+        CONSTRAINTS,
+        /** Moving each racer. */
+        STEP,
+        /** Sorting the leader board. */
+        LEADER_BOARD,
+        /** Finding the racers that finished. */
+        CROSSINGS,
+        /** Formatting events. */
+        ENCODE,
+        /** Writing bytes to the file. */
+        WRITE
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final String myName;
+    private final int mySampleInterval;
+    private final Map<Phase, LatencyHistogram> myHistograms;
+    private final long[] myTickNanos;
+    private ObjectName myObjectName;
+
+    // Written only by the generating thread
+    private boolean mySampling;
+    private long myTicks;
+    private long myEvents;
+    private long myBytes;
+    private int myRacers;
+    private int myFinishedRacers;
+    private RaceRunEvent myRunEvent;
+
+    // Published for readers
+    private volatile long myPublishedTicks;
+    private volatile long myPublishedEvents;
+    private volatile long myPublishedBytes;
+    private volatile int myPublishedRaceTime;
+    private volatile int myPublishedRacers;
+    private volatile int myPublishedFinishedRacers;
+    private volatile int myPublishedExpectedTime;
+    private volatile long myPublishedStart;
+    private volatile long myPublishedEnd;
+
+    /**
+     * Constructs a RaceMetrics that times the phases every
+     * {@value #DEFAULT_SAMPLE_INTERVAL} ticks.
+     *
+     * @param theName The name of the race.
+     */
+    public RaceMetrics(final String theName) {
+        this(theName, DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Constructs a RaceMetrics that times the phases every theSampleInterval
+     * ticks.
+     *
+     * @param theName           The name of the race.
+     * @param theSampleInterval How often to time the phases, 1 for every
+     *                          tick.
+     */
+    public RaceMetrics(final String theName, final int theSampleInterval) {
+        if (theSampleInterval < 1) {
+            throw new IllegalArgumentException(
+                    "the sample interval must be at least 1 but was "
+                            + theSampleInterval);
+        }
+        myName = theName;
+        mySampleInterval = theSampleInterval;
+        myHistograms = new EnumMap<>(Phase.class);
+        for (Phase phase : PHASES) {
+            myHistograms.put(phase, new LatencyHistogram());
+        }
+        myTickNanos = new long[PHASES.length];
+        mySampling = true;
+        myPublishedRaceTime = -1;
+    }
+
+    /**
+     * Wraps theSink so every event sent to it is counted, and the time taken
+     * to send them is timed as {@link Phase#ENCODE}.
+     *
+     * @param theSink The sink to meter.
+     * @return The metered sink, which closes theSink when it is closed.
+     */
+    public RaceSink meter(final RaceSink theSink) {
+        return new MeteredSink(theSink, this);
+    }
+
+    /**
+     * Wraps theFile so every byte written to it is counted, and the time taken
+     * to write them is timed as {@link Phase#WRITE}.
+     *
+     * @param theFile The file to meter.
+     * @return The metered file, which closes theFile when it is closed.
+     */
+    public RaceFile meter(final RaceFile theFile) {
+        return new MeteredRaceFile(theFile, this);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, under a name
+     * unique to this run.
+     *
+     * @return The name the metrics were registered under.
+     */
+    public synchronized ObjectName register() {
+        try {
+            final ObjectName name = new ObjectName("racegen:type=Race,name="
+                    + ObjectName.quote(myName) + ",run="
+                    + RUNS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    name);
+            myObjectName = name;
+            return name;
+        } catch (JMException e) {
+            throw new IllegalStateException(
+                    "could not register the metrics of " + myName, e);
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were
+     * registered.
+     */
+    public synchronized void unregister() {
+        if (myObjectName == null) {
+            return;
+        }
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(myObjectName);
+        } catch (JMException e) {
+            // Already gone
+        }
+        myObjectName = null;
+    }
+
+    /**
+     * Starts the clock for the rates and the run event. Called by the
+     * generator before the race is started.
+     */
+    public void raceStarted() {
+        myPublishedStart = System.nanoTime();
+        myRunEvent = new RaceRunEvent();
+        myRunEvent.begin();
+    }
+
+    /**
+     * Returns true if the current tick is one whose phases are timed. Engines
+     * check this once at the start of a tick.
+     *
+     * @return True if the phases should be timed.
+     */
+    public boolean isSampling() {
+        return mySampling;
+    }
+
+    /**
+     * Adds the time since theStart to thePhase of the current tick, only
+     * while {@link #isSampling()}.
+     *
+     * @param thePhase The phase the time was spent in.
+     * @param theStart When the phase started, from {@link System#nanoTime()}.
+     * @return The time now, for starting the next phase.
+     */
+    public long add(final Phase thePhase, final long theStart) {
+        final long now = System.nanoTime();
+        myTickNanos[thePhase.ordinal()] += now - theStart;
+        return now;
+    }
+
+    /**
+     * Ends a tick of the race, recording the phase times if it was sampled.
+     * Called by the generator after every step.
+     *
+     * @param theRaceTime The race time after the step.
+     */
+    public void tickDone(final int theRaceTime) {
+        myTicks++;
+        if (!mySampling) {
+            mySampling = myTicks % mySampleInterval == 0;
+            return;
+        }
+
+        // Writes happen in the middle of encoding, so take them out of it
+        myTickNanos[Phase.ENCODE.ordinal()] -=
+                myTickNanos[Phase.WRITE.ordinal()];
+        for (Phase phase : PHASES) {
+            if (myTickNanos[phase.ordinal()] > 0) {
+                myHistograms.get(phase).record(myTickNanos[phase.ordinal()]);
+            }
+        }
+
+        final RaceTickEvent event = new RaceTickEvent();
+        if (event.isEnabled()) {
+            event.raceName = myName;
+            event.raceTime = theRaceTime;
+            event.racersRunning = myRacers - myFinishedRacers;
+            event.constraints = myTickNanos[Phase.CONSTRAINTS.ordinal()];
+            event.step = myTickNanos[Phase.STEP.ordinal()];
+            event.leaderBoard = myTickNanos[Phase.LEADER_BOARD.ordinal()];
+            event.crossings = myTickNanos[Phase.CROSSINGS.ordinal()];
+            event.encode = myTickNanos[Phase.ENCODE.ordinal()];
+            event.write = myTickNanos[Phase.WRITE.ordinal()];
+            event.commit();
+        }
+
+        for (int i = 0; i < myTickNanos.length; i++) {
+            myTickNanos[i] = 0;
+        }
+        publish(theRaceTime);
+        mySampling = myTicks % mySampleInterval == 0;
+    }
+
+    /**
+     * Ends the race, publishing the final numbers and committing the run
+     * event. Called by the generator after the finish is sent.
+     *
+     * @param theRaceTime The length of the race.
+     */
+    public void raceFinished(final int theRaceTime) {
+        publish(theRaceTime);
+        myPublishedEnd = System.nanoTime();
+        if (myRunEvent != null) {
+            myRunEvent.end();
+            if (myRunEvent.shouldCommit()) {
+                myRunEvent.raceName = myName;
+                myRunEvent.raceTime = theRaceTime;
+                myRunEvent.racers = myRacers;
+                myRunEvent.ticks = myTicks;
+                myRunEvent.events = myEvents;
+                myRunEvent.bytes = myBytes;
+                myRunEvent.commit();
+            }
+            myRunEvent = null;
+        }
+    }
+
+    /**
+     * Returns the histogram of thePhase, in nanoseconds per sampled tick.
+     *
+     * @param thePhase The phase.
+     * @return The histogram.
+     */
+    public LatencyHistogram getHistogram(final Phase thePhase) {
+        return myHistograms.get(thePhase);
+    }
+
+    /**
+     * Returns the counts and rates on one line, then a line for each phase
+     * that was timed.
+     *
+     * @return The summary.
+     */
+    public String summary() {
+        final StringBuilder summary = new StringBuilder(String.format(
+                Locale.ROOT, "%s: %d ticks (%.0f/s), %d events (%.0f/s), "
+                        + "%d bytes, %d of %d racers finished",
+                myName, getTicks(), getTicksPerSecond(), getEvents(),
+                getEventsPerSecond(), getBytesWritten(), getRacersFinished(),
+                getRacersFinished() + getRacersRunning()));
+        for (Phase phase : PHASES) {
+            final LatencyHistogram histogram = myHistograms.get(phase);
+            if (histogram.getCount() > 0) {
+                summary.append(System.lineSeparator())
+                        .append(String.format(Locale.ROOT, "  %-12s ", phase))
+                        .append(histogram.summary());
+            }
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public String getRaceName() {
+        return myName;
+    }
+
+    @Override
+    public int getSampleInterval() {
+        return mySampleInterval;
+    }
+
+    @Override
+    public long getTicks() {
+        return myPublishedTicks;
+    }
+
+    @Override
+    public long getEvents() {
+        return myPublishedEvents;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return myPublishedBytes;
+    }
+
+    @Override
+    public double getTicksPerSecond() {
+        return perSecond(myPublishedTicks);
+    }
+
+    @Override
+    public double getEventsPerSecond() {
+        return perSecond(myPublishedEvents);
+    }
+
+    @Override
+    public int getRaceTime() {
+        return myPublishedRaceTime;
+    }
+
+    @Override
+    public int getExpectedTime() {
+        return myPublishedExpectedTime;
+    }
+
+    @Override
+    public int getRacersRunning() {
+        return myPublishedRacers - myPublishedFinishedRacers;
+    }
+
+    @Override
+    public int getRacersFinished() {
+        return myPublishedFinishedRacers;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return myPublishedEnd != 0;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMeanMicros() {
+        final Map<String, Double> means = new LinkedHashMap<>();
+        for (Phase phase : PHASES) {
+            means.put(phase.name(), myHistograms.get(phase).getMean() / 1e3);
+        }
+        return means;
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP99Micros() {
+        final Map<String, Double> p99s = new LinkedHashMap<>();
+        for (Phase phase : PHASES) {
+            p99s.put(phase.name(),
+                    myHistograms.get(phase).getValueAtPercentile(99) / 1e3);
+        }
+        return p99s;
+    }
+
+    @Override
+    public void resetHistograms() {
+        for (LatencyHistogram histogram : myHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    /**
+     * Counts an event sent to a metered sink.
+     */
+    void eventSent() {
+        myEvents++;
+    }
+
+    /**
+     * Takes the racer count and expected time from the race header.
+     */
+    void headerSent(final int theRacers, final int theExpectedTime) {
+        myRacers = theRacers;
+        myPublishedRacers = theRacers;
+        myPublishedExpectedTime = theExpectedTime;
+    }
+
+    /**
+     * Counts a racer finishing.
+     */
+    void racerFinished() {
+        myFinishedRacers++;
+    }
+
+    /**
+     * Counts the bytes written to a metered file.
+     */
+    void written(final int theBytes) {
+        myBytes += theBytes;
+    }
+
+    /**
+     * Publishes the bytes written after the race, when the files are closed.
+     */
+    void fileClosed() {
+        myPublishedBytes = myBytes;
+    }
+
+    private void publish(final int theRaceTime) {
+        myPublishedTicks = myTicks;
+        myPublishedEvents = myEvents;
+        myPublishedBytes = myBytes;
+        myPublishedFinishedRacers = myFinishedRacers;
+        myPublishedRaceTime = theRaceTime;
+    }
+
+    private double perSecond(final long theCount) {
+        final long start = myPublishedStart;
+        if (start == 0) {
+            return 0;
+        }
+        final long end = myPublishedEnd;
+        final long elapsed = (end != 0 ? end : System.nanoTime()) - start;
+        return elapsed <= 0 ? 0 : theCount * NANOS_PER_SECOND / elapsed;
+    }
+}
@@ -0,0 +1,80 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link RaceMetrics}, as seen in JConsole or any
+ * other JMX client under {@code racegen:type=Race}.
+ */
+public interface RaceMetricsMXBean {
+
+    String getRaceName();
+
+    /**
+     * Returns how often the phases are timed.
+     *
+     * @return The number of ticks between timed ticks.
+     */
+    int getSampleInterval();
+
+    long getTicks();
+
+    long getEvents();
+
+    long getBytesWritten();
+
+    /**
+     * Returns the ticks generated per second of wall clock time since the
+     * race started, until it finished.
+     *
+     * @return The tick rate.
+     */
+    double getTicksPerSecond();
+
+    /**
+     * Returns the events sent per second of wall clock time since the race
+     * started, until it finished.
+     *
+     * @return The event rate.
+     */
+    double getEventsPerSecond();
+
+    /**
+     * Returns how far the race has got, -1 before it starts.
+     *
+     * @return The race time in milliseconds.
+     */
+    int getRaceTime();
+
+    /**
+     * Returns the expected length of the race from its header.
+     *
+     * @return The expected race time in milliseconds.
+     */
+    int getExpectedTime();
+
+    int getRacersRunning();
+
+    int getRacersFinished();
+
+    boolean isFinished();
+
+    /**
+     * Returns the mean time of each phase per sampled tick.
+     *
+     * @return The mean in microseconds by phase name.
+     */
+    Map<String, Double> getPhaseMeanMicros();
+
+    /**
+     * Returns the 99th percentile time of each phase per sampled tick.
+     *
+     * @return The percentile in microseconds by phase name.
+     */
+    Map<String, Double> getPhaseP99Micros();
+
+    /**
+     * Empties the phase histograms, to measure from now on.
+     */
+    void resetHistograms();
+}
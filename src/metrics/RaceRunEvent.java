@@ -0,0 +1,41 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The generation of a whole race, from the first tick until the finish was
+ * sent, with what it made.
+ */
+@Name("racegen.RaceRun")
+@Label("Race Run")
+@Category("Race Generator")
+@Description("The generation of a whole race")
+@StackTrace(false)
+class RaceRunEvent extends Event {
+
+    @Label("Race Name")
+    String raceName;
+
+    @Label("Race Time")
+    @Description("The length of the race, in milliseconds")
+    int raceTime;
+
+    @Label("Racers")
+    int racers;
+
+    @Label("Ticks")
+    long ticks;
+
+    @Label("Events")
+    long events;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,57 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The time spent in each phase of one sampled tick, see
+ * {@link RaceMetrics.Phase}. Enabled in the default recording settings, and
+ * cheap because only every {@link RaceMetrics#getSampleInterval()}th tick is
+ * recorded.
+ */
+@Name("racegen.RaceTick")
+@Label("Race Tick")
+@Category("Race Generator")
+@Description("The time spent in each phase of a sampled tick")
+@StackTrace(false)
+class RaceTickEvent extends Event {
+
+    @Label("Race Name")
+    String raceName;
+
+    @Label("Race Time")
+    @Description("The race time after the tick, in milliseconds")
+    int raceTime;
+
+    @Label("Racers Running")
+    int racersRunning;
+
+    @Label("Constraints")
+    @Timespan(Timespan.NANOSECONDS)
+    long constraints;
+
+    @Label("Step")
+    @Timespan(Timespan.NANOSECONDS)
+    long step;
+
+    @Label("Leader Board")
+    @Timespan(Timespan.NANOSECONDS)
+    long leaderBoard;
+
+    @Label("Crossings")
+    @Timespan(Timespan.NANOSECONDS)
+    long crossings;
+
+    @Label("Encode")
+    @Timespan(Timespan.NANOSECONDS)
+    long encode;
+
+    @Label("Write")
+    @Timespan(Timespan.NANOSECONDS)
+    long write;
+}
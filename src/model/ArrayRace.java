@@ -0,0 +1,352 @@
+package model;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import metrics.RaceMetrics;
+import model.track.Track;
+import model.track.TrackSpeed;
+import output.RaceSink;
+
+/**
+ * A race engine for very large fields. Instead of a Participant object per
+ * racer, all of the racer state lives in parallel primitive arrays indexed by
+ * the racer's slot (its position in the list the race was built from), which
+ * keeps the footprint to roughly 85 bytes per racer and lets every phase of a
+ * tick run as a linear sweep over the arrays.
+ *
+ * Given participants in the same starting state and the same seed, an
+ * ArrayRace produces exactly the same events as {@link Race}.
+ *
+ * Within a tick a racer's movement only depends on its own state and the
+ * track, so with a ForkJoinPool the constraint and step phase is split across
+ * the pool by slot. Everything that depends on more than one racer (the
+ * order telemetry is sent in, the leader board and the crossings) runs after
+ * it on the calling thread, so the events are the same whichever way the race
+ * is stepped.
+ */
+public class ArrayRace implements RaceEngine {
+
+	// Splitting into smaller tasks than this costs more than it saves.
+	private static final int MIN_SLOTS_PER_TASK = 1024;
+
+	private final Track track;
+	private final SpeedSettings settings;
+	private final double[] sectionMultipliers;
+	private final double slowMultiplier;
+	private final int numLaps;
+	private final int timeSlice;
+	private final ForkJoinPool pool;
+	private final int slotsPerTask;
+	private final int size;
+	private int time;
+	private int lastCrossingTime;
+	private int racersStillGoing;
+	private RaceMetrics metrics;
+
+	// Racer state, indexed by slot
+	private final int[] ids;
+	private final String[] names;
+	private final ParticipantSpeed[] brackets;
+	private final long[] velocityRngStates;
+	private final long[] telemetryRngStates;
+	private final double[] positions;
+	private final double[] velocities;
+	private final double[] nextVelocities;
+	private final int[] laps;
+	private final byte[] regions;
+	private final boolean[] accelerating;
+	private final double[] accelerations;
+	private final double[] compoundingVelocities;
+	private final boolean[] finished;
+	private final boolean[] telemetryDue;
+
+	private final LeaderBoard leaderBoard;
+	private final int[] leaderBoardIds;
+
+	/**
+	 * Constructs an ArrayRace starting from the current state of the given
+	 * participants that steps every racer on the calling thread. The
+	 * participants themselves are not used after this.
+	 */
+	public ArrayRace(Track track, SpeedSettings settings, int numLaps, int telemetryInterval,
+			List<Participant> participants, RaceSeed seed) {
+		this(track, settings, numLaps, telemetryInterval, participants, seed, null);
+	}
+
+	/**
+	 * Constructs an ArrayRace starting from the current state of the given
+	 * participants that steps the racers on the given pool. The participants
+	 * themselves are not used after this.
+	 *
+	 * @param pool The pool to step racers on, or null to step them on the
+	 *             calling thread.
+	 */
+	public ArrayRace(Track track, SpeedSettings settings, int numLaps, int telemetryInterval,
+			List<Participant> participants, RaceSeed seed, ForkJoinPool pool) {
+		this.track = track;
+		this.pool = pool;
+		this.settings = settings;
+		sectionMultipliers = new double[track.getSectionCount()];
+		for (int section = 0; section < sectionMultipliers.length; section++) {
+			sectionMultipliers[section] = settings.getMultiplier(track.getSectionSpeed(section));
+		}
+		slowMultiplier = settings.getMultiplier(TrackSpeed.SLOW);
+		this.numLaps = numLaps;
+		this.timeSlice = telemetryInterval;
+		size = participants.size();
+		lastCrossingTime = -1;
+
+		ids = new int[size];
+		names = new String[size];
+		brackets = new ParticipantSpeed[size];
+		velocityRngStates = new long[size];
+		telemetryRngStates = new long[size];
+		positions = new double[size];
+		velocities = new double[size];
+		nextVelocities = new double[size];
+		laps = new int[size];
+		regions = new byte[size];
+		accelerating = new boolean[size];
+		accelerations = new double[size];
+		compoundingVelocities = new double[size];
+		finished = new boolean[size];
+		telemetryDue = new boolean[size];
+		slotsPerTask = pool == null ? size
+				: Math.max(MIN_SLOTS_PER_TASK, size / (pool.getParallelism() * 8));
+		leaderBoardIds = new int[size];
+
+		for (int slot = 0; slot < size; slot++) {
+			Participant p = participants.get(slot);
+			ids[slot] = p.getID();
+			names[slot] = p.getName();
+			brackets[slot] = p.getParticipantSpeed();
+			velocityRngStates[slot] = p.getVelocityRandom().getState();
+			telemetryRngStates[slot] = seed.forRacer(slot, RaceSeed.Purpose.TELEMETRY).getState();
+			positions[slot] = p.getPosition();
+			velocities[slot] = p.getVelocity();
+			nextVelocities[slot] = p.getNextVelocity();
+			laps[slot] = p.getLapNum();
+			regions[slot] = (byte) track.findRegion(positions[slot]);
+			leaderBoardIds[slot] = ids[slot];
+			if (laps[slot] < numLaps) {
+				racersStillGoing++;
+			}
+		}
+		leaderBoard = new LeaderBoard(laps, positions);
+	}
+
+	@Override
+	public void stepRace(RaceSink sink) throws IOException {
+		if (time == 0) {
+			setUpMessages(sink);
+		}
+
+		// The constraints are worked out as each racer is stepped, so they
+		// are timed together as the step
+		final boolean timed = metrics != null && metrics.isSampling();
+		long mark = timed ? System.nanoTime() : 0;
+		if (size <= slotsPerTask) {
+			stepSlots(0, size);
+		} else {
+			pool.invoke(new StepTask(0, size));
+		}
+		if (timed) {
+			metrics.add(RaceMetrics.Phase.STEP, mark);
+		}
+
+		// Telemetry is sent in leader board order, the same order Race steps
+		// racers in, so both engines send it in the same order.
+		for (int i = 0; i < size; i++) {
+			final int slot = leaderBoard.slotAt(i);
+			if (telemetryDue[slot]) {
+				sink.telemetry(time, ids[slot], positions[slot], laps[slot]);
+			}
+		}
+		newLeaderBoard(sink, timed);
+		mark = timed ? System.nanoTime() : 0;
+		crossingMessages(sink);
+		if (timed) {
+			metrics.add(RaceMetrics.Phase.CROSSINGS, mark);
+		}
+		time++;
+	}
+
+	@Override
+	public void setMetrics(RaceMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Steps the racers in the given range of slots. This only touches the state
+	 * of those racers, so ranges that don't overlap can be stepped at the same
+	 * time.
+	 */
+	private void stepSlots(int from, int to) {
+		for (int slot = from; slot < to; slot++) {
+			final double lastDistance = positions[slot];
+
+			step(slot, evaluateConstraints(slot));
+
+			// Check if we passed a gate, the same way TrackCursor.advance does
+			final int lastRegion = regions[slot];
+			final int region = track.advanceRegion(lastRegion, positions[slot]);
+			regions[slot] = (byte) region;
+			if (track.getRegionGate(region) - positions[slot] > track.getRegionGate(lastRegion) - lastDistance) {
+				accelerating[slot] = false;
+				velocities[slot] = nextVelocities[slot];
+				nextVelocities[slot] = settings.getNewVelocity(brackets[slot], velocityRngStates, slot);
+			}
+
+			// Add some granularity so telemetry doesn't all come in on the same timestamp for all racers.
+			telemetryDue[slot] = RaceRandom.nextInt(telemetryRngStates, slot, timeSlice) == 0 || time == 0;
+		}
+	}
+
+	/**
+	 * Starts acceleration if the racer needs it to reach its next speed by the
+	 * next gate and returns the track multiplier to apply this tick. This
+	 * mirrors Race.evaluateConstraints.
+	 */
+	private double evaluateConstraints(int slot) {
+		final double distance = positions[slot];
+		final double velocity = velocities[slot];
+		final int region = regions[slot];
+		final int section = track.getRegionSection(region);
+		final double multiplier = sectionMultipliers[section];
+
+		if (!accelerating[slot]) {
+			final double currentSpeed = multiplier * velocity;
+			final double nextSpeed = sectionMultipliers[track.nextSection(section)] * nextVelocities[slot];
+			final double speedDifference = nextSpeed - currentSpeed;
+			final double distanceToGate = track.getRegionGate(region) - distance;
+
+			if (speedDifference > 0) {
+				if (distanceToGate <= calculateDistanceForAcceleration(currentSpeed, nextSpeed,
+						Participant.DEFAULT_ACCELERATION)) {
+					startAccelerating(slot, Participant.DEFAULT_ACCELERATION, currentSpeed);
+				}
+			} else if (speedDifference < 0) {
+				if (distanceToGate <= calculateDistanceForAcceleration(nextSpeed, currentSpeed,
+						Participant.DEFAULT_DECELERATION)) {
+					startAccelerating(slot, -Participant.DEFAULT_DECELERATION, currentSpeed);
+				}
+			} else if (distance < 0) {
+				startAccelerating(slot, Participant.DEFAULT_ACCELERATION, slowMultiplier * velocity);
+			}
+		}
+
+		return distance < 0 ? slowMultiplier : multiplier;
+	}
+
+	private void startAccelerating(int slot, double acceleration, double startingVelocity) {
+		accelerating[slot] = true;
+		accelerations[slot] = acceleration;
+		compoundingVelocities[slot] = startingVelocity;
+	}
+
+	/**
+	 * Moves the racer forward, applying the track multiplier and then any
+	 * acceleration the same way Participant.step applies its constraints.
+	 */
+	private void step(int slot, double trackMultiplier) {
+		double velocity = velocities[slot] * trackMultiplier;
+		if (accelerating[slot]) {
+			compoundingVelocities[slot] += accelerations[slot];
+			double ratio = compoundingVelocities[slot] / velocity;
+			velocity = velocity * ratio;
+		}
+
+		positions[slot] += velocity;
+		if (positions[slot] >= track.getTrackLength()) {
+			laps[slot]++;
+			positions[slot] -= track.getTrackLength();
+		}
+	}
+
+	private double calculateDistanceForAcceleration(double initialVelocity, double finalVelocity, double acceleration) {
+		// t = (vf - vi) / a
+		double t = ((finalVelocity - initialVelocity) / acceleration);
+
+		// s = vi*t + (1/2)*a*t^2
+		return initialVelocity * t + 0.5 * acceleration * Math.pow(t, 2);
+	}
+
+	private void setUpMessages(RaceSink sink) throws IOException {
+		for (int slot = 0; slot < size; slot++) {
+			sink.racer(ids[slot], names[slot], positions[slot]);
+		}
+		sink.leaderBoard(0, leaderBoardIds);
+	}
+
+	private void newLeaderBoard(RaceSink sink, boolean timed) throws IOException {
+		final long start = timed ? System.nanoTime() : 0;
+		final boolean changed = leaderBoard.update();
+		if (changed) {
+			for (int rank = leaderBoard.getFirstChangedRank(); rank <= leaderBoard.getLastChangedRank(); rank++) {
+				leaderBoardIds[rank] = ids[leaderBoard.slotAt(rank)];
+			}
+		}
+		if (timed) {
+			metrics.add(RaceMetrics.Phase.LEADER_BOARD, start);
+		}
+		if (changed) {
+			sink.leaderBoard(time, leaderBoardIds);
+		}
+	}
+
+	private void crossingMessages(RaceSink sink) throws IOException {
+		for (int slot = 0; slot < size; slot++) {
+			if (!finished[slot] && laps[slot] == numLaps) {
+				finished[slot] = true;
+				racersStillGoing--;
+				lastCrossingTime = time;
+				sink.crossing(time, ids[slot], laps[slot], true);
+			}
+		}
+	}
+
+	/**
+	 * Steps a range of slots, splitting it in half until the pieces are small
+	 * enough to step directly.
+	 */
+	private final class StepTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		StepTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= slotsPerTask) {
+				stepSlots(from, to);
+			} else {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new StepTask(from, middle), new StepTask(middle, to));
+			}
+		}
+	}
+
+	@Override
+	public boolean stillGoing() {
+		return racersStillGoing > 0;
+	}
+
+	@Override
+	public int getTime() {
+		return time;
+	}
+
+	@Override
+	public int getLastCrossingTime() {
+		return lastCrossingTime;
+	}
+}
@@ -0,0 +1,678 @@
+package model;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import model.track.Track;
+import model.track.TrackSpeed;
+import output.RaceSink;
+import util.LongHeap;
+
+/**
+ * A race engine that only does work on the ticks where something is reported,
+ * for long races with sparse telemetry where almost every tick is uneventful.
+ *
+ * Between events a racer's motion is fully determined: it either moves at a
+ * constant velocity or compounds a constant acceleration, so the distance it
+ * has covered after k ticks of a phase is {@code linear * k + quadratic * k^2}.
+ * Each racer's phase lasts until it reaches the next region of the track
+ * (where it may pass a gate and pick a new velocity or finish a lap) or the
+ * point where it has to start speeding up or slowing down for the next gate,
+ * and those ticks are worked out from the same rules {@link Race} applies
+ * every tick. The leader board is kept as a kinetic sorted list: every pair of
+ * neighbouring racers has the tick the one behind first gets ahead, so only
+ * actual overtakes cost anything. Telemetry ticks are drawn as geometric gaps
+ * with the same odds as Race's one in telemetryInterval draw per tick.
+ *
+ * The race this produces follows the same rules as Race, but not the same
+ * random draws for telemetry, and positions are computed in closed form
+ * instead of summed tick by tick, so racers agree with Race to within floating
+ * point rounding rather than exactly. Velocity draws do come from the same
+ * per-racer generators in the same order.
+ */
+public class EventRace implements RaceEngine {
+
+	// Events are packed into a long as the tick, then the kind, then the
+	// slot, so the queue hands them out in tick order and within a tick in the
+	// order the kinds have to be handled.
+	private static final int TELEMETRY = 0;
+	private static final int PHASE_END = 1;
+	private static final int OVERTAKE = 2;
+	private static final int SLOT_BITS = 30;
+	private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+
+	/** The tick of something that never happens. */
+	private static final int NEVER = Integer.MAX_VALUE;
+
+	// How many ticks the exact checks look either side of a tick worked out
+	// with floating point, which is only ever off by one.
+	private static final int SEARCH_TICKS = 3;
+
+	private final Track track;
+	private final SpeedSettings settings;
+	private final double[] sectionMultipliers;
+	private final double slowMultiplier;
+	private final double trackLength;
+	private final int numLaps;
+	private final int timeSlice;
+	private final double telemetryLogOdds;
+	private final int size;
+	private int time;
+	private int lastCrossingTime;
+	private int racersStillGoing;
+
+	// Racer state, indexed by slot
+	private final int[] ids;
+	private final String[] names;
+	private final ParticipantSpeed[] brackets;
+	private final long[] velocityRngStates;
+	private final long[] telemetryRngStates;
+	private final double[] velocities;
+	private final double[] nextVelocities;
+	private final int[] regions;
+	private final boolean[] accelerating;
+	private final double[] accelerations;
+	private final double[] compoundingVelocities;
+	private final boolean[] finished;
+
+	// The phase each racer is in: where it was before the first tick of the
+	// phase, how far it moves in the ticks since, and the last tick of the
+	// phase.
+	private final int[] phaseStarts;
+	private final int[] phaseEnds;
+	private final double[] startPositions;
+	private final int[] startLaps;
+	private final double[] linear;
+	private final double[] quadratic;
+
+	private final int[] nextTelemetry;
+	private final int[] overtakes;
+
+	private final int[] order;
+	private final int[] ranks;
+	private final int[] leaderBoardIds;
+
+	private final LongHeap events;
+	private Trajectory[] trajectories;
+
+	// Scratch space for the tick being handled
+	private final int[] due;
+	private final int[] ended;
+	private final int[] crossed;
+	private final int[] touched;
+	private final int[] touchedStamps;
+	private int touchedCount;
+	private int stamp;
+	private int[] worklist;
+	private int worklistCount;
+
+	/**
+	 * Constructs an EventRace starting from the current state of the given
+	 * participants. The participants themselves are not used after this.
+	 */
+	public EventRace(Track track, SpeedSettings settings, int numLaps, int telemetryInterval,
+			List<Participant> participants, RaceSeed seed) {
+		if (participants.size() > SLOT_MASK) {
+			throw new IllegalArgumentException("too many participants");
+		}
+		this.track = track;
+		this.settings = settings;
+		sectionMultipliers = new double[track.getSectionCount()];
+		for (int section = 0; section < sectionMultipliers.length; section++) {
+			sectionMultipliers[section] = settings.getMultiplier(track.getSectionSpeed(section));
+		}
+		slowMultiplier = settings.getMultiplier(TrackSpeed.SLOW);
+		trackLength = track.getTrackLength();
+		this.numLaps = numLaps;
+		this.timeSlice = telemetryInterval;
+		telemetryLogOdds = Math.log(1 - 1.0 / telemetryInterval);
+		size = participants.size();
+		lastCrossingTime = -1;
+
+		ids = new int[size];
+		names = new String[size];
+		brackets = new ParticipantSpeed[size];
+		velocityRngStates = new long[size];
+		telemetryRngStates = new long[size];
+		velocities = new double[size];
+		nextVelocities = new double[size];
+		regions = new int[size];
+		accelerating = new boolean[size];
+		accelerations = new double[size];
+		compoundingVelocities = new double[size];
+		finished = new boolean[size];
+		phaseStarts = new int[size];
+		phaseEnds = new int[size];
+		startPositions = new double[size];
+		startLaps = new int[size];
+		linear = new double[size];
+		quadratic = new double[size];
+		nextTelemetry = new int[size];
+		overtakes = new int[size];
+		order = new int[size];
+		ranks = new int[size];
+		leaderBoardIds = new int[size];
+		events = new LongHeap(size * 3);
+		due = new int[size];
+		ended = new int[size];
+		crossed = new int[size];
+		touched = new int[size];
+		touchedStamps = new int[size];
+		worklist = new int[Math.max(16, size)];
+		Arrays.fill(overtakes, NEVER);
+
+		for (int slot = 0; slot < size; slot++) {
+			Participant p = participants.get(slot);
+			ids[slot] = p.getID();
+			names[slot] = p.getName();
+			brackets[slot] = p.getParticipantSpeed();
+			velocityRngStates[slot] = p.getVelocityRandom().getState();
+			telemetryRngStates[slot] = seed.forRacer(slot, RaceSeed.Purpose.TELEMETRY).getState();
+			velocities[slot] = p.getVelocity();
+			nextVelocities[slot] = p.getNextVelocity();
+			startPositions[slot] = p.getPosition();
+			startLaps[slot] = p.getLapNum();
+			regions[slot] = track.findRegion(p.getPosition());
+			order[slot] = slot;
+			ranks[slot] = slot;
+			leaderBoardIds[slot] = ids[slot];
+			if (startLaps[slot] < numLaps) {
+				racersStillGoing++;
+			}
+
+			// Everyone reports on the first tick
+			nextTelemetry[slot] = 0;
+			events.add(event(0, TELEMETRY, slot));
+			startPhase(slot, 0);
+		}
+		for (int slot = 1; slot < size; slot++) {
+			scheduleOvertake(slot, 0);
+		}
+	}
+
+	/**
+	 * Moves the race on to the next tick where anything is reported and sends
+	 * everything that happened on it, skipping every tick in between.
+	 */
+	@Override
+	public void stepRace(RaceSink sink) throws IOException {
+		if (time == 0) {
+			setUpMessages(sink);
+		}
+		if (events.isEmpty()) {
+			// Nobody is moving, which only happens with a zero velocity
+			time++;
+			return;
+		}
+
+		final int tick = tickOf(events.peek());
+		int dueCount = 0;
+		int endedCount = 0;
+		worklistCount = 0;
+		touchedCount = 0;
+		stamp++;
+		while (!events.isEmpty() && tickOf(events.peek()) == tick) {
+			final long event = events.poll();
+			final int slot = (int) (event & SLOT_MASK);
+			switch ((int) (event >>> SLOT_BITS) & 3) {
+			case TELEMETRY:
+				if (nextTelemetry[slot] == tick) {
+					due[dueCount++] = ranks[slot];
+				}
+				break;
+			case PHASE_END:
+				if (phaseEnds[slot] == tick) {
+					ended[endedCount++] = slot;
+				}
+				break;
+			default:
+				if (overtakes[slot] == tick) {
+					touch(slot);
+					addToWorklist(slot);
+				}
+				break;
+			}
+		}
+
+		// Telemetry goes out in leader board order, like Race steps racers
+		Arrays.sort(due, 0, dueCount);
+		for (int i = 0; i < dueCount; i++) {
+			final int slot = order[due[i]];
+			sink.telemetry(tick, ids[slot], positionAfter(slot, tick), lapAfter(slot, tick));
+			nextTelemetry[slot] = nextTelemetryTick(slot, tick);
+			if (nextTelemetry[slot] != NEVER) {
+				events.add(event(nextTelemetry[slot], TELEMETRY, slot));
+			}
+		}
+
+		int crossedCount = 0;
+		for (int i = 0; i < endedCount; i++) {
+			final int slot = ended[i];
+			if (endPhase(slot, tick)) {
+				crossed[crossedCount++] = slot;
+			}
+			// Either neighbour may have a new first overtake
+			touch(slot);
+			addToWorklist(slot);
+			if (ranks[slot] + 1 < size) {
+				touch(order[ranks[slot] + 1]);
+				addToWorklist(order[ranks[slot] + 1]);
+			}
+		}
+
+		updateLeaderBoard(sink, tick);
+
+		Arrays.sort(crossed, 0, crossedCount);
+		for (int i = 0; i < crossedCount; i++) {
+			final int slot = crossed[i];
+			sink.crossing(tick, ids[slot], numLaps, true);
+		}
+		time = tick + 1;
+	}
+
+	/**
+	 * Works out the phase a racer starts at the given tick from its state just
+	 * before it, the same way Race.evaluateConstraints decides whether to
+	 * accelerate, and schedules its end.
+	 */
+	private void startPhase(int slot, int start) {
+		phaseStarts[slot] = start;
+		final double position = startPositions[slot];
+		final int region = regions[slot];
+		long constantTicks = NEVER;
+
+		if (!accelerating[slot]) {
+			final int section = track.getRegionSection(region);
+			final double velocity = velocities[slot];
+			final double currentSpeed = sectionMultipliers[section] * velocity;
+			final double nextSpeed = sectionMultipliers[track.nextSection(section)] * nextVelocities[slot];
+			final double speedDifference = nextSpeed - currentSpeed;
+			final double gate = track.getRegionGate(region);
+			linear[slot] = velocity * (position < 0 ? slowMultiplier : sectionMultipliers[section]);
+			quadratic[slot] = 0;
+
+			double threshold = Double.NaN;
+			if (speedDifference > 0) {
+				threshold = calculateDistanceForAcceleration(currentSpeed, nextSpeed,
+						Participant.DEFAULT_ACCELERATION);
+				accelerations[slot] = Participant.DEFAULT_ACCELERATION;
+				compoundingVelocities[slot] = currentSpeed;
+			} else if (speedDifference < 0) {
+				threshold = calculateDistanceForAcceleration(nextSpeed, currentSpeed,
+						Participant.DEFAULT_DECELERATION);
+				accelerations[slot] = -Participant.DEFAULT_DECELERATION;
+				compoundingVelocities[slot] = currentSpeed;
+			} else if (position < 0) {
+				accelerations[slot] = Participant.DEFAULT_ACCELERATION;
+				compoundingVelocities[slot] = slowMultiplier * velocity;
+				constantTicks = 0;
+			}
+			if (threshold == threshold) {
+				constantTicks = ticksUntilAccelerating(position, linear[slot], gate, threshold);
+			}
+			if (constantTicks == 0) {
+				accelerating[slot] = true;
+			}
+		}
+		if (accelerating[slot]) {
+			// Each tick adds the acceleration and then moves by the compounded
+			// velocity, so k ticks move k * v + a * k * (k + 1) / 2.
+			linear[slot] = compoundingVelocities[slot] + accelerations[slot] / 2;
+			quadratic[slot] = accelerations[slot] / 2;
+			constantTicks = NEVER;
+		}
+		if (trajectories != null) {
+			trajectories[slot].add(start, startLaps[slot], startPositions[slot], linear[slot], quadratic[slot]);
+		}
+
+		final double end = Math.min(track.getRegionEnd(region), trackLength);
+		final long ticks = Math.min(ticksToReach(slot, end), constantTicks);
+		phaseEnds[slot] = ticks >= NEVER - (long) start ? NEVER : (int) (start + ticks - 1);
+		if (phaseEnds[slot] != NEVER) {
+			events.add(event(phaseEnds[slot], PHASE_END, slot));
+		}
+	}
+
+	/**
+	 * Moves a racer to the end of its phase and starts the next one. The phase
+	 * ends either by reaching a new region, where the racer may pass a gate or
+	 * finish a lap, or at the point it has to start accelerating.
+	 *
+	 * @return True if the racer finished the race on this tick.
+	 */
+	private boolean endPhase(int slot, int tick) {
+		final long ticks = tick - phaseStarts[slot] + 1;
+		final double before = startPositions[slot] + moved(slot, ticks - 1);
+		double position = startPositions[slot] + moved(slot, ticks);
+		int lap = startLaps[slot];
+		boolean wrapped = false;
+		if (position >= trackLength) {
+			lap++;
+			position -= trackLength;
+			wrapped = true;
+		}
+		if (accelerating[slot]) {
+			compoundingVelocities[slot] += accelerations[slot] * ticks;
+		}
+		startPositions[slot] = position;
+		startLaps[slot] = lap;
+
+		final int lastRegion = regions[slot];
+		final int region = track.advanceRegion(lastRegion, position);
+		boolean finishedNow = false;
+		if (region != lastRegion || wrapped) {
+			regions[slot] = region;
+			// Check if we passed a gate, the same way TrackCursor.advance does
+			if (track.getRegionGate(region) - position > track.getRegionGate(lastRegion) - before) {
+				accelerating[slot] = false;
+				velocities[slot] = nextVelocities[slot];
+				nextVelocities[slot] = settings.getNewVelocity(brackets[slot], velocityRngStates, slot);
+			}
+			if (!finished[slot] && lap == numLaps) {
+				finished[slot] = true;
+				racersStillGoing--;
+				lastCrossingTime = tick;
+				finishedNow = true;
+			}
+		} else {
+			// The phase ended where the racer has to start accelerating
+			accelerating[slot] = true;
+		}
+		startPhase(slot, tick + 1);
+		return finishedNow;
+	}
+
+	/**
+	 * Returns how many ticks at the given velocity it takes before the racer
+	 * is within threshold of the gate, where Race would start accelerating.
+	 */
+	private long ticksUntilAccelerating(double position, double velocity, double gate, double threshold) {
+		if (gate - position <= threshold) {
+			return 0;
+		}
+		if (!(velocity > 0)) {
+			return NEVER;
+		}
+		final double estimate = Math.ceil((gate - threshold - position) / velocity);
+		if (!(estimate < NEVER)) {
+			return NEVER;
+		}
+		long ticks = Math.max(1, (long) estimate);
+		while (ticks > 1 && gate - (position + (ticks - 1) * velocity) <= threshold) {
+			ticks--;
+		}
+		while (gate - (position + ticks * velocity) > threshold) {
+			ticks++;
+		}
+		return ticks;
+	}
+
+	/**
+	 * Returns how many ticks of its phase it takes the racer to reach the given
+	 * distance, or NEVER if it slows to a stop first.
+	 */
+	private long ticksToReach(int slot, double distance) {
+		final double gap = distance - startPositions[slot];
+		final double b = linear[slot];
+		final double c = quadratic[slot];
+		// The first root of c * k^2 + b * k - gap, written so it doesn't lose
+		// precision when c is tiny.
+		final double discriminant = b * b + 4 * c * gap;
+		if (discriminant < 0 || !(b + Math.sqrt(discriminant) > 0)) {
+			return NEVER;
+		}
+		final double estimate = Math.ceil(2 * gap / (b + Math.sqrt(discriminant)));
+		if (!(estimate < NEVER)) {
+			return NEVER;
+		}
+		long ticks = Math.max(1, (long) estimate);
+		while (ticks > 1 && startPositions[slot] + moved(slot, ticks - 1) >= distance) {
+			ticks--;
+		}
+		for (int i = 0; startPositions[slot] + moved(slot, ticks) < distance; i++) {
+			if (i == SEARCH_TICKS) {
+				return NEVER;
+			}
+			ticks++;
+		}
+		return ticks;
+	}
+
+	/**
+	 * Returns how far the racer has moved in the first ticks of its phase.
+	 */
+	private double moved(int slot, long ticks) {
+		return linear[slot] * ticks + quadratic[slot] * ticks * ticks;
+	}
+
+	/**
+	 * Returns the racer's position after the given tick, which must be in its
+	 * current phase or the tick just before.
+	 */
+	private double positionAfter(int slot, int tick) {
+		final double position = startPositions[slot] + moved(slot, tick - phaseStarts[slot] + 1L);
+		// A phase ends on the tick the racer crosses the finish line
+		return position >= trackLength ? position - trackLength : position;
+	}
+
+	private int lapAfter(int slot, int tick) {
+		final double position = startPositions[slot] + moved(slot, tick - phaseStarts[slot] + 1L);
+		return position >= trackLength ? startLaps[slot] + 1 : startLaps[slot];
+	}
+
+	private boolean isAhead(int slot, int other, int tick) {
+		final int lap = lapAfter(slot, tick);
+		final int otherLap = lapAfter(other, tick);
+		if (lap != otherLap) {
+			return lap > otherLap;
+		}
+		return Double.compare(positionAfter(slot, tick), positionAfter(other, tick)) > 0;
+	}
+
+	/**
+	 * Puts the racers that overtook someone on this tick in their new places,
+	 * swapping neighbours like the insertion steps of LeaderBoard.update, and
+	 * works out the next overtake of every pair that changed.
+	 */
+	private void updateLeaderBoard(RaceSink sink, int tick) throws IOException {
+		int firstChanged = -1;
+		int lastChanged = -1;
+		while (worklistCount > 0) {
+			final int slot = worklist[--worklistCount];
+			final int rank = ranks[slot];
+			if (rank == 0) {
+				continue;
+			}
+			final int leader = order[rank - 1];
+			if (!isAhead(slot, leader, tick)) {
+				continue;
+			}
+			order[rank - 1] = slot;
+			ranks[slot] = rank - 1;
+			order[rank] = leader;
+			ranks[leader] = rank;
+			firstChanged = firstChanged < 0 ? rank - 1 : Math.min(firstChanged, rank - 1);
+			lastChanged = Math.max(lastChanged, rank);
+
+			// The racer may pass the next one too, and whoever is now behind
+			// the racer it passed may be ahead of it.
+			touch(slot);
+			touch(leader);
+			addToWorklist(slot);
+			if (rank + 1 < size) {
+				touch(order[rank + 1]);
+				addToWorklist(order[rank + 1]);
+			}
+		}
+
+		// Nobody is out of order on this tick now
+		for (int i = 0; i < touchedCount; i++) {
+			scheduleOvertake(touched[i], tick + 1);
+		}
+
+		if (firstChanged >= 0) {
+			for (int rank = firstChanged; rank <= lastChanged; rank++) {
+				leaderBoardIds[rank] = ids[order[rank]];
+			}
+			sink.leaderBoard(tick, leaderBoardIds);
+		}
+	}
+
+	/**
+	 * Works out the first tick from the given one that the racer gets ahead of
+	 * the racer in front of it, within both of their current phases, and
+	 * schedules it. Past the end of either phase the pair is looked at again
+	 * when the phase ends.
+	 */
+	private void scheduleOvertake(int slot, int from) {
+		final int rank = ranks[slot];
+		final int next = rank == 0 ? NEVER
+				: firstOvertake(slot, order[rank - 1], from, Math.min(phaseEnds[slot], phaseEnds[order[rank - 1]]));
+		if (next != overtakes[slot]) {
+			overtakes[slot] = next;
+			if (next != NEVER) {
+				events.add(event(next, OVERTAKE, slot));
+			}
+		}
+	}
+
+	private int firstOvertake(int slot, int leader, int from, int until) {
+		if (from > until) {
+			return NEVER;
+		}
+		if (isAhead(slot, leader, from)) {
+			return from;
+		}
+
+		// How far the racer is ahead x ticks after from is a + b * x + c * x^2
+		final long ticks = from - phaseStarts[slot] + 1L;
+		final long leaderTicks = from - phaseStarts[leader] + 1L;
+		final double a = (startLaps[slot] - startLaps[leader]) * trackLength + startPositions[slot]
+				+ moved(slot, ticks) - startPositions[leader] - moved(leader, leaderTicks);
+		final double b = linear[slot] + 2 * quadratic[slot] * ticks - linear[leader]
+				- 2 * quadratic[leader] * leaderTicks;
+		final double c = quadratic[slot] - quadratic[leader];
+
+		// It isn't ahead now, so it gets ahead where the gap next crosses zero
+		final double discriminant = b * b - 4 * a * c;
+		double estimate;
+		if (discriminant < 0) {
+			if (!(c > 0)) {
+				return NEVER;
+			}
+			estimate = 1;
+		} else {
+			final double root = Math.sqrt(discriminant);
+			if (b + root > 0) {
+				estimate = -2 * a / (b + root);
+			} else if (c != 0) {
+				estimate = (root - b) / (2 * c);
+			} else {
+				return NEVER;
+			}
+		}
+		if (!(estimate >= 0) || !(estimate <= until - from)) {
+			return NEVER;
+		}
+
+		int tick = from + (int) Math.max(1, Math.ceil(estimate));
+		if (tick > until) {
+			return NEVER;
+		}
+		for (int i = 0; i < SEARCH_TICKS && tick - 1 > from && isAhead(slot, leader, tick - 1); i++) {
+			tick--;
+		}
+		for (int i = 0; !isAhead(slot, leader, tick); i++) {
+			if (i == SEARCH_TICKS || tick >= until) {
+				return NEVER;
+			}
+			tick++;
+		}
+		return tick;
+	}
+
+	/**
+	 * Returns the next tick the racer sends telemetry after the given one. Race
+	 * sends it on each tick with odds of one in timeSlice, so the number of
+	 * ticks in between is geometric.
+	 */
+	private int nextTelemetryTick(int slot, int tick) {
+		if (timeSlice <= 1) {
+			return tick + 1;
+		}
+		final double gap = Math.floor(Math.log(1 - RaceRandom.nextDouble(telemetryRngStates, slot)) / telemetryLogOdds);
+		return gap < NEVER - 1L - tick ? tick + 1 + (int) gap : NEVER;
+	}
+
+	private void touch(int slot) {
+		if (touchedStamps[slot] != stamp) {
+			touchedStamps[slot] = stamp;
+			touched[touchedCount++] = slot;
+		}
+	}
+
+	private void addToWorklist(int slot) {
+		if (worklistCount == worklist.length) {
+			worklist = Arrays.copyOf(worklist, worklistCount * 2);
+		}
+		worklist[worklistCount++] = slot;
+	}
+
+	private static long event(int tick, int kind, int slot) {
+		return (long) tick << 32 | (long) kind << SLOT_BITS | slot;
+	}
+
+	private static int tickOf(long event) {
+		return (int) (event >>> 32);
+	}
+
+	private double calculateDistanceForAcceleration(double initialVelocity, double finalVelocity, double acceleration) {
+		// t = (vf - vi) / a
+		double t = ((finalVelocity - initialVelocity) / acceleration);
+
+		// s = vi*t + (1/2)*a*t^2
+		return initialVelocity * t + 0.5 * acceleration * Math.pow(t, 2);
+	}
+
+	/**
+	 * Starts recording every racer's trajectory from the current time on. The
+	 * trajectories are returned by slot and filled in as the race runs, so
+	 * once the race is over they cover all of it.
+	 *
+	 * @return The trajectory of each racer, by slot.
+	 */
+	public Trajectory[] recordTrajectories() {
+		if (trajectories == null) {
+			trajectories = new Trajectory[size];
+			for (int slot = 0; slot < size; slot++) {
+				trajectories[slot] = new Trajectory(trackLength);
+				trajectories[slot].add(phaseStarts[slot], startLaps[slot], startPositions[slot], linear[slot],
+						quadratic[slot]);
+			}
+		}
+		return trajectories.clone();
+	}
+
+	private void setUpMessages(RaceSink sink) throws IOException {
+		for (int slot = 0; slot < size; slot++) {
+			sink.racer(ids[slot], names[slot], startPositions[slot]);
+		}
+		sink.leaderBoard(0, leaderBoardIds);
+	}
+
+	@Override
+	public boolean stillGoing() {
+		return racersStillGoing > 0;
+	}
+
+	@Override
+	public int getTime() {
+		return time;
+	}
+
+	@Override
+	public int getLastCrossingTime() {
+		return lastCrossingTime;
+	}
+}
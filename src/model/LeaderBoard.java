@@ -0,0 +1,130 @@
+package model;
+
+/**
+ * Keeps racers sorted by lap and then position, from first to last.
+ *
+ * Racers are identified by slot, and the laps and positions are read from
+ * arrays owned by the race engine. Between ticks racers only move a little,
+ * so instead of copying and re-sorting everything, {@link #update()} repairs
+ * the previous order with insertion steps, which only swaps the racers that
+ * actually overtook someone. Racers that are level keep their previous order,
+ * exactly like a stable sort would.
+ */
+public class LeaderBoard {
+
+	private final int[] laps;
+	private final double[] positions;
+	private final int[] order;
+	private final int[] ranks;
+	private int firstChanged;
+	private int lastChanged;
+
+	/**
+	 * Constructs a LeaderBoard with the racers in slot order.
+	 *
+	 * @param laps      The laps of each racer by slot, read on every update.
+	 * @param positions The positions of each racer by slot, read on every
+	 *                  update.
+	 */
+	public LeaderBoard(int[] laps, double[] positions) {
+		this.laps = laps;
+		this.positions = positions;
+		order = new int[laps.length];
+		ranks = new int[laps.length];
+		for (int slot = 0; slot < order.length; slot++) {
+			order[slot] = slot;
+			ranks[slot] = slot;
+		}
+		firstChanged = -1;
+		lastChanged = -1;
+	}
+
+	/**
+	 * Brings the order up to date with the current laps and positions.
+	 *
+	 * @return True if any racer changed rank.
+	 */
+	public boolean update() {
+		firstChanged = -1;
+		lastChanged = -1;
+		for (int i = 1; i < order.length; i++) {
+			final int slot = order[i];
+			if (!isAhead(slot, order[i - 1])) {
+				continue;
+			}
+			int j = i - 1;
+			do {
+				order[j + 1] = order[j];
+				ranks[order[j + 1]] = j + 1;
+				j--;
+			} while (j >= 0 && isAhead(slot, order[j]));
+			order[j + 1] = slot;
+			ranks[slot] = j + 1;
+
+			if (firstChanged < 0 || j + 1 < firstChanged) {
+				firstChanged = j + 1;
+			}
+			lastChanged = Math.max(lastChanged, i);
+		}
+		return firstChanged >= 0;
+	}
+
+	private boolean isAhead(int slot, int other) {
+		if (laps[slot] != laps[other]) {
+			return laps[slot] > laps[other];
+		}
+		return Double.compare(positions[slot], positions[other]) > 0;
+	}
+
+	/**
+	 * Puts the racers in the given order, for example one saved in a
+	 * {@link RaceSnapshot}.
+	 *
+	 * @param slots The slot of the racer in each rank, 0 is first.
+	 */
+	public void setOrder(int[] slots) {
+		if (slots.length != order.length) {
+			throw new IllegalArgumentException("expected " + order.length + " racers");
+		}
+		for (int rank = 0; rank < slots.length; rank++) {
+			order[rank] = slots[rank];
+			ranks[slots[rank]] = rank;
+		}
+		firstChanged = -1;
+		lastChanged = -1;
+	}
+
+	/**
+	 * Returns the slot of the racer in the given rank, 0 is first.
+	 */
+	public int slotAt(int rank) {
+		return order[rank];
+	}
+
+	/**
+	 * Returns the rank of the racer in the given slot, 0 is first.
+	 */
+	public int rankOf(int slot) {
+		return ranks[slot];
+	}
+
+	/**
+	 * Returns the best rank that changed in the last update, or -1 if nothing
+	 * changed.
+	 */
+	public int getFirstChangedRank() {
+		return firstChanged;
+	}
+
+	/**
+	 * Returns the worst rank that changed in the last update, or -1 if nothing
+	 * changed.
+	 */
+	public int getLastChangedRank() {
+		return lastChanged;
+	}
+
+	public int size() {
+		return order.length;
+	}
+}
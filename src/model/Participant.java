@@ -1,17 +1,13 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 import model.track.TrackSpeed;
+import race_constraints.AccelerationConstraint;
 import race_constraints.ParticipantConstraint;
 import race_constraints.TrackSectionConstraint;
 
-import static java.lang.Math.ceil;
-
 /**
  * 
  * @author Myles Haynes, Peter Bae
@@ -20,7 +16,6 @@ public class Participant implements Comparable<Participant> {
 	public static final double DEFAULT_ACCELERATION = 0.0015;
 	public static final double DEFAULT_DECELERATION = 0.002;
 
-	private static Random rng = new Random();
 	private int myID;
 	private String myName;
 	private double myPosition;
@@ -29,17 +24,52 @@ public class Participant implements Comparable<Participant> {
 	private double myNextVelocity;
 	private int myLapNum;
 	private int myTrackLength;
-	private Map<String, ParticipantConstraint> myConstraints;
+	private final SpeedSettings mySettings;
+	private final RaceRandom myVelocityRng;
+
+	// The built in constraints have their own slots and are reused from tick to
+	// tick, anything else goes in myConstraints and is applied after them.
+	private final TrackSectionConstraint myTrackConstraint;
+	private boolean myHasTrackConstraint;
+	private final AccelerationConstraint myAccelerationConstraint;
+	private boolean myAccelerating;
+	private ParticipantConstraint[] myConstraints;
+	private int myConstraintCount;
 
 	public Participant(int id, String name, double startDistance, int trackLength, ParticipantSpeed speed) {
 		myID = id;
 		myName = name;
 		myPosition = startDistance;
 		mySpeedBracket = speed;
-		myVelocity = speed.getNewVelocity();
-		myNextVelocity = speed.getNewVelocity();
+		mySettings = SpeedSettings.DEFAULT;
+		myVelocityRng = new RaceRandom(ThreadLocalRandom.current().nextLong());
+		myVelocity = mySettings.getNewVelocity(speed, myVelocityRng);
+		myNextVelocity = mySettings.getNewVelocity(speed, myVelocityRng);
+		myTrackLength = trackLength;
+		myTrackConstraint = new TrackSectionConstraint(TrackSpeed.MEDIUM);
+		myAccelerationConstraint = new AccelerationConstraint(0, 0);
+		myConstraints = new ParticipantConstraint[0];
+	}
+
+	/**
+	 * Constructs a participant that reads its bracket and the track multipliers
+	 * from the given settings, and draws all of its velocities from the given
+	 * generator, which should be its own (see {@link RaceSeed}).
+	 */
+	public Participant(int id, String name, double startDistance, int trackLength, ParticipantSpeed speed,
+			SpeedSettings settings, RaceRandom velocityRng) {
+		myID = id;
+		myName = name;
+		myPosition = startDistance;
+		mySpeedBracket = speed;
+		mySettings = settings;
+		myVelocityRng = velocityRng;
+		myVelocity = settings.getNewVelocity(speed, velocityRng);
+		myNextVelocity = settings.getNewVelocity(speed, velocityRng);
 		myTrackLength = trackLength;
-		myConstraints = new HashMap<>();
+		myTrackConstraint = new TrackSectionConstraint(TrackSpeed.MEDIUM);
+		myAccelerationConstraint = new AccelerationConstraint(0, 0);
+		myConstraints = new ParticipantConstraint[0];
 	}
 
 //	public double step(SpeedClass speedClass) {
@@ -54,8 +84,16 @@ public class Participant implements Comparable<Participant> {
 
 	public double step() {
 		double velocity = myVelocity;
-		for (String condition : myConstraints.keySet()) {
-			velocity = myConstraints.get(condition).applyConstraint(velocity, mySpeedBracket);
+		// Track first, then acceleration, then everything else in the order it
+		// was added.
+		if (myHasTrackConstraint) {
+			velocity = myTrackConstraint.applyConstraint(velocity, mySpeedBracket);
+		}
+		if (myAccelerating) {
+			velocity = myAccelerationConstraint.applyConstraint(velocity, mySpeedBracket);
+		}
+		for (int i = 0; i < myConstraintCount; i++) {
+			velocity = myConstraints[i].applyConstraint(velocity, mySpeedBracket);
 		}
 
 		myPosition += velocity;
@@ -75,16 +113,72 @@ public class Participant implements Comparable<Participant> {
 		return mySpeedBracket;
 	}
 
-	public void addConstraint(String key, ParticipantConstraint rc) {
-		myConstraints.put(key, rc);
+	/**
+	 * Sets the speed of the track section the participant is on.
+	 */
+	public void setTrackSpeed(TrackSpeed speed) {
+		myTrackConstraint.setTrackSpeed(speed, mySettings.getMultiplier(speed));
+		myHasTrackConstraint = true;
+	}
+
+	/**
+	 * Starts accelerating (or decelerating for a negative acceleration) from
+	 * the given velocity until {@link #stopAccelerating()} is called.
+	 */
+	public void startAccelerating(double acceleration, double startingVelocity) {
+		myAccelerationConstraint.reset(acceleration, startingVelocity);
+		myAccelerating = true;
+	}
+
+	public void stopAccelerating() {
+		myAccelerating = false;
 	}
 
-	public void removeConstraint(String key) {
-		myConstraints.remove(key);
+	public boolean isAccelerating() {
+		return myAccelerating;
 	}
 
-	public boolean hasConstraint(String key) {
-		return myConstraints.containsKey(key);
+	double getAcceleration() {
+		return myAccelerationConstraint.getAcceleration();
+	}
+
+	double getCompoundingVelocity() {
+		return myAccelerationConstraint.getCompoundingVelocity();
+	}
+
+	/**
+	 * Puts the participant back where it was when a {@link RaceSnapshot} was
+	 * taken. Constraints added with {@link #addConstraint} are left alone.
+	 */
+	void restore(double position, int lap, double velocity, double nextVelocity, boolean accelerating,
+			double acceleration, double compoundingVelocity, long velocityRngState) {
+		myPosition = position;
+		myLapNum = lap;
+		myVelocity = velocity;
+		myNextVelocity = nextVelocity;
+		myAccelerating = accelerating;
+		myAccelerationConstraint.reset(acceleration, compoundingVelocity);
+		myVelocityRng.setState(velocityRngState);
+	}
+
+	/**
+	 * Adds a constraint that is applied after the track and acceleration.
+	 */
+	public void addConstraint(ParticipantConstraint rc) {
+		if (myConstraintCount == myConstraints.length) {
+			myConstraints = Arrays.copyOf(myConstraints, Math.max(4, myConstraintCount * 2));
+		}
+		myConstraints[myConstraintCount++] = rc;
+	}
+
+	public void removeConstraint(ParticipantConstraint rc) {
+		for (int i = 0; i < myConstraintCount; i++) {
+			if (myConstraints[i] == rc) {
+				System.arraycopy(myConstraints, i + 1, myConstraints, i, myConstraintCount - i - 1);
+				myConstraints[--myConstraintCount] = null;
+				return;
+			}
+		}
 	}
 
 	public double getPosition() {
@@ -102,7 +196,16 @@ public class Participant implements Comparable<Participant> {
 	// Whenever a participant crosses a gate we need to randomly select the next
 	// speed it is going to go.
 	public void calculateNextVelocity() {
-		myNextVelocity = mySpeedBracket.getNewVelocity();
+		myNextVelocity = mySettings.getNewVelocity(mySpeedBracket, myVelocityRng);
+	}
+
+	/**
+	 * Returns the generator this participant draws its velocities from, so an
+	 * engine that takes over the participant's state can carry on drawing from
+	 * it.
+	 */
+	RaceRandom getVelocityRandom() {
+		return myVelocityRng;
 	}
 	
 	public double getNextVelocity() {
@@ -132,23 +235,8 @@ public class Participant implements Comparable<Participant> {
 //		}
 	}
 
-	/**
-	 *
-	 * @return Random string like "Akdkdjfk"
-	 */
-	private static String buildRacerName() {
-		int lowerA = 97; // ascii value of lowercase 'a'
-		int upperA = 65; // ascii value of uppercase 'A'
-
-		StringBuilder name = new StringBuilder();
-
-		name.append((char) (upperA + rng.nextInt(26))); // 26 letters in alphabet.
-		for (int i = 0; i < 8; i++) {
-			name.append((char) (lowerA + rng.nextInt(26)));
-		}
-
-		return name.toString();
-
+	public int getID() {
+		return myID;
 	}
 
 	public String getRacerId() {
@@ -160,14 +248,15 @@ public class Participant implements Comparable<Participant> {
 		return myID + " : " + myPosition;
 	}
 
+	// Positions are compared exactly, rounding the difference made racers less
+	// than a unit apart compare as equal one way but not the other, which
+	// breaks the sort contract for big fields.
 	@Override
 	public int compareTo(Participant o) {
 		if (myLapNum != o.myLapNum) {
 			return o.myLapNum - myLapNum;
-		} else if (myPosition != o.myPosition) {
-			return (int) ceil(o.myPosition - myPosition);
 		} else {
-			return 0;
+			return Double.compare(o.myPosition, myPosition);
 		}
 	}
 
@@ -1,5 +1,9 @@
 package model;
 
+/**
+ * The speed brackets racers belong to. The velocity and range given here are
+ * only the defaults, each race reads its own from a {@link SpeedSettings}.
+ */
 public enum ParticipantSpeed {
 //	FASTEST("Fastest"),
 //	FASTER("Faster"),
@@ -9,9 +13,9 @@ public enum ParticipantSpeed {
 //	SLOWER("Slower"),
 //	SLOWEST("Slowest");
 	
-	private double myVelocity;
-	private double myRange;
-	private String myName;
+	private final double myVelocity;
+	private final double myRange;
+	private final String myName;
 	
 	ParticipantSpeed(String theName, double theVelocity, double theRange) {
 		myVelocity = theVelocity;
@@ -19,14 +23,6 @@ public enum ParticipantSpeed {
 		myName = theName;
 	}
 	
-	public void setVelocity(double velocity) {
-		myVelocity = velocity;
-	}
-	
-	public void setRange(double range) {
-		myRange = range;
-	}
-	
 	public double getVelocity() {
 		return myVelocity;
 	}
@@ -35,10 +31,6 @@ public enum ParticipantSpeed {
 		return myRange;
 	}
 	
-	public double getNewVelocity() {
-		return Math.random() * myRange * 2 + (myVelocity - myRange);
-	}
-	
 	@Override
 	public String toString() {
 		return myName;
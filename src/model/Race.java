@@ -1,75 +1,110 @@
 package model;
 
-import static java.lang.String.format;
-import static java.util.Collections.sort;
-import static java.util.stream.Collectors.joining;
-
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Random;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
 
+import metrics.RaceMetrics;
 import model.track.Track;
+import model.track.TrackCursor;
 import model.track.TrackSpeed;
-import race_constraints.AccelerationConstraint;
-import race_constraints.TrackSectionConstraint;
+import output.RaceSink;
 
 /**
  *
  * @author Myles Haynes, Peter Bae
  */
-public class Race {
+public class Race implements RaceEngine {
 
-	private static final Random myRand = new Random();
 	private final Track track;
+	private final SpeedSettings settings;
 	private List<Participant> participants;
 	private final int numLaps;
 	private int time;
-	private Random rng;
-	private Map<Participant, Integer> lastMessageTime;
+	private RaceRandom[] telemetryRngs;
 	private List<Participant> participantsNotFinished;
+	private Participant[] bySlot;
+	private TrackCursor[] cursors;
+	private int[] laps;
+	private double[] positions;
+	private LeaderBoard leaderBoard;
+	private int[] leaderBoardIds;
+	private int lastCrossingTime;
+	private RaceMetrics metrics;
 
 	private final int timeSlice;
 
 	public Race(Track track, int numLaps, int telemetryInterval, List<Participant> participants) {
+		this(track, SpeedSettings.DEFAULT, numLaps, telemetryInterval, participants,
+				new RaceSeed(ThreadLocalRandom.current().nextLong()));
+	}
+
+	/**
+	 * Constructs a race that reads the track multipliers from the given
+	 * settings and draws each racer's telemetry timing from its own generator
+	 * derived from the given seed. Participants draw their own velocities, so
+	 * the same settings, seed and participants always produce the same race.
+	 */
+	public Race(Track track, SpeedSettings settings, int numLaps, int telemetryInterval,
+			List<Participant> participants, RaceSeed seed) {
 		this.track = track;
+		this.settings = settings;
 		this.numLaps = numLaps;
 		this.participants = participants;
 		time = 0;
 		timeSlice = telemetryInterval;
-		lastMessageTime = new HashMap<>();
 		participantsNotFinished = new ArrayList<>();
 		participantsNotFinished.addAll(participants);
-
-		// fix for now so lastMessageTime starts populated
-		for (int i = 0; i < participants.size(); i++) {
-			lastMessageTime.put(participants.get(i), 0);
+		bySlot = participants.toArray(new Participant[0]);
+		laps = new int[bySlot.length];
+		positions = new double[bySlot.length];
+		leaderBoardIds = new int[bySlot.length];
+		cursors = new TrackCursor[bySlot.length];
+		telemetryRngs = new RaceRandom[bySlot.length];
+		for (int slot = 0; slot < bySlot.length; slot++) {
+			telemetryRngs[slot] = seed.forRacer(slot, RaceSeed.Purpose.TELEMETRY);
+			cursors[slot] = track.newCursor(bySlot[slot].getPosition());
+			laps[slot] = bySlot[slot].getLapNum();
+			positions[slot] = bySlot[slot].getPosition();
+			leaderBoardIds[slot] = bySlot[slot].getID();
 		}
-		rng = new Random();
+		leaderBoard = new LeaderBoard(laps, positions);
+		lastCrossingTime = -1;
 	}
 
-	public List<String> stepRace() {
+	/**
+	 * Steps the race forward one millisecond, sending everything that happened
+	 * to the given sink as it happens.
+	 *
+	 * @param sink The sink to send the race events to.
+	 * @throws IOException If the sink can't write.
+	 */
+	@Override
+	public void stepRace(RaceSink sink) throws IOException {
 //		System.out.println("Stepping race: " + time + " " + participants);
-		List<String> messages = new ArrayList<>();
 		if (time == 0) {
-			messages.addAll(setUpMessages());
-//			System.out.println(messages);
+			setUpMessages(sink);
 		}
-		for (Participant participant : participants) {
+		// Only some ticks are timed, so the clock is only read on those
+		final boolean timed = metrics != null && metrics.isSampling();
+		for (int rank = 0; rank < bySlot.length; rank++) {
+			final int slot = leaderBoard.slotAt(rank);
+			final Participant participant = bySlot[slot];
+			final TrackCursor cursor = cursors[slot];
+			long mark = timed ? System.nanoTime() : 0;
 			// Evaluate constraints
-			double lastDistance = participant.getPosition();
-			evaluateConstraints(participant);
+			evaluateConstraints(participant, cursor);
+			if (timed) {
+				mark = metrics.add(RaceMetrics.Phase.CONSTRAINTS, mark);
+			}
 
 			participant.step();
 
 			// Check if we passed a gate
-			if (track.getDistanceUntilNextTrackPiece(participant.getPosition()) > track
-					.getDistanceUntilNextTrackPiece(lastDistance)) {
+			if (cursor.advance(participant.getPosition())) {
 				// Remove acceleration constraint
-				participant.removeConstraint("Acceleration");
+				participant.stopAccelerating();
 
 				// Set the velocity accordingly
 				participant.setVelocity(participant.getNextVelocity());
@@ -77,67 +112,69 @@ public class Race {
 				// calculate next velocity
 				participant.calculateNextVelocity();
 			}
+			if (timed) {
+				metrics.add(RaceMetrics.Phase.STEP, mark);
+			}
 
 			// Add some granularity so telemetry doesn't all come in on the same timestamp for all racers.
-			if (myRand.nextInt(timeSlice) + 1 == 1 || time == 0) {
-				messages.add(format("$T:%d:%s:%.2f:%d", time, participant.getRacerId(), participant.getPosition(),
-						participant.getLapNum()));
+			if (telemetryRngs[slot].nextInt(timeSlice) == 0 || time == 0) {
+				sink.telemetry(time, participant.getID(), participant.getPosition(), participant.getLapNum());
 			}
-			lastMessageTime.compute(participant, (_r, i) -> i + 1);
+			laps[slot] = participant.getLapNum();
+			positions[slot] = participant.getPosition();
+		}
+		newLeaderBoard(sink, timed);
+		final long mark = timed ? System.nanoTime() : 0;
+		crossingMessages(sink);
+		if (timed) {
+			metrics.add(RaceMetrics.Phase.CROSSINGS, mark);
 		}
-		newLeaderBoard().ifPresent(messages::add);
-		messages.addAll(crossingMessages());
 		time++;
-		return messages;
 	}
 
-	private void evaluateConstraints(Participant participant) {
-		final double participantDistance = participant.getPosition();
-		// Add the appropriate track constraint
-		participant.addConstraint("track", new TrackSectionConstraint(track.getTrackSpeed(participant.getPosition())));
+	@Override
+	public void setMetrics(RaceMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	private void evaluateConstraints(Participant participant, TrackCursor cursor) {
+		final double participantDistance = cursor.getPosition();
+		final TrackSpeed trackSpeed = cursor.getTrackSpeed();
+		// Set the appropriate track constraint, racers that haven't reached the
+		// start line yet go slow
+		participant.setTrackSpeed(participantDistance < 0 ? TrackSpeed.SLOW : trackSpeed);
 
 		// Only add acceleration constraints once (because of the way we're calculating
 		// acceleration using the distance)
-		if (!participant.hasConstraint("Acceleration")) {
+		if (!participant.isAccelerating()) {
 			// Determine if Acceleration/Deceleration is necessary
 			// roughly the speed we have to be at the next gate
 			// - roughly the speed we're going now
-			double speedDifference = track.getNextTrackSpeed(participantDistance).getMultiplier()
-					* participant.getNextVelocity()
-					- track.getTrackSpeed(participantDistance).getMultiplier() * participant.getVelocity();
+			final double currentSpeed = settings.getMultiplier(trackSpeed) * participant.getVelocity();
+			final double nextSpeed = settings.getMultiplier(cursor.getNextTrackSpeed()) * participant.getNextVelocity();
+			double speedDifference = nextSpeed - currentSpeed;
 
 			if (speedDifference > 0) {
 				// Need to speed up
 				// Decide where to add acceleration constraint using distance formula
-				if (track.getDistanceUntilNextTrackPiece(participantDistance) <= calculateDistanceForAcceleration(
-						track.getTrackSpeed(participantDistance).getMultiplier() * participant.getVelocity(),
-						track.getNextTrackSpeed(participantDistance).getMultiplier() * participant.getNextVelocity(),
+				if (cursor.getDistanceUntilNextGate() <= calculateDistanceForAcceleration(currentSpeed, nextSpeed,
 						Participant.DEFAULT_ACCELERATION)) {
 
-					participant.addConstraint("Acceleration", new AccelerationConstraint(
-							Participant.DEFAULT_ACCELERATION,
-							track.getTrackSpeed(participantDistance).getMultiplier() * participant.getVelocity()));
+					participant.startAccelerating(Participant.DEFAULT_ACCELERATION, currentSpeed);
 				}
 			} else if (speedDifference < 0) {
 				// Need to slow down
 				// Decide where to add acceleration constraint using distance formula
-				if (track.getDistanceUntilNextTrackPiece(participantDistance) <= calculateDistanceForAcceleration(
-						track.getNextTrackSpeed(participantDistance).getMultiplier() * participant.getNextVelocity(),
-						track.getTrackSpeed(participantDistance).getMultiplier() * participant.getVelocity(),
+				if (cursor.getDistanceUntilNextGate() <= calculateDistanceForAcceleration(nextSpeed, currentSpeed,
 						Participant.DEFAULT_DECELERATION)) {
 
-					participant.addConstraint("Acceleration", new AccelerationConstraint(
-							-Participant.DEFAULT_DECELERATION,
-							track.getTrackSpeed(participantDistance).getMultiplier() * participant.getVelocity()));
+					participant.startAccelerating(-Participant.DEFAULT_DECELERATION, currentSpeed);
 				}
 			} else if (participantDistance < 0) {
-				participant.addConstraint("Acceleration", new AccelerationConstraint(Participant.DEFAULT_ACCELERATION, TrackSpeed.SLOW.getMultiplier() * participant.getVelocity()));
+				participant.startAccelerating(Participant.DEFAULT_ACCELERATION,
+						settings.getMultiplier(TrackSpeed.SLOW) * participant.getVelocity());
 			}
 		}
-
-		if (participantDistance < 0) {
-			participant.addConstraint("track", new TrackSectionConstraint(TrackSpeed.SLOW));
-		}
 	}
 
 	private double calculateDistanceForAcceleration(double initialVelocity, double finalVelocity, double acceleration) {
@@ -149,16 +186,14 @@ public class Race {
 		return s;
 	}
 
-	private List<String> setUpMessages() {
-		List<String> returnList = participants.stream()
-				.map(r -> "#" + r.getRacerId() + ":" + r.getName() + ":" + r.getPosition())
-				.collect(Collectors.toList());
-		returnList.add("$L:0:"
-				+ participants.stream().map(Participant::getRacerId).map(Object::toString).collect(joining(":")));
-		return returnList;
-
+	private void setUpMessages(RaceSink sink) throws IOException {
+		for (Participant r : participants) {
+			sink.racer(r.getID(), r.getName(), r.getPosition());
+		}
+		sink.leaderBoard(0, leaderBoardIds);
 	}
 
+	@Override
 	public boolean stillGoing() {
 		for (int i = 0; i < participants.size(); i++) {
 			if (participants.get(i).getLapNum() < numLaps) {
@@ -169,33 +204,128 @@ public class Race {
 //		return participants.stream().map(Participant::getLapNum).anyMatch((l) -> l < numLaps);
 	}
 
-	private Optional<String> newLeaderBoard() {
-		List<Participant> prevPlaces = new ArrayList<>(participants);
-		sort(participants);
-		if (prevPlaces.equals(participants)) {
-			return Optional.empty();
-		} else {
-			String leaderBoard = "$L:" + time + ":";
-			leaderBoard += participants.stream().map(Participant::getRacerId).map(Object::toString)
-					.collect(joining(":"));
-			return Optional.of(leaderBoard);
+	/**
+	 * Returns the time the last racer crossed the finish line, or -1 if no one
+	 * has finished yet.
+	 *
+	 * @return The time of the last finish.
+	 */
+	@Override
+	public int getLastCrossingTime() {
+		return lastCrossingTime;
+	}
+
+	@Override
+	public int getTime() {
+		return time;
+	}
+
+	/**
+	 * Takes a snapshot of the race as it is between steps, see
+	 * {@link RaceSnapshot}. Constraints added to participants by hand aren't
+	 * part of it.
+	 *
+	 * @return The snapshot.
+	 */
+	public RaceSnapshot snapshot() {
+		final int size = bySlot.length;
+		final int[] ids = new int[size];
+		final double[] velocities = new double[size];
+		final double[] nextVelocities = new double[size];
+		final boolean[] accelerating = new boolean[size];
+		final double[] accelerations = new double[size];
+		final double[] compoundingVelocities = new double[size];
+		final long[] velocityRngStates = new long[size];
+		final long[] telemetryRngStates = new long[size];
+		final int[] order = new int[size];
+		for (int slot = 0; slot < size; slot++) {
+			final Participant participant = bySlot[slot];
+			ids[slot] = participant.getID();
+			velocities[slot] = participant.getVelocity();
+			nextVelocities[slot] = participant.getNextVelocity();
+			accelerating[slot] = participant.isAccelerating();
+			accelerations[slot] = participant.getAcceleration();
+			compoundingVelocities[slot] = participant.getCompoundingVelocity();
+			velocityRngStates[slot] = participant.getVelocityRandom().getState();
+			telemetryRngStates[slot] = telemetryRngs[slot].getState();
+		}
+		for (int rank = 0; rank < size; rank++) {
+			order[rank] = leaderBoard.slotAt(rank);
+		}
+		return new RaceSnapshot(time, lastCrossingTime, ids, positions.clone(), laps.clone(), velocities,
+				nextVelocities, accelerating, accelerations, compoundingVelocities, velocityRngStates,
+				telemetryRngStates, order);
+	}
+
+	/**
+	 * Puts the race back to the moment a snapshot was taken, after which it
+	 * steps on exactly the way it did from that moment. The snapshot must come
+	 * from a race with the same track, settings and participants.
+	 *
+	 * @param snapshot The snapshot to go back to.
+	 */
+	public void restore(RaceSnapshot snapshot) {
+		if (snapshot.getRacerCount() != bySlot.length) {
+			throw new IllegalArgumentException("the snapshot is of a different race");
+		}
+		time = snapshot.getTime();
+		lastCrossingTime = snapshot.getLastCrossingTime();
+		participantsNotFinished.clear();
+		for (int slot = 0; slot < bySlot.length; slot++) {
+			final Participant participant = bySlot[slot];
+			if (participant.getID() != snapshot.getID(slot)) {
+				throw new IllegalArgumentException("the snapshot is of a different race");
+			}
+			participant.restore(snapshot.getPosition(slot), snapshot.getLap(slot), snapshot.getVelocity(slot),
+					snapshot.getNextVelocity(slot), snapshot.isAccelerating(slot), snapshot.getAcceleration(slot),
+					snapshot.getCompoundingVelocity(slot), snapshot.getVelocityRngState(slot));
+			telemetryRngs[slot].setState(snapshot.getTelemetryRngState(slot));
+			positions[slot] = snapshot.getPosition(slot);
+			laps[slot] = snapshot.getLap(slot);
+			cursors[slot] = track.newCursor(positions[slot]);
+		}
+		// Racers are removed on the millisecond they finish, so between steps
+		// the ones left are the ones short of the last lap
+		for (Participant participant : participants) {
+			if (participant.getLapNum() < numLaps) {
+				participantsNotFinished.add(participant);
+			}
+		}
+		leaderBoard.setOrder(snapshot.getOrder());
+		for (int rank = 0; rank < bySlot.length; rank++) {
+			leaderBoardIds[rank] = bySlot[leaderBoard.slotAt(rank)].getID();
+		}
+	}
+
+	private void newLeaderBoard(RaceSink sink, boolean timed) throws IOException {
+		final long start = timed ? System.nanoTime() : 0;
+		final boolean changed = leaderBoard.update();
+		if (changed) {
+			// Only the ranks between the first and last change moved
+			for (int rank = leaderBoard.getFirstChangedRank(); rank <= leaderBoard.getLastChangedRank(); rank++) {
+				leaderBoardIds[rank] = bySlot[leaderBoard.slotAt(rank)].getID();
+			}
+		}
+		// Sending the leader board is encoding, not sorting
+		if (timed) {
+			metrics.add(RaceMetrics.Phase.LEADER_BOARD, start);
+		}
+		if (changed) {
+			sink.leaderBoard(time, leaderBoardIds);
 		}
 	}
 
-	private List<String> crossingMessages() {
+	private void crossingMessages(RaceSink sink) throws IOException {
 		List<Participant> participantstoRemove = new ArrayList<>();
-		List<String> messages = new ArrayList<>();
 		for (Participant p : participantsNotFinished) {
 			if (p.getLapNum() == numLaps) {
 				int crossTime = time;
-				messages.add(
-						format("$C:%d:%s:%d:%b", crossTime, p.getRacerId(), p.getLapNum(), p.getLapNum() == numLaps));
+				sink.crossing(crossTime, p.getID(), p.getLapNum(), p.getLapNum() == numLaps);
 				participantstoRemove.add(p);
+				lastCrossingTime = crossTime;
 			}
 		}
 		participantsNotFinished.removeAll(participantstoRemove);
-		return messages;
-
 	}
 
 //	private List<Participant> buildRacers() {
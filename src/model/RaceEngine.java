@@ -0,0 +1,59 @@
+package model;
+
+import java.io.IOException;
+
+import metrics.RaceMetrics;
+import output.RaceSink;
+
+/**
+ * A RaceEngine simulates a race one millisecond at a time.
+ *
+ * @see Race
+ * @see ArrayRace
+ * @see EventRace
+ */
+public interface RaceEngine {
+
+	/**
+	 * Steps the race forward one millisecond, sending everything that happened
+	 * to the given sink as it happens. Engines that skip the milliseconds where
+	 * nothing is reported may move on further than one.
+	 *
+	 * @param sink The sink to send the race events to.
+	 * @throws IOException If the sink can't write.
+	 */
+	void stepRace(RaceSink sink) throws IOException;
+
+	/**
+	 * Returns true while any participant still has laps to run.
+	 *
+	 * @return True if the race isn't over.
+	 */
+	boolean stillGoing();
+
+	/**
+	 * Returns the current race time, which is the number of milliseconds that
+	 * have been simulated.
+	 *
+	 * @return The current race time.
+	 */
+	int getTime();
+
+	/**
+	 * Returns the time the last racer crossed the finish line, or -1 if no one
+	 * has finished yet.
+	 *
+	 * @return The time of the last finish.
+	 */
+	int getLastCrossingTime();
+
+	/**
+	 * Times the phases of every tick the given metrics sample, see
+	 * {@link RaceMetrics.Phase}, or stops timing them if it is null. Engines
+	 * that don't step in separate phases ignore it.
+	 *
+	 * @param metrics The metrics to add the phase times to, may be null.
+	 */
+	default void setMetrics(RaceMetrics metrics) {
+	}
+}
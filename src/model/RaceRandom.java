@@ -0,0 +1,113 @@
+package model;
+
+/**
+ * The random generator each racer draws from. It is the SplitMix64 generator
+ * {@link java.util.SplittableRandom} uses and produces exactly the same
+ * numbers as a SplittableRandom built with the same seed, but its whole state
+ * is one long that can be read and put back, so a snapshot of a race can carry
+ * on drawing exactly where the race left off.
+ *
+ * The static methods draw the same numbers straight from a state kept in a
+ * long[] slot, for engines that keep every racer's generator in one array
+ * instead of an object per racer.
+ */
+public final class RaceRandom {
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+	private long state;
+
+	public RaceRandom(long seed) {
+		state = seed;
+	}
+
+	/**
+	 * Returns a uniformly distributed int from 0 (inclusive) to bound
+	 * (exclusive).
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		int r = mix32(nextSeed());
+		final int m = bound - 1;
+		if ((bound & m) == 0) {
+			r &= m;
+		} else {
+			// Reject the values that would make the low results more likely
+			for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Returns a uniformly distributed double from 0 (inclusive) to 1
+	 * (exclusive).
+	 */
+	public double nextDouble() {
+		return (mix64(nextSeed()) >>> 11) * DOUBLE_UNIT;
+	}
+
+	public long nextLong() {
+		return mix64(nextSeed());
+	}
+
+	/**
+	 * Returns what {@link #nextInt(int)} would for a generator whose state is
+	 * states[index], moving that state on.
+	 */
+	public static int nextInt(long[] states, int index, int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		int r = mix32(states[index] += GOLDEN_GAMMA);
+		final int m = bound - 1;
+		if ((bound & m) == 0) {
+			r &= m;
+		} else {
+			for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(states[index] += GOLDEN_GAMMA) >>> 1) {
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Returns what {@link #nextDouble()} would for a generator whose state is
+	 * states[index], moving that state on.
+	 */
+	public static double nextDouble(long[] states, int index) {
+		return (mix64(states[index] += GOLDEN_GAMMA) >>> 11) * DOUBLE_UNIT;
+	}
+
+	/**
+	 * Returns the generator's state, see {@link #setState(long)}.
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * Puts back a state from {@link #getState()}, after which the generator
+	 * draws the same numbers it did after that state was read.
+	 */
+	public void setState(long state) {
+		this.state = state;
+	}
+
+	private long nextSeed() {
+		return state += GOLDEN_GAMMA;
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+		return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+	}
+}
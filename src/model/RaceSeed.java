@@ -0,0 +1,53 @@
+package model;
+
+/**
+ * Derives every random generator a race uses from one race-level seed.
+ *
+ * Each racer gets its own generator for each purpose, derived only from the
+ * seed, the racer's slot and the purpose. No generator is ever shared, so the
+ * draws a racer sees don't depend on how many racers there are, in which
+ * order they are stepped or on which thread, and the same seed always
+ * produces the same race.
+ */
+public final class RaceSeed {
+
+	/**
+	 * The independent streams of random numbers each racer has.
+	 */
+	public enum Purpose {
+		/** The velocities drawn from the racer's speed bracket. */
+		VELOCITY,
+		/** Whether the racer sends telemetry on a given tick. */
+		TELEMETRY
+	}
+
+	private final long seed;
+
+	public RaceSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns a new generator for the racer in the given slot. Calling this
+	 * twice with the same arguments returns generators that produce the same
+	 * numbers.
+	 */
+	public RaceRandom forRacer(int slot, Purpose purpose) {
+		final long stream = mix(seed + (purpose.ordinal() + 1) * 0x9E3779B97F4A7C15L);
+		return new RaceRandom(mix(stream ^ mix(slot + 0xD1B54A32D192ED03L)));
+	}
+
+	/**
+	 * The SplitMix64 finalizer, spreads every bit of the input over the output
+	 * so that neighbouring slots and seeds get unrelated generators.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,121 @@
+package model;
+
+/**
+ * Everything a {@link Race} needs to carry on from one moment: the time, every
+ * racer's position, lap, velocities and acceleration, the state of every
+ * random generator and the leader board order. Restoring a snapshot with
+ * {@link Race#restore(RaceSnapshot)} and stepping on produces exactly the
+ * same events the race produced from that moment the first time.
+ *
+ * A snapshot is a handful of primitive arrays indexed by slot, around 70
+ * bytes per racer, and never changes once taken.
+ */
+public final class RaceSnapshot {
+
+	private final int time;
+	private final int lastCrossingTime;
+	private final int[] ids;
+	private final double[] positions;
+	private final int[] laps;
+	private final double[] velocities;
+	private final double[] nextVelocities;
+	private final boolean[] accelerating;
+	private final double[] accelerations;
+	private final double[] compoundingVelocities;
+	private final long[] velocityRngStates;
+	private final long[] telemetryRngStates;
+	private final int[] order;
+
+	RaceSnapshot(int time, int lastCrossingTime, int[] ids, double[] positions, int[] laps, double[] velocities,
+			double[] nextVelocities, boolean[] accelerating, double[] accelerations, double[] compoundingVelocities,
+			long[] velocityRngStates, long[] telemetryRngStates, int[] order) {
+		this.time = time;
+		this.lastCrossingTime = lastCrossingTime;
+		this.ids = ids;
+		this.positions = positions;
+		this.laps = laps;
+		this.velocities = velocities;
+		this.nextVelocities = nextVelocities;
+		this.accelerating = accelerating;
+		this.accelerations = accelerations;
+		this.compoundingVelocities = compoundingVelocities;
+		this.velocityRngStates = velocityRngStates;
+		this.telemetryRngStates = telemetryRngStates;
+		this.order = order;
+	}
+
+	/**
+	 * Returns the race time the snapshot was taken at, which is the number of
+	 * milliseconds that had been simulated.
+	 */
+	public int getTime() {
+		return time;
+	}
+
+	public int getLastCrossingTime() {
+		return lastCrossingTime;
+	}
+
+	public int getRacerCount() {
+		return ids.length;
+	}
+
+	public int getID(int slot) {
+		return ids[slot];
+	}
+
+	public double getPosition(int slot) {
+		return positions[slot];
+	}
+
+	public int getLap(int slot) {
+		return laps[slot];
+	}
+
+	public double getVelocity(int slot) {
+		return velocities[slot];
+	}
+
+	public double getNextVelocity(int slot) {
+		return nextVelocities[slot];
+	}
+
+	public boolean isAccelerating(int slot) {
+		return accelerating[slot];
+	}
+
+	/**
+	 * Returns the IDs of the racers from first to last.
+	 */
+	public int[] getLeaderBoard() {
+		final int[] result = new int[order.length];
+		for (int rank = 0; rank < order.length; rank++) {
+			result[rank] = ids[order[rank]];
+		}
+		return result;
+	}
+
+	double getAcceleration(int slot) {
+		return accelerations[slot];
+	}
+
+	double getCompoundingVelocity(int slot) {
+		return compoundingVelocities[slot];
+	}
+
+	long getVelocityRngState(int slot) {
+		return velocityRngStates[slot];
+	}
+
+	long getTelemetryRngState(int slot) {
+		return telemetryRngStates[slot];
+	}
+
+	/**
+	 * Returns the slot of each racer from first to last. The array is the
+	 * snapshot's own and must not be changed.
+	 */
+	int[] getOrder() {
+		return order;
+	}
+}
@@ -0,0 +1,99 @@
+package model;
+
+import model.track.TrackSpeed;
+
+/**
+ * The speed parameters of one race: the multiplier of each track speed and the
+ * velocity and range of each speed bracket.
+ *
+ * A SpeedSettings never changes once it is built, so every race gets its own
+ * snapshot and races running on different threads can't see each other's
+ * settings. {@link #DEFAULT} holds the values the enums are declared with.
+ */
+public final class SpeedSettings {
+
+	/** The multipliers and brackets the enums are declared with. */
+	public static final SpeedSettings DEFAULT = new SpeedSettings(defaultMultipliers(), defaultVelocities(),
+			defaultRanges());
+
+	private final double[] multipliers;
+	private final double[] velocities;
+	private final double[] ranges;
+
+	/**
+	 * Constructs a SpeedSettings. The arrays are copied.
+	 *
+	 * @param multipliers The multiplier of each TrackSpeed, by ordinal.
+	 * @param velocities  The velocity of each ParticipantSpeed, by ordinal.
+	 * @param ranges      The range of each ParticipantSpeed, by ordinal.
+	 */
+	public SpeedSettings(double[] multipliers, double[] velocities, double[] ranges) {
+		if (multipliers.length != TrackSpeed.values().length) {
+			throw new IllegalArgumentException("expected a multiplier for every TrackSpeed");
+		}
+		if (velocities.length != ParticipantSpeed.values().length
+				|| ranges.length != ParticipantSpeed.values().length) {
+			throw new IllegalArgumentException("expected a velocity and range for every ParticipantSpeed");
+		}
+		this.multipliers = multipliers.clone();
+		this.velocities = velocities.clone();
+		this.ranges = ranges.clone();
+	}
+
+	public double getMultiplier(TrackSpeed speed) {
+		return multipliers[speed.ordinal()];
+	}
+
+	public double getVelocity(ParticipantSpeed bracket) {
+		return velocities[bracket.ordinal()];
+	}
+
+	public double getRange(ParticipantSpeed bracket) {
+		return ranges[bracket.ordinal()];
+	}
+
+	/**
+	 * Draws a new velocity for a racer in the given bracket, uniformly within
+	 * the bracket's range of its velocity.
+	 */
+	public double getNewVelocity(ParticipantSpeed bracket, RaceRandom rng) {
+		return velocityFrom(bracket, rng.nextDouble());
+	}
+
+	/**
+	 * Draws a new velocity the same way, from the generator whose state is
+	 * rngStates[slot], see {@link RaceRandom#nextDouble(long[], int)}.
+	 */
+	public double getNewVelocity(ParticipantSpeed bracket, long[] rngStates, int slot) {
+		return velocityFrom(bracket, RaceRandom.nextDouble(rngStates, slot));
+	}
+
+	private double velocityFrom(ParticipantSpeed bracket, double unit) {
+		final double range = ranges[bracket.ordinal()];
+		return unit * range * 2 + (velocities[bracket.ordinal()] - range);
+	}
+
+	private static double[] defaultMultipliers() {
+		final double[] result = new double[TrackSpeed.values().length];
+		for (TrackSpeed speed : TrackSpeed.values()) {
+			result[speed.ordinal()] = speed.getMultiplier();
+		}
+		return result;
+	}
+
+	private static double[] defaultVelocities() {
+		final double[] result = new double[ParticipantSpeed.values().length];
+		for (ParticipantSpeed bracket : ParticipantSpeed.values()) {
+			result[bracket.ordinal()] = bracket.getVelocity();
+		}
+		return result;
+	}
+
+	private static double[] defaultRanges() {
+		final double[] result = new double[ParticipantSpeed.values().length];
+		for (ParticipantSpeed bracket : ParticipantSpeed.values()) {
+			result[bracket.ordinal()] = bracket.getRange();
+		}
+		return result;
+	}
+}
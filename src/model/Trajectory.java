@@ -0,0 +1,128 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Where one racer is throughout a race, as a table of segments. In each
+ * segment the racer either moves at a constant velocity or compounds a
+ * constant acceleration, so the distance it has covered k milliseconds into a
+ * segment is {@code linear * k + quadratic * k^2} and its position and lap at
+ * any time come straight from the segment the time falls in, without stepping
+ * the race.
+ *
+ * Trajectories are recorded by {@link EventRace}, and only cover the race
+ * they were recorded from: past the last segment they just carry on with it.
+ * Positions are computed in closed form, so they agree with racers stepped one
+ * millisecond at a time to within floating point rounding.
+ */
+public final class Trajectory {
+
+	private final double trackLength;
+	private int[] starts;
+	private int[] startLaps;
+	private double[] startPositions;
+	private double[] linear;
+	private double[] quadratic;
+	private int count;
+
+	Trajectory(double trackLength) {
+		this.trackLength = trackLength;
+		starts = new int[8];
+		startLaps = new int[8];
+		startPositions = new double[8];
+		linear = new double[8];
+		quadratic = new double[8];
+	}
+
+	/**
+	 * Adds a segment starting at the given millisecond, from where the racer
+	 * is just before it. Segments must be added in order.
+	 */
+	void add(int start, int lap, double position, double linearTerm, double quadraticTerm) {
+		if (count == starts.length) {
+			final int capacity = count * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			startLaps = Arrays.copyOf(startLaps, capacity);
+			startPositions = Arrays.copyOf(startPositions, capacity);
+			linear = Arrays.copyOf(linear, capacity);
+			quadratic = Arrays.copyOf(quadratic, capacity);
+		}
+		starts[count] = start;
+		startLaps[count] = lap;
+		startPositions[count] = position;
+		linear[count] = linearTerm;
+		quadratic[count] = quadraticTerm;
+		count++;
+	}
+
+	/**
+	 * Returns the racer's position on its lap after the given millisecond, or
+	 * its starting position for -1.
+	 */
+	public double getPosition(int time) {
+		final int segment = segmentAt(time);
+		final double position = unwrapped(segment, time);
+		// A segment ends on the millisecond the racer crosses the finish line
+		return position >= trackLength ? position - trackLength : position;
+	}
+
+	/**
+	 * Returns the number of laps the racer has finished after the given
+	 * millisecond.
+	 */
+	public int getLap(int time) {
+		final int segment = segmentAt(time);
+		return unwrapped(segment, time) >= trackLength ? startLaps[segment] + 1 : startLaps[segment];
+	}
+
+	/**
+	 * Returns the total distance the racer has covered after the given
+	 * millisecond, counting the laps it has finished.
+	 */
+	public double getDistance(int time) {
+		final int segment = segmentAt(time);
+		return startLaps[segment] * trackLength + unwrapped(segment, time);
+	}
+
+	public int getSegmentCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the first millisecond of the given segment.
+	 */
+	public int getSegmentStart(int segment) {
+		return starts[segment];
+	}
+
+	/**
+	 * Returns true if the racer is accelerating or braking in the given
+	 * segment.
+	 */
+	public boolean isAccelerating(int segment) {
+		return quadratic[segment] != 0;
+	}
+
+	private double unwrapped(int segment, int time) {
+		final long ticks = time - starts[segment] + 1L;
+		return startPositions[segment] + linear[segment] * ticks + quadratic[segment] * ticks * ticks;
+	}
+
+	/**
+	 * Returns the last segment that started by the millisecond after the
+	 * given one.
+	 */
+	private int segmentAt(int time) {
+		int low = 0;
+		int high = count - 1;
+		while (low < high) {
+			final int middle = (low + high + 1) >>> 1;
+			if (starts[middle] <= time + 1L) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+}
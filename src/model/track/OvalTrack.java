@@ -45,57 +45,13 @@ public class OvalTrack extends Track {
     }
 
     @Override
-    public TrackSpeed getTrackSpeed(double d) {
-        return trackSpeeds[(int) getSpeedIndexAndNextGate(d)[0]];
+    public int getSectionCount() {
+        return trackSpeeds.length;
     }
 
     @Override
-    public TrackSpeed getNextTrackSpeed(double distance) {
-        // Get the speed then add 1 to it to get the next track speed in the
-        // array.
-        int desiredIndex = (int) getSpeedIndexAndNextGate(distance)[0] + 1;
-
-        // Make sure the array wraps
-        desiredIndex = desiredIndex % trackSpeeds.length;
-
-        return trackSpeeds[desiredIndex];
-    }
-
-    // Returns a double array with values: { speedIndex, nextGate }
-    // corresponding to
-    // the given distance around the track.
-    private double[] getSpeedIndexAndNextGate(double distance) {
-        final double[] returnVals = new double[2];
-        if (distance >= 0 && distance < firstTurn) {
-            returnVals[0] = 0;
-            returnVals[1] = firstTurn;
-        } else if (distance < secondTurn) {
-            returnVals[0] = 1;
-            returnVals[1] = secondTurn;
-        } else if (distance < backStraightAway) {
-            returnVals[0] = 2;
-            returnVals[1] = backStraightAway;
-        } else if (distance < thirdTurn) {
-            returnVals[0] = 3;
-            returnVals[1] = thirdTurn;
-        } else if (distance < fourthTurn) {
-            returnVals[0] = 4;
-            returnVals[1] = fourthTurn;
-        } else if (distance < frontStraightAway) {
-            returnVals[0] = 5;
-            returnVals[1] = frontStraightAway;
-        } else {
-            // Should never happen
-            returnVals[0] = 0;
-            returnVals[1] = firstTurn;
-        }
-
-        return returnVals;
-    }
-
-    @Override
-    public double getDistanceUntilNextTrackPiece(double distance) {
-        return getSpeedIndexAndNextGate(distance)[1] - distance;
+    public TrackSpeed getSectionSpeed(int section) {
+        return trackSpeeds[section];
     }
 
     private void buildTrackModel() {
@@ -112,6 +68,19 @@ public class OvalTrack extends Track {
         thirdTurn = backStraightAway + (curveDistance / 2);
         fourthTurn = backStraightAway + curveDistance;
         frontStraightAway = backStraightAway * 2;
+
+        // Sections are numbered counterclockwise from the first turn. Racers
+        // still on the starting grid (negative distances) are counted as in
+        // the second turn, and anything past the front straight away as in
+        // the first turn, which is how the track has always looked them up.
+        setRegions(
+                new double[] {0, firstTurn, secondTurn, backStraightAway,
+                        thirdTurn, fourthTurn, frontStraightAway,
+                        Double.POSITIVE_INFINITY},
+                new int[] {1, 0, 1, 2, 3, 4, 5, 0},
+                new double[] {secondTurn, firstTurn, secondTurn,
+                        backStraightAway, thirdTurn, fourthTurn,
+                        frontStraightAway, firstTurn});
     }
 
     @Override
@@ -12,6 +12,14 @@ public abstract class Track {
 
 	protected int trackLength;
 
+	// The track is split into regions sorted by distance that together cover
+	// every distance, including the negative distances racers start at. Each
+	// region knows which section of track it is (for the speed) and the gate at
+	// the end of it. Cursors walk through the regions as racers move forward.
+	private double[] regionEnds;
+	private int[] regionSections;
+	private double[] regionGates;
+
 	public Track(int trackLength) {
 		this.trackLength = trackLength;
 	}
@@ -30,12 +38,93 @@ public abstract class Track {
 	
 	public abstract int getWidthRatio();
 
-	public abstract TrackSpeed getTrackSpeed(double distance);
-	
-	public abstract TrackSpeed getNextTrackSpeed(double distance);
-	
-	public abstract double getDistanceUntilNextTrackPiece(double distance);
+	public abstract int getSectionCount();
+
+	public abstract TrackSpeed getSectionSpeed(int section);
 
 	public abstract String getTrackName();
 
+	/**
+	 * Sets the regions of the track. Region 0 starts at negative infinity, each
+	 * region starts where the one before it ends, and the last region must end
+	 * at positive infinity.
+	 *
+	 * @param ends     The distance each region ends at (exclusive).
+	 * @param sections The section of track each region is part of.
+	 * @param gates    The distance of the gate at the end of each region.
+	 */
+	protected void setRegions(double[] ends, int[] sections, double[] gates) {
+		regionEnds = ends.clone();
+		regionSections = sections.clone();
+		regionGates = gates.clone();
+	}
+
+	public TrackSpeed getTrackSpeed(double distance) {
+		return getSectionSpeed(regionSections[findRegion(distance)]);
+	}
+
+	public TrackSpeed getNextTrackSpeed(double distance) {
+		return getSectionSpeed(nextSection(regionSections[findRegion(distance)]));
+	}
+
+	public double getDistanceUntilNextTrackPiece(double distance) {
+		return regionGates[findRegion(distance)] - distance;
+	}
+
+	/**
+	 * Returns a cursor for a racer at the given distance, see {@link TrackCursor}.
+	 */
+	public TrackCursor newCursor(double distance) {
+		return new TrackCursor(this, distance);
+	}
+
+	/**
+	 * Returns the region the given distance is in by searching every region.
+	 */
+	public int findRegion(double distance) {
+		int region = 0;
+		while (region < regionEnds.length - 1 && !(distance < regionEnds[region])) {
+			region++;
+		}
+		return region;
+	}
+
+	/**
+	 * Returns the region the given distance is in, given the region it was in
+	 * last. Racers only move forward, so this is usually the same region or the
+	 * next one, and only searches from the start when a racer wraps to a new lap.
+	 */
+	public int advanceRegion(int region, double distance) {
+		if (region > 0 && distance < regionEnds[region - 1]) {
+			return findRegion(distance);
+		}
+		while (region < regionEnds.length - 1 && !(distance < regionEnds[region])) {
+			region++;
+		}
+		return region;
+	}
+
+	/**
+	 * Returns the distance the given region ends at (exclusive), which is
+	 * positive infinity for the last region.
+	 */
+	public double getRegionEnd(int region) {
+		return regionEnds[region];
+	}
+
+	public int getRegionSection(int region) {
+		return regionSections[region];
+	}
+
+	public double getRegionGate(int region) {
+		return regionGates[region];
+	}
+
+	/**
+	 * Returns the section after the given one, wrapping around at the finish.
+	 */
+	public int nextSection(int section) {
+		return (section + 1) % getSectionCount();
+	}
+
 }
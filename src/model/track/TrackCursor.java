@@ -0,0 +1,65 @@
+package model.track;
+
+/**
+ * A TrackCursor follows one racer around a track. It remembers which region
+ * of the track the racer is in, so looking up the current speed, the next
+ * speed and the distance to the next gate doesn't search the track or
+ * allocate, and moving forward is O(1) amortized because racers only ever
+ * move forward.
+ *
+ * @see Track#newCursor(double)
+ */
+public final class TrackCursor {
+
+	private final Track track;
+	private int region;
+	private double position;
+
+	TrackCursor(Track track, double position) {
+		this.track = track;
+		this.position = position;
+		region = track.findRegion(position);
+	}
+
+	/**
+	 * Moves the cursor to the racer's new position.
+	 *
+	 * @param newPosition The racer's new position.
+	 * @return True if the racer passed a gate since the last position.
+	 */
+	public boolean advance(double newPosition) {
+		final double lastDistance = track.getRegionGate(region) - position;
+		region = track.advanceRegion(region, newPosition);
+		position = newPosition;
+		return track.getRegionGate(region) - newPosition > lastDistance;
+	}
+
+	/**
+	 * Returns the speed of the section the racer is in.
+	 */
+	public TrackSpeed getTrackSpeed() {
+		return track.getSectionSpeed(track.getRegionSection(region));
+	}
+
+	/**
+	 * Returns the speed of the section after the one the racer is in.
+	 */
+	public TrackSpeed getNextTrackSpeed() {
+		return track.getSectionSpeed(track.nextSection(track.getRegionSection(region)));
+	}
+
+	/**
+	 * Returns the distance from the racer to the next gate.
+	 */
+	public double getDistanceUntilNextGate() {
+		return track.getRegionGate(region) - position;
+	}
+
+	public int getSection() {
+		return track.getRegionSection(region);
+	}
+
+	public double getPosition() {
+		return position;
+	}
+}
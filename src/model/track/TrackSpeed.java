@@ -1,22 +1,22 @@
 package model.track;
 
+/**
+ * The speeds a section of track can have. The multiplier given here is only
+ * the default, each race reads its own from a model.SpeedSettings.
+ */
 public enum TrackSpeed {
 	FAST(1.5, "Fast"),
 	MEDIUM(1.0, "Medium"),
 	SLOW(0.5, "Slow");
 
-	private double multiplier;
-	private String myName;
+	private final double multiplier;
+	private final String myName;
 
 	TrackSpeed(double theMultiplier, String theName) {
 		multiplier = theMultiplier;
 		myName = theName;
 	}
 
-	public void setMultiplier(double mult) {
-		multiplier = mult;
-	}
-
 	public double getMultiplier() {
 		return multiplier;
 	}
@@ -0,0 +1,96 @@
+package output;
+
+/**
+ * Constants for the binary race file format.
+ *
+ * A binary race file is big endian and starts with a header:
+ *
+ * <pre>
+ * magic        4 bytes  "RCEB"
+ * version      u8
+ * slot width   u8       2 if there are at most 65535 racers, otherwise 4
+ * race name    u16 length + UTF-8
+ * track name   u16 length + UTF-8
+ * width        i32
+ * height       i32
+ * distance     i32
+ * time         i32      rewritten in place once the race is over
+ * participants i32
+ * </pre>
+ *
+ * followed by records, each starting with a one byte type. Racers are
+ * referred to by their slot, which is the order their RACER record appeared
+ * in. Records don't carry a time, instead TIME and TIME_DELTA records move
+ * the current time (which starts at 0) forward. Because telemetry is most of
+ * a race, a type byte with the high bit set is a TELEMETRY record that also
+ * moves the current time forward by the low seven bits.
+ *
+ * <pre>
+ * RACER          i32 id, u16 length + UTF-8 name, f64 start position
+ * TIME_DELTA     u8 milliseconds to add to the current time
+ * TIME           i32 new current time
+ * TELEMETRY      slot, i32 position in hundredths, u8 lap
+ * TELEMETRY_WIDE slot, i32 position in hundredths, i32 lap
+ * TELEMETRY_LONG slot, i64 position in hundredths, i32 lap
+ * LEADER_BOARD   one slot per participant, first to last
+ * CROSSING       slot, i32 lap, u8 finished (0 or 1)
+ * 0x80 | delta   same as TELEMETRY after moving the time by delta
+ * </pre>
+ *
+ * Positions are stored in hundredths the way {@link FixedPoint} rounds them,
+ * so converting back to text reproduces the text format exactly. An i32
+ * position of {@link #NEGATIVE_ZERO} stands for "-0.00". Positions that don't
+ * fit in an i32, such as the start grid of a big field, are written as
+ * TELEMETRY_LONG records. Version 1 files, which have no TELEMETRY_LONG, can
+ * still be read.
+ */
+public final class BinaryRaceFormat {
+
+    /** The magic number at the start of every binary race file. */
+    public static final int MAGIC = 0x52434542;
+
+    /** The current version of the format. */
+    public static final int VERSION = 2;
+
+    /** Record type for a racer at the start of the race. */
+    public static final byte RACER = 1;
+
+    /** Record type that moves the current time forward by a u8. */
+    public static final byte TIME_DELTA = 2;
+
+    /** Record type that sets the current time. */
+    public static final byte TIME = 3;
+
+    /** Record type for telemetry with a lap that fits in a u8. */
+    public static final byte TELEMETRY = 4;
+
+    /** Record type for telemetry with any lap. */
+    public static final byte TELEMETRY_WIDE = 5;
+
+    /** Record type for a new leader board. */
+    public static final byte LEADER_BOARD = 6;
+
+    /** Record type for a racer crossing the finish line. */
+    public static final byte CROSSING = 7;
+
+    /** Record type for telemetry with a position that needs an i64. */
+    public static final byte TELEMETRY_LONG = 8;
+
+    /** The high bit that marks a TELEMETRY record with a time delta. */
+    public static final int TELEMETRY_WITH_DELTA = 0x80;
+
+    /** The largest time delta that fits in a TELEMETRY_WITH_DELTA type. */
+    static final int MAX_TELEMETRY_DELTA = 0x7F;
+
+    /** The i32 position that stands for "-0.00". */
+    static final int NEGATIVE_ZERO = Integer.MIN_VALUE;
+
+    /** The most racers that fit in a two byte slot. */
+    static final int MAX_SHORT_SLOTS = 0xFFFF;
+
+    /** The largest lap that fits in a TELEMETRY record. */
+    static final int MAX_SHORT_LAP = 0xFF;
+
+    private BinaryRaceFormat() {
+    }
+}
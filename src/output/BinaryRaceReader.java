@@ -0,0 +1,206 @@
+package output;
+
+import static output.BinaryRaceFormat.CROSSING;
+import static output.BinaryRaceFormat.LEADER_BOARD;
+import static output.BinaryRaceFormat.MAGIC;
+import static output.BinaryRaceFormat.MAX_TELEMETRY_DELTA;
+import static output.BinaryRaceFormat.NEGATIVE_ZERO;
+import static output.BinaryRaceFormat.RACER;
+import static output.BinaryRaceFormat.TELEMETRY;
+import static output.BinaryRaceFormat.TELEMETRY_LONG;
+import static output.BinaryRaceFormat.TELEMETRY_WIDE;
+import static output.BinaryRaceFormat.TELEMETRY_WITH_DELTA;
+import static output.BinaryRaceFormat.TIME;
+import static output.BinaryRaceFormat.TIME_DELTA;
+import static output.BinaryRaceFormat.VERSION;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a race in the binary race file format described in
+ * {@link BinaryRaceFormat} and replays it into a {@link RaceSink}. Replaying
+ * into a {@link TextRaceWriter} converts a binary race to the text format.
+ */
+public final class BinaryRaceReader {
+
+    /** The size of the read buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel myChannel;
+    private ByteBuffer myBuffer;
+    private int mySlotWidth;
+    private int[] myIDs;
+    private int myNumRacers;
+    private int myTime;
+
+    private BinaryRaceReader(final FileChannel theChannel) {
+        myChannel = theChannel;
+        myBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        myBuffer.flip();
+    }
+
+    /**
+     * Reads the given binary race file and sends every event in it to theSink.
+     * The sink is not closed.
+     *
+     * @param theFile The binary race file.
+     * @param theSink The sink to replay the race into.
+     * @throws IOException If the file can't be read or isn't a binary race.
+     */
+    public static void read(final File theFile, final RaceSink theSink)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(theFile.toPath(),
+                StandardOpenOption.READ)) {
+            new BinaryRaceReader(channel).replay(theSink);
+        }
+    }
+
+    private void replay(final RaceSink theSink) throws IOException {
+        need(6);
+        if (myBuffer.getInt() != MAGIC) {
+            throw new IOException("not a binary race file");
+        }
+        final int version = myBuffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("unsupported version " + version);
+        }
+        mySlotWidth = myBuffer.get();
+
+        final String raceName = getString();
+        final String trackName = getString();
+        need(20);
+        final int width = myBuffer.getInt();
+        final int height = myBuffer.getInt();
+        final int distance = myBuffer.getInt();
+        final int time = myBuffer.getInt();
+        final int participants = myBuffer.getInt();
+        theSink.raceHeader(raceName, trackName, width, height, distance, time,
+                participants);
+
+        myIDs = new int[participants];
+        final int[] leaderBoard = new int[participants];
+        while (need(1)) {
+            final byte type = myBuffer.get();
+            if ((type & TELEMETRY_WITH_DELTA) != 0) {
+                need(mySlotWidth + 5);
+                myTime += type & MAX_TELEMETRY_DELTA;
+                theSink.telemetry(myTime, getID(), getPosition(),
+                        myBuffer.get() & 0xFF);
+                continue;
+            }
+            switch (type) {
+                case RACER:
+                    need(4);
+                    final int id = myBuffer.getInt();
+                    final String name = getString();
+                    need(8);
+                    myIDs[myNumRacers++] = id;
+                    theSink.racer(id, name, myBuffer.getDouble());
+                    break;
+                case TIME_DELTA:
+                    need(1);
+                    myTime += myBuffer.get() & 0xFF;
+                    break;
+                case TIME:
+                    need(4);
+                    myTime = myBuffer.getInt();
+                    break;
+                case TELEMETRY:
+                    need(mySlotWidth + 5);
+                    theSink.telemetry(myTime, getID(), getPosition(),
+                            myBuffer.get() & 0xFF);
+                    break;
+                case TELEMETRY_WIDE:
+                    need(mySlotWidth + 8);
+                    theSink.telemetry(myTime, getID(), getPosition(),
+                            myBuffer.getInt());
+                    break;
+                case TELEMETRY_LONG:
+                    need(mySlotWidth + 12);
+                    theSink.telemetry(myTime, getID(),
+                            FixedPoint.fromHundredths(myBuffer.getLong()),
+                            myBuffer.getInt());
+                    break;
+                case LEADER_BOARD:
+                    need(participants * mySlotWidth);
+                    for (int i = 0; i < participants; i++) {
+                        leaderBoard[i] = getID();
+                    }
+                    theSink.leaderBoard(myTime, leaderBoard);
+                    break;
+                case CROSSING:
+                    need(mySlotWidth + 5);
+                    theSink.crossing(myTime, getID(), myBuffer.getInt(),
+                            myBuffer.get() != 0);
+                    break;
+                default:
+                    throw new IOException("unknown record type " + type);
+            }
+        }
+        theSink.finish(time);
+    }
+
+    private int getID() throws IOException {
+        final int slot = mySlotWidth == 2 ? myBuffer.getShort() & 0xFFFF
+                : myBuffer.getInt();
+        if (slot >= myNumRacers) {
+            throw new IOException("unknown racer slot " + slot);
+        }
+        return myIDs[slot];
+    }
+
+    private double getPosition() {
+        final int hundredths = myBuffer.getInt();
+        return FixedPoint.fromHundredths(hundredths == NEGATIVE_ZERO
+                ? FixedPoint.NEGATIVE_ZERO : hundredths);
+    }
+
+    private String getString() throws IOException {
+        need(2);
+        final int length = myBuffer.getShort() & 0xFFFF;
+        need(length);
+        final String string = new String(myBuffer.array(),
+                myBuffer.position(), length, StandardCharsets.UTF_8);
+        myBuffer.position(myBuffer.position() + length);
+        return string;
+    }
+
+    /**
+     * Makes sure there are at least theBytes bytes in the buffer.
+     *
+     * @param theBytes The number of bytes needed.
+     * @return False if the file ended cleanly before any more bytes.
+     * @throws EOFException If the file ended part way through a record.
+     */
+    private boolean need(final int theBytes) throws IOException {
+        if (myBuffer.remaining() >= theBytes) {
+            return true;
+        }
+        if (theBytes > myBuffer.capacity()) {
+            final ByteBuffer bigger = ByteBuffer.allocate(theBytes);
+            bigger.put(myBuffer);
+            bigger.flip();
+            myBuffer = bigger;
+        }
+        myBuffer.compact();
+        while (myBuffer.position() < theBytes) {
+            if (myChannel.read(myBuffer) < 0) {
+                break;
+            }
+        }
+        myBuffer.flip();
+        if (myBuffer.remaining() >= theBytes) {
+            return true;
+        }
+        if (myBuffer.remaining() == 0 && theBytes == 1) {
+            return false;
+        }
+        throw new EOFException("binary race file ends part way through");
+    }
+}
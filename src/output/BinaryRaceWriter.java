@@ -0,0 +1,234 @@
+package output;
+
+import static output.BinaryRaceFormat.CROSSING;
+import static output.BinaryRaceFormat.LEADER_BOARD;
+import static output.BinaryRaceFormat.MAGIC;
+import static output.BinaryRaceFormat.MAX_SHORT_LAP;
+import static output.BinaryRaceFormat.MAX_SHORT_SLOTS;
+import static output.BinaryRaceFormat.MAX_TELEMETRY_DELTA;
+import static output.BinaryRaceFormat.NEGATIVE_ZERO;
+import static output.BinaryRaceFormat.RACER;
+import static output.BinaryRaceFormat.TELEMETRY;
+import static output.BinaryRaceFormat.TELEMETRY_LONG;
+import static output.BinaryRaceFormat.TELEMETRY_WIDE;
+import static output.BinaryRaceFormat.TELEMETRY_WITH_DELTA;
+import static output.BinaryRaceFormat.TIME;
+import static output.BinaryRaceFormat.TIME_DELTA;
+import static output.BinaryRaceFormat.VERSION;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import util.IntIntMap;
+
+/**
+ * Writes a race in the binary race file format described in
+ * {@link BinaryRaceFormat}.
+ */
+public class BinaryRaceWriter implements RaceSink {
+
+    /** The largest time step that fits in a TIME_DELTA record. */
+    private static final int MAX_TIME_DELTA = 0xFF;
+
+    private final RaceFile myFile;
+    private final IntIntMap mySlots;
+    private byte[] myRecord;
+    private int myLength;
+    private int mySlotWidth;
+    private int myTime;
+    private long myTimeFieldPosition;
+
+    /**
+     * Constructs a BinaryRaceWriter that writes to theFile.
+     *
+     * @param theFile The file to write to, closed when this writer is closed.
+     */
+    public BinaryRaceWriter(final RaceFile theFile) {
+        myFile = theFile;
+        mySlots = new IntIntMap(16);
+        myRecord = new byte[64];
+        mySlotWidth = 2;
+        myTimeFieldPosition = -1;
+    }
+
+    @Override
+    public void raceHeader(final String theRaceName, final String theTrackName,
+            final int theWidthRatio, final int theHeightRatio,
+            final int theDistance, final int theExpectedTime,
+            final int theNumParticipants) throws IOException {
+        mySlotWidth = theNumParticipants <= MAX_SHORT_SLOTS ? 2 : 4;
+        ensureCapacity(theNumParticipants * mySlotWidth + 1);
+
+        putInt(MAGIC);
+        putByte(VERSION);
+        putByte(mySlotWidth);
+        putString(theRaceName);
+        putString(theTrackName);
+        putInt(theWidthRatio);
+        putInt(theHeightRatio);
+        putInt(theDistance);
+        myTimeFieldPosition = myFile.position() + myLength;
+        putInt(theExpectedTime);
+        putInt(theNumParticipants);
+        flushRecord();
+    }
+
+    @Override
+    public void racer(final int theID, final String theName,
+            final double theStartPosition) throws IOException {
+        if (mySlots.put(theID, mySlots.size()) != IntIntMap.MISSING) {
+            throw new IllegalArgumentException("duplicate racer ID " + theID);
+        }
+        putByte(RACER);
+        putInt(theID);
+        putString(theName);
+        putLong(Double.doubleToLongBits(theStartPosition));
+        flushRecord();
+    }
+
+    @Override
+    public void telemetry(final int theTime, final int theID,
+            final double thePosition, final int theLap) throws IOException {
+        final long hundredths = FixedPoint.toHundredths(thePosition);
+        // Integer.MIN_VALUE is taken by NEGATIVE_ZERO in an i32 position
+        if (hundredths != FixedPoint.NEGATIVE_ZERO
+                && (hundredths <= Integer.MIN_VALUE
+                        || hundredths > Integer.MAX_VALUE)) {
+            moveTime(theTime);
+            putByte(TELEMETRY_LONG);
+            putSlot(theID);
+            putLong(hundredths);
+            putInt(theLap);
+            flushRecord();
+            return;
+        }
+        final boolean shortLap = theLap >= 0 && theLap <= MAX_SHORT_LAP;
+        final int delta = theTime - myTime;
+        if (shortLap && delta >= 0 && delta <= MAX_TELEMETRY_DELTA) {
+            putByte(TELEMETRY_WITH_DELTA | delta);
+            myTime = theTime;
+        } else {
+            moveTime(theTime);
+            putByte(shortLap ? TELEMETRY : TELEMETRY_WIDE);
+        }
+        putSlot(theID);
+        putInt(hundredths == FixedPoint.NEGATIVE_ZERO ? NEGATIVE_ZERO
+                : (int) hundredths);
+        if (shortLap) {
+            putByte(theLap);
+        } else {
+            putInt(theLap);
+        }
+        flushRecord();
+    }
+
+    @Override
+    public void leaderBoard(final int theTime, final int[] theRacerIDs)
+            throws IOException {
+        moveTime(theTime);
+        putByte(LEADER_BOARD);
+        for (int id : theRacerIDs) {
+            putSlot(id);
+        }
+        flushRecord();
+    }
+
+    @Override
+    public void crossing(final int theTime, final int theID, final int theLap,
+            final boolean theFinished) throws IOException {
+        moveTime(theTime);
+        putByte(CROSSING);
+        putSlot(theID);
+        putInt(theLap);
+        putByte(theFinished ? 1 : 0);
+        flushRecord();
+    }
+
+    @Override
+    public void finish(final int theRaceTime) throws IOException {
+        if (myTimeFieldPosition >= 0) {
+            myFile.patch(myTimeFieldPosition, new byte[] {
+                (byte) (theRaceTime >>> 24), (byte) (theRaceTime >>> 16),
+                (byte) (theRaceTime >>> 8), (byte) theRaceTime });
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        myFile.close();
+    }
+
+    private void moveTime(final int theTime) throws IOException {
+        final int delta = theTime - myTime;
+        if (delta == 0) {
+            return;
+        } else if (delta > 0 && delta <= MAX_TIME_DELTA) {
+            putByte(TIME_DELTA);
+            putByte(delta);
+        } else {
+            putByte(TIME);
+            putInt(theTime);
+        }
+        myTime = theTime;
+    }
+
+    private void putSlot(final int theID) {
+        final int slot = mySlots.get(theID);
+        if (slot == IntIntMap.MISSING) {
+            throw new IllegalArgumentException("unknown racer ID " + theID);
+        }
+        if (mySlotWidth == 2) {
+            putShort(slot);
+        } else {
+            putInt(slot);
+        }
+    }
+
+    private void putString(final String theString) {
+        final byte[] bytes = theString.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("name is too long");
+        }
+        ensureCapacity(myLength + 2 + bytes.length);
+        putShort(bytes.length);
+        System.arraycopy(bytes, 0, myRecord, myLength, bytes.length);
+        myLength += bytes.length;
+    }
+
+    private void putLong(final long theValue) {
+        putInt((int) (theValue >>> 32));
+        putInt((int) theValue);
+    }
+
+    private void putInt(final int theValue) {
+        myRecord[myLength++] = (byte) (theValue >>> 24);
+        myRecord[myLength++] = (byte) (theValue >>> 16);
+        myRecord[myLength++] = (byte) (theValue >>> 8);
+        myRecord[myLength++] = (byte) theValue;
+    }
+
+    private void putShort(final int theValue) {
+        myRecord[myLength++] = (byte) (theValue >>> 8);
+        myRecord[myLength++] = (byte) theValue;
+    }
+
+    private void putByte(final int theValue) {
+        myRecord[myLength++] = (byte) theValue;
+    }
+
+    private void ensureCapacity(final int theCapacity) {
+        // Leave room for the fixed width fields around a record.
+        final int needed = theCapacity + 32;
+        if (needed > myRecord.length) {
+            final byte[] bigger = new byte[Math.max(needed,
+                    myRecord.length * 2)];
+            System.arraycopy(myRecord, 0, bigger, 0, myLength);
+            myRecord = bigger;
+        }
+    }
+
+    private void flushRecord() throws IOException {
+        myFile.write(myRecord, 0, myLength);
+        myLength = 0;
+    }
+}
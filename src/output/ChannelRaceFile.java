@@ -0,0 +1,83 @@
+package output;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A RaceFile that writes through a buffered FileChannel.
+ */
+public class ChannelRaceFile implements RaceFile {
+
+    /** The size of the write buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel myChannel;
+    private final ByteBuffer myBuffer;
+    private long myFlushed;
+
+    /**
+     * Creates (or truncates) the given file.
+     *
+     * @param theFile The file to write to.
+     * @throws IOException If the file can't be opened.
+     */
+    public ChannelRaceFile(final File theFile) throws IOException {
+        myChannel = FileChannel.open(theFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        myBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(final byte[] theBytes, final int theOffset,
+            final int theLength) throws IOException {
+        if (theLength > myBuffer.remaining()) {
+            flush();
+            if (theLength > myBuffer.capacity()) {
+                writeFully(ByteBuffer.wrap(theBytes, theOffset, theLength));
+                return;
+            }
+        }
+        myBuffer.put(theBytes, theOffset, theLength);
+    }
+
+    @Override
+    public long position() {
+        return myFlushed + myBuffer.position();
+    }
+
+    @Override
+    public void patch(final long thePosition, final byte[] theBytes)
+            throws IOException {
+        flush();
+        final ByteBuffer patch = ByteBuffer.wrap(theBytes);
+        long position = thePosition;
+        while (patch.hasRemaining()) {
+            position += myChannel.write(patch, position);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            myChannel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        myBuffer.flip();
+        writeFully(myBuffer);
+        myBuffer.clear();
+    }
+
+    private void writeFully(final ByteBuffer theBuffer) throws IOException {
+        while (theBuffer.hasRemaining()) {
+            myFlushed += myChannel.write(theBuffer);
+        }
+    }
+}
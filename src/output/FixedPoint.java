@@ -0,0 +1,89 @@
+package output;
+
+import static java.lang.String.format;
+
+import java.util.Locale;
+
+/**
+ * Converts race positions to and from hundredths, rounding exactly the way
+ * {@code String.format("%.2f", value)} does so the text and binary formats
+ * always agree.
+ */
+public final class FixedPoint {
+
+    /**
+     * The hundredths value used for negative values that round to zero, which
+     * {@code %.2f} prints as "-0.00".
+     */
+    public static final long NEGATIVE_ZERO = Long.MIN_VALUE;
+
+    /**
+     * How close to a half hundredth a value has to be before we let the
+     * formatter decide which way it rounds. Big values are also given a few
+     * ulps of the scaled value, since scaling can be off by that much.
+     */
+    private static final double TIE_TOLERANCE = 1e-6;
+
+    /** The magnitude every value has to stay under to fit in hundredths. */
+    private static final double LIMIT = Long.MAX_VALUE / 100.0;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Returns the given value in hundredths, rounded the same way as
+     * {@code %.2f}.
+     *
+     * @param theValue The value to convert.
+     * @return The value in hundredths, or {@link #NEGATIVE_ZERO}.
+     * @throws IllegalArgumentException If the value isn't finite or is too
+     *         big for a long number of hundredths.
+     */
+    public static long toHundredths(final double theValue) {
+        if (!(Math.abs(theValue) < LIMIT)) {
+            throw new IllegalArgumentException("position out of range: "
+                    + theValue);
+        }
+        final boolean negative = Double.doubleToRawLongBits(theValue) < 0;
+        final long hundredths = absoluteHundredths(Math.abs(theValue));
+        if (negative) {
+            return hundredths == 0 ? NEGATIVE_ZERO : -hundredths;
+        }
+        return hundredths;
+    }
+
+    /**
+     * Returns the value the given hundredths stand for.
+     *
+     * @param theHundredths The hundredths, or {@link #NEGATIVE_ZERO}.
+     * @return The value.
+     */
+    public static double fromHundredths(final long theHundredths) {
+        if (theHundredths == NEGATIVE_ZERO) {
+            return -0.0;
+        }
+        return theHundredths / 100.0;
+    }
+
+    /**
+     * Returns the given non-negative value in hundredths. {@code %.2f} rounds
+     * half up on the shortest decimal representation of the value, which is
+     * what scaling and rounding gives us unless the value is right on a half
+     * hundredth. Those rare values are handed to the formatter.
+     *
+     * @param theValue The value to convert, must not be negative.
+     * @return The value in hundredths.
+     */
+    static long absoluteHundredths(final double theValue) {
+        final double scaled = theValue * 100;
+        final double floor = Math.floor(scaled);
+        if (Math.abs(scaled - floor - 0.5) > TIE_TOLERANCE
+                + 4 * Math.ulp(scaled)) {
+            return (long) Math.floor(scaled + 0.5);
+        }
+        final String formatted = format(Locale.ROOT, "%.2f", theValue);
+        final int point = formatted.indexOf('.');
+        return Long.parseLong(formatted.substring(0, point)) * 100
+                + Long.parseLong(formatted.substring(point + 1));
+    }
+}
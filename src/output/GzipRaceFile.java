@@ -0,0 +1,306 @@
+package output;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A RaceFile that writes a gzip file, compressing on a pool of worker threads
+ * so compression keeps up with the race instead of slowing it down.
+ *
+ * The output is cut into fixed size chunks and each chunk is deflated on its
+ * own into a complete gzip member. A file of several members is still a
+ * standard gzip file, so {@code zcat} and {@code GZIPInputStream} read it
+ * back as one stream. At most a few chunks per worker are in flight at once,
+ * past that writing waits for the oldest chunk to finish.
+ *
+ * The first {@link #HEADER_SIZE} bytes are kept as their own member stored
+ * without compression, so they can still be patched in place (for the #TIME
+ * header) by rewriting the stored bytes and the member's checksum. Patching
+ * anything after that isn't supported. Chunk boundaries don't depend on the
+ * number of threads, so the same race always compresses to the same file.
+ */
+public class GzipRaceFile implements RaceFile {
+
+    /** The number of leading bytes that can be patched. */
+    public static final int HEADER_SIZE = 1 << 12;
+
+    /** The number of bytes compressed into each gzip member. */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /** The chunks in flight per worker before writing waits. */
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    /** A gzip member header, deflate, no flags, no time, unknown OS. */
+    private static final byte[] MEMBER_HEADER = {
+        0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    /** The offset of the stored header bytes in the file. */
+    private static final int STORED_DATA_OFFSET = MEMBER_HEADER.length + 5;
+
+    private final FileChannel myChannel;
+    private final ExecutorService myPool;
+    private final int myLevel;
+    private final int myMaxInFlight;
+    private final ArrayDeque<Future<byte[]>> myInFlight;
+    private final ArrayDeque<byte[]> myInFlightChunks;
+    private final ArrayDeque<byte[]> myFreeChunks;
+    private final byte[] myHeader;
+    private boolean myHeaderWritten;
+    private byte[] myChunk;
+    private int myChunkLength;
+    private long myPosition;
+    private boolean myClosed;
+
+    /**
+     * Creates (or truncates) the given file.
+     *
+     * @param theFile    The file to write to.
+     * @param theThreads The number of threads to compress on.
+     * @param theLevel   The {@link Deflater} compression level.
+     * @throws IOException If the file can't be opened.
+     */
+    public GzipRaceFile(final File theFile, final int theThreads,
+            final int theLevel) throws IOException {
+        if (theThreads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        myChannel = FileChannel.open(theFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        myPool = Executors.newFixedThreadPool(theThreads,
+                new CompressorFactory());
+        myLevel = theLevel;
+        myMaxInFlight = theThreads * CHUNKS_PER_THREAD;
+        myInFlight = new ArrayDeque<>();
+        myInFlightChunks = new ArrayDeque<>();
+        myFreeChunks = new ArrayDeque<>();
+        myHeader = new byte[HEADER_SIZE];
+    }
+
+    @Override
+    public void write(final byte[] theBytes, final int theOffset,
+            final int theLength) throws IOException {
+        int offset = theOffset;
+        int remaining = theLength;
+        if (!myHeaderWritten) {
+            final int part = Math.min(remaining,
+                    HEADER_SIZE - (int) myPosition);
+            System.arraycopy(theBytes, offset, myHeader, (int) myPosition,
+                    part);
+            myPosition += part;
+            offset += part;
+            remaining -= part;
+            if (myPosition < HEADER_SIZE) {
+                return;
+            }
+            writeHeader(HEADER_SIZE);
+        }
+        while (remaining > 0) {
+            if (myChunk == null) {
+                myChunk = myFreeChunks.isEmpty() ? new byte[CHUNK_SIZE]
+                        : myFreeChunks.pop();
+            }
+            final int part = Math.min(remaining, CHUNK_SIZE - myChunkLength);
+            System.arraycopy(theBytes, offset, myChunk, myChunkLength, part);
+            myChunkLength += part;
+            myPosition += part;
+            offset += part;
+            remaining -= part;
+            if (myChunkLength == CHUNK_SIZE) {
+                submitChunk();
+            }
+        }
+    }
+
+    @Override
+    public long position() {
+        return myPosition;
+    }
+
+    @Override
+    public void patch(final long thePosition, final byte[] theBytes)
+            throws IOException {
+        if (thePosition < 0
+                || thePosition + theBytes.length > HEADER_SIZE
+                || thePosition + theBytes.length > myPosition) {
+            throw new IOException("can only patch the first " + HEADER_SIZE
+                    + " bytes of a compressed file");
+        }
+        System.arraycopy(theBytes, 0, myHeader, (int) thePosition,
+                theBytes.length);
+        if (myHeaderWritten) {
+            writeFully(ByteBuffer.wrap(theBytes),
+                    STORED_DATA_OFFSET + thePosition);
+            writeFully(ByteBuffer.wrap(littleEndian(crc(myHeader,
+                    HEADER_SIZE))), STORED_DATA_OFFSET + HEADER_SIZE);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (myClosed) {
+            return;
+        }
+        myClosed = true;
+        try {
+            if (!myHeaderWritten) {
+                writeHeader((int) myPosition);
+            }
+            if (myChunkLength > 0) {
+                submitChunk();
+            }
+            while (!myInFlight.isEmpty()) {
+                writeOldestChunk();
+            }
+        } finally {
+            myPool.shutdownNow();
+            myChannel.close();
+        }
+    }
+
+    /**
+     * Writes the first theLength bytes as a stored member at the start of the
+     * file, which is where later members go on from.
+     */
+    private void writeHeader(final int theLength) throws IOException {
+        final ByteBuffer member = ByteBuffer.allocate(
+                STORED_DATA_OFFSET + theLength + 8);
+        member.put(MEMBER_HEADER);
+        // One final stored block, its length and the length's complement.
+        member.put((byte) 1);
+        member.put((byte) theLength).put((byte) (theLength >>> 8));
+        member.put((byte) ~theLength).put((byte) (~theLength >>> 8));
+        member.put(myHeader, 0, theLength);
+        member.put(littleEndian(crc(myHeader, theLength)));
+        member.put(littleEndian(theLength));
+        member.flip();
+        writeFully(member, 0);
+        myChannel.position(member.limit());
+        myHeaderWritten = true;
+    }
+
+    private void submitChunk() throws IOException {
+        if (myInFlight.size() >= myMaxInFlight) {
+            writeOldestChunk();
+        }
+        myInFlight.add(myPool.submit(
+                new Compressor(myChunk, myChunkLength, myLevel)));
+        myInFlightChunks.add(myChunk);
+        myChunk = null;
+        myChunkLength = 0;
+    }
+
+    private void writeOldestChunk() throws IOException {
+        final Future<byte[]> oldest = myInFlight.remove();
+        final byte[] member;
+        try {
+            member = oldest.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while compressing", e);
+        } catch (ExecutionException e) {
+            throw new IOException("compression failed", e.getCause());
+        }
+        // The worker is done with the chunk, so it can be filled again.
+        myFreeChunks.push(myInFlightChunks.remove());
+        final ByteBuffer buffer = ByteBuffer.wrap(member);
+        while (buffer.hasRemaining()) {
+            myChannel.write(buffer);
+        }
+    }
+
+    private void writeFully(final ByteBuffer theBuffer, final long thePosition)
+            throws IOException {
+        long position = thePosition;
+        while (theBuffer.hasRemaining()) {
+            position += myChannel.write(theBuffer, position);
+        }
+    }
+
+    private static int crc(final byte[] theBytes, final int theLength) {
+        final CRC32 crc = new CRC32();
+        crc.update(theBytes, 0, theLength);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] littleEndian(final int theValue) {
+        return new byte[] {
+            (byte) theValue, (byte) (theValue >>> 8),
+            (byte) (theValue >>> 16), (byte) (theValue >>> 24)
+        };
+    }
+
+    /**
+     * Deflates one chunk into a complete gzip member.
+     */
+    private static final class Compressor implements Callable<byte[]> {
+
+        private final byte[] myBytes;
+        private final int myLength;
+        private final int myCompressionLevel;
+
+        Compressor(final byte[] theBytes, final int theLength,
+                final int theLevel) {
+            myBytes = theBytes;
+            myLength = theLength;
+            myCompressionLevel = theLevel;
+        }
+
+        @Override
+        public byte[] call() {
+            final Deflater deflater = new Deflater(myCompressionLevel, true);
+            try {
+                deflater.setInput(myBytes, 0, myLength);
+                deflater.finish();
+                byte[] member = new byte[MEMBER_HEADER.length
+                        + myLength / 4 + 64];
+                System.arraycopy(MEMBER_HEADER, 0, member, 0,
+                        MEMBER_HEADER.length);
+                int length = MEMBER_HEADER.length;
+                while (!deflater.finished()) {
+                    if (length == member.length) {
+                        member = Arrays.copyOf(member, member.length * 2);
+                    }
+                    length += deflater.deflate(member, length,
+                            member.length - length);
+                }
+                member = Arrays.copyOf(member, length + 8);
+                final byte[] crc = littleEndian(crc(myBytes, myLength));
+                final byte[] size = littleEndian(myLength);
+                System.arraycopy(crc, 0, member, length, 4);
+                System.arraycopy(size, 0, member, length + 4, 4);
+                return member;
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static final class CompressorFactory implements ThreadFactory {
+
+        private final AtomicInteger myCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable theTask) {
+            final Thread thread = new Thread(theTask,
+                    "gzip-" + myCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
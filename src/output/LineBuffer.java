@@ -0,0 +1,148 @@
+package output;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A reusable buffer that race file lines are encoded into as ASCII, without
+ * going through String.format or creating any objects per line.
+ *
+ * Numbers are written the same way {@code String.format} writes them in the
+ * root locale: integers as plain decimal digits and positions like
+ * {@code %.2f}, using {@link FixedPoint} for the rounding.
+ */
+final class LineBuffer {
+
+    /**
+     * Positions at least this big are handed to the formatter, below it the
+     * hundredths are exact enough for {@link FixedPoint} to round correctly.
+     */
+    private static final double MAX_FAST_HUNDREDTHS_VALUE = 1e9;
+
+    private byte[] myBytes;
+    private int myLength;
+
+    /**
+     * Constructs an empty LineBuffer.
+     */
+    LineBuffer() {
+        myBytes = new byte[64];
+    }
+
+    /**
+     * Empties the buffer, keeping its capacity.
+     */
+    void clear() {
+        myLength = 0;
+    }
+
+    LineBuffer append(final byte theByte) {
+        ensureCapacity(1);
+        myBytes[myLength++] = theByte;
+        return this;
+    }
+
+    LineBuffer append(final byte[] theBytes) {
+        ensureCapacity(theBytes.length);
+        System.arraycopy(theBytes, 0, myBytes, myLength, theBytes.length);
+        myLength += theBytes.length;
+        return this;
+    }
+
+    /**
+     * Appends theValue in decimal, the same as {@code %d}.
+     *
+     * @param theValue The value to append.
+     * @return This buffer.
+     */
+    LineBuffer append(final int theValue) {
+        long value = theValue;
+        if (value < 0) {
+            append((byte) '-');
+            value = -value;
+        }
+        appendDigits(value, digitCount(value));
+        return this;
+    }
+
+    /**
+     * Appends theValue with two decimal places, the same as {@code %.2f}.
+     *
+     * @param theValue The value to append.
+     * @return This buffer.
+     */
+    LineBuffer appendHundredths(final double theValue) {
+        final double magnitude = Math.abs(theValue);
+        if (!(magnitude < MAX_FAST_HUNDREDTHS_VALUE)) {
+            // Huge, infinite or NaN, none of which a race should produce.
+            return append(String.format(Locale.ROOT, "%.2f", theValue)
+                    .getBytes(StandardCharsets.US_ASCII));
+        }
+        if (Double.doubleToRawLongBits(theValue) < 0) {
+            append((byte) '-');
+        }
+        final long hundredths = FixedPoint.absoluteHundredths(magnitude);
+        final long whole = hundredths / 100;
+        final int fraction = (int) (hundredths % 100);
+        appendDigits(whole, digitCount(whole));
+        ensureCapacity(3);
+        myBytes[myLength++] = '.';
+        myBytes[myLength++] = (byte) ('0' + fraction / 10);
+        myBytes[myLength++] = (byte) ('0' + fraction % 10);
+        return this;
+    }
+
+    /**
+     * Writes the contents of this buffer to theFile.
+     *
+     * @param theFile The file to write to.
+     * @throws IOException If the file can't be written.
+     */
+    void writeTo(final RaceFile theFile) throws IOException {
+        theFile.write(myBytes, 0, myLength);
+    }
+
+    int length() {
+        return myLength;
+    }
+
+    /**
+     * Returns the bytes of theValue in decimal, for values that are written
+     * over and over.
+     *
+     * @param theValue The value to encode.
+     * @return The encoded value.
+     */
+    static byte[] encode(final int theValue) {
+        return Integer.toString(theValue).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void appendDigits(final long theValue, final int theDigits) {
+        ensureCapacity(theDigits);
+        long value = theValue;
+        for (int i = myLength + theDigits - 1; i >= myLength; i--) {
+            myBytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        myLength += theDigits;
+    }
+
+    private static int digitCount(final long theValue) {
+        int digits = 1;
+        long limit = 10;
+        while (theValue >= limit && digits < 19) {
+            digits++;
+            limit *= 10;
+        }
+        return digits;
+    }
+
+    private void ensureCapacity(final int theExtra) {
+        if (myLength + theExtra > myBytes.length) {
+            myBytes = Arrays.copyOf(myBytes,
+                    Math.max(myBytes.length * 2, myLength + theExtra));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package output;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A RaceFile that writes through memory mapped regions of the file, for races
+ * that run to several gigabytes.
+ *
+ * Writes are copied straight into the current mapped region, and when it is
+ * full the next region is mapped after it, which grows the file. Closing
+ * truncates the file back to the bytes actually written. Patches that land in
+ * the current region are written into the mapping, anything earlier, like the
+ * #TIME header, is written in place through the channel.
+ */
+public class MappedRaceFile implements RaceFile {
+
+    /** The size of each mapped region. */
+    private static final int REGION_SIZE = 1 << 26;
+
+    private final FileChannel myChannel;
+    private MappedByteBuffer myRegion;
+    private long myRegionStart;
+
+    /**
+     * Creates (or truncates) the given file.
+     *
+     * @param theFile The file to write to.
+     * @throws IOException If the file can't be opened or mapped.
+     */
+    public MappedRaceFile(final File theFile) throws IOException {
+        myChannel = FileChannel.open(theFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        myRegionStart = 0;
+        myRegion = myChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                REGION_SIZE);
+    }
+
+    @Override
+    public void write(final byte[] theBytes, final int theOffset,
+            final int theLength) throws IOException {
+        int offset = theOffset;
+        int remaining = theLength;
+        while (remaining > myRegion.remaining()) {
+            final int part = myRegion.remaining();
+            myRegion.put(theBytes, offset, part);
+            offset += part;
+            remaining -= part;
+            nextRegion();
+        }
+        myRegion.put(theBytes, offset, remaining);
+    }
+
+    @Override
+    public long position() {
+        return myRegionStart + myRegion.position();
+    }
+
+    @Override
+    public void patch(final long thePosition, final byte[] theBytes)
+            throws IOException {
+        if (thePosition >= myRegionStart
+                && thePosition + theBytes.length <= position()) {
+            final int start = (int) (thePosition - myRegionStart);
+            for (int i = 0; i < theBytes.length; i++) {
+                myRegion.put(start + i, theBytes[i]);
+            }
+            return;
+        }
+        final ByteBuffer patch = ByteBuffer.wrap(theBytes);
+        long position = thePosition;
+        while (patch.hasRemaining()) {
+            position += myChannel.write(patch, position);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (myRegion == null) {
+            return;
+        }
+        try {
+            final long length = position();
+            unmap(myRegion);
+            myRegion = null;
+            myChannel.truncate(length);
+        } finally {
+            myChannel.close();
+        }
+    }
+
+    private void nextRegion() throws IOException {
+        final MappedByteBuffer full = myRegion;
+        myRegionStart += full.capacity();
+        myRegion = myChannel.map(FileChannel.MapMode.READ_WRITE,
+                myRegionStart, REGION_SIZE);
+        unmap(full);
+    }
+
+    /**
+     * Releases a mapping now rather than whenever it is garbage collected, so
+     * gigabytes of finished regions don't stay mapped and the file can be
+     * truncated on every platform. This needs an internal JDK API, so if it
+     * isn't there the mapping is left for the garbage collector. The buffer
+     * must not be used afterwards.
+     */
+    private static void unmap(final MappedByteBuffer theBuffer) {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Method invokeCleaner = unsafeClass.getMethod(
+                    "invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), theBuffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available on this JVM, or sun.misc isn't exported to us.
+        }
+    }
+}
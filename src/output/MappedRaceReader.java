@@ -0,0 +1,801 @@
+package output;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Reads a race in the text race file format on several threads at once.
+ *
+ * Opening reads only the header. The event lines after it are split into
+ * chunks that start and end on a line, and each chunk is memory mapped and
+ * parsed by its own task straight from the mapped bytes, without making a
+ * String per line. The $T, $L and $C lines of a chunk are sent to a sink of
+ * its own, see {@link #read(int, IntFunction)}, or collected into
+ * {@link RaceColumns} with {@link #readColumns(int)}. To send the whole race
+ * to one sink in order, {@link #readInOrder(int, RaceSink)} parses a few
+ * chunks ahead and passes each on as soon as the ones before it have been, so
+ * a race much bigger than the heap can be read.
+ *
+ * Positions are parsed to hundredths and turned back into a double with
+ * {@link FixedPoint}, so writing them again, as text or binary, gives the
+ * same bytes as the file they came from.
+ */
+public final class MappedRaceReader implements Closeable {
+
+    /** The smallest chunk worth a task of its own. */
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    /** The biggest chunk mapped at once. */
+    private static final long MAX_CHUNK_SIZE = 1 << 26;
+
+    /** How many chunks each thread gets, to even out the work. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** The biggest chunk held in memory by {@link #readInOrder}. */
+    private static final long IN_ORDER_CHUNK_SIZE = 1 << 20;
+
+    /** How many chunks per thread readInOrder parses ahead of the sink. */
+    private static final int IN_ORDER_CHUNKS_PER_THREAD = 2;
+
+    /** How much is read at a time looking for a line. */
+    private static final int PROBE_SIZE = 1 << 12;
+
+    private final File myFile;
+    private final FileChannel myChannel;
+    private final long myLength;
+    private final ByteBuffer myProbe;
+
+    private String myRaceName;
+    private String myTrackName;
+    private int myWidthRatio;
+    private int myHeightRatio;
+    private int myDistance;
+    private int myTime;
+    private int myParticipants;
+    private long myHeaderEnd;
+    private int[] myIDs;
+    private String[] myNames;
+    private double[] myStartPositions;
+
+    private MappedRaceReader(final File theFile, final FileChannel theChannel)
+            throws IOException {
+        myFile = theFile;
+        myChannel = theChannel;
+        myLength = theChannel.size();
+        myProbe = ByteBuffer.allocate(PROBE_SIZE);
+    }
+
+    /**
+     * Opens theFile and reads its header.
+     *
+     * @param theFile A race file in the text format.
+     * @return The reader, which must be closed.
+     * @throws IOException If the file can't be read or isn't a text race.
+     */
+    public static MappedRaceReader open(final File theFile)
+            throws IOException {
+        final FileChannel channel = FileChannel.open(theFile.toPath(),
+                StandardOpenOption.READ);
+        try {
+            final MappedRaceReader reader = new MappedRaceReader(theFile,
+                    channel);
+            reader.readHeader();
+            return reader;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String getRaceName() {
+        return myRaceName;
+    }
+
+    public String getTrackName() {
+        return myTrackName;
+    }
+
+    public int getWidthRatio() {
+        return myWidthRatio;
+    }
+
+    public int getHeightRatio() {
+        return myHeightRatio;
+    }
+
+    public int getDistance() {
+        return myDistance;
+    }
+
+    /**
+     * Returns the race time from the header, which is the actual race time
+     * once the race has finished.
+     *
+     * @return The race time in milliseconds.
+     */
+    public int getTime() {
+        return myTime;
+    }
+
+    public int getParticipants() {
+        return myParticipants;
+    }
+
+    public int getRacerCount() {
+        return myIDs.length;
+    }
+
+    /**
+     * Returns the ID of a racer, numbered in the order they are listed in the
+     * header.
+     *
+     * @param theIndex The racer's place in the header.
+     * @return The racer's ID.
+     */
+    public int getID(final int theIndex) {
+        return myIDs[theIndex];
+    }
+
+    public String getName(final int theIndex) {
+        return myNames[theIndex];
+    }
+
+    public double getStartPosition(final int theIndex) {
+        return myStartPositions[theIndex];
+    }
+
+    /**
+     * Sends the race header and the racers to theSink.
+     *
+     * @param theSink The sink to send the header to.
+     * @throws IOException If the sink can't write.
+     */
+    public void sendHeader(final RaceSink theSink) throws IOException {
+        theSink.raceHeader(myRaceName, myTrackName, myWidthRatio,
+                myHeightRatio, myDistance, myTime, myParticipants);
+        for (int i = 0; i < myIDs.length; i++) {
+            theSink.racer(myIDs[i], myNames[i], myStartPositions[i]);
+        }
+    }
+
+    /**
+     * Parses every event line on theThreads threads. The lines are split into
+     * chunks, and theSinks is asked for the sink of each chunk, by its
+     * number, on the thread that parses it. Chunk 0 has the first events of
+     * the race and each chunk carries on where the one before ended, so
+     * joining the sinks' events in chunk order gives the whole race. Neither
+     * the header nor the finish is sent, and the sinks aren't closed.
+     *
+     * @param theThreads The number of threads to parse on.
+     * @param theSinks Gives the sink for each chunk.
+     * @return The number of chunks.
+     * @throws IOException If the file can't be read, has a bad line, or a
+     *                     sink can't write.
+     */
+    public int read(final int theThreads,
+            final IntFunction<? extends RaceSink> theSinks) throws IOException {
+        if (theThreads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        final long[] bounds = chunkBounds(theThreads, MAX_CHUNK_SIZE);
+        return read(bounds, theThreads, chunk -> parse(bounds[chunk],
+                bounds[chunk + 1], theSinks.apply(chunk)));
+    }
+
+    /**
+     * Parses every event line on theThreads threads and sends them to theSink
+     * in the order they are in the file. The lines are parsed a chunk of at
+     * most {@value #IN_ORDER_CHUNK_SIZE} bytes at a time, into columns, and
+     * no more than {@value #IN_ORDER_CHUNKS_PER_THREAD} chunks per thread are
+     * held at once, so the memory used doesn't grow with the race. Each chunk
+     * is sent as soon as every chunk before it has been, by the thread that
+     * finished the last one needed, and only one thread sends to theSink at a
+     * time. Neither the header nor the finish is sent, and theSink isn't
+     * closed.
+     *
+     * @param theThreads The number of threads to parse on.
+     * @param theSink The sink to send the events to.
+     * @throws IOException If the file can't be read, has a bad line, or the
+     *                     sink can't write.
+     */
+    public void readInOrder(final int theThreads, final RaceSink theSink)
+            throws IOException {
+        if (theThreads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        final long[] bounds = chunkBounds(theThreads, IN_ORDER_CHUNK_SIZE);
+        final InOrder inOrder = new InOrder(bounds.length - 1,
+                theThreads * IN_ORDER_CHUNKS_PER_THREAD, theSink);
+        read(bounds, theThreads, chunk -> {
+            final RaceColumns.Builder part = inOrder.awaitRoom(chunk);
+            parse(bounds[chunk], bounds[chunk + 1], part);
+            inOrder.parsed(chunk);
+        });
+    }
+
+    /**
+     * Parses every event line on theThreads threads into columns. The whole
+     * race is held in memory, see {@link #readInOrder(int, RaceSink)} for
+     * races bigger than the heap.
+     *
+     * @param theThreads The number of threads to parse on.
+     * @return The events of the race.
+     * @throws IOException If the file can't be read or has a bad line.
+     */
+    public RaceColumns readColumns(final int theThreads) throws IOException {
+        if (theThreads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        final long[] bounds = chunkBounds(theThreads, MAX_CHUNK_SIZE);
+        final RaceColumns.Builder[] parts =
+                new RaceColumns.Builder[bounds.length - 1];
+        read(bounds, theThreads, chunk -> {
+            parts[chunk] = new RaceColumns.Builder();
+            parse(bounds[chunk], bounds[chunk + 1], parts[chunk]);
+        });
+        return new RaceColumns(Arrays.asList(parts));
+    }
+
+    @Override
+    public void close() throws IOException {
+        myChannel.close();
+    }
+
+    /**
+     * Runs theTask for each of the chunks between theBounds on theThreads
+     * threads, in chunk order as threads come free.
+     */
+    private int read(final long[] theBounds, final int theThreads,
+            final ChunkTask theTask) throws IOException {
+        final int chunks = theBounds.length - 1;
+        if (theThreads == 1 || chunks == 1) {
+            try {
+                for (int i = 0; i < chunks; i++) {
+                    theTask.run(i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while reading " + myFile,
+                        e);
+            }
+            return chunks;
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(theThreads, chunks), new ParserFactory());
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                final int chunk = i;
+                futures.add(pool.submit(() -> {
+                    theTask.run(chunk);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while reading "
+                            + myFile, e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("could not read " + myFile,
+                            e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return chunks;
+    }
+
+    /**
+     * Splits the event lines into chunks of no more than about theMaxSize
+     * bytes, returning where each starts and, on the end, where the last one
+     * ends.
+     */
+    private long[] chunkBounds(final int theThreads, final long theMaxSize)
+            throws IOException {
+        final long size = myLength - myHeaderEnd;
+        int chunks = (int) Math.min((long) theThreads * CHUNKS_PER_THREAD,
+                (size + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE);
+        chunks = (int) Math.max(chunks,
+                (size + theMaxSize - 1) / theMaxSize);
+        chunks = Math.max(1, chunks);
+
+        final long[] bounds = new long[chunks + 1];
+        bounds[0] = myHeaderEnd;
+        for (int i = 1; i < chunks; i++) {
+            final long target = myHeaderEnd + size * i / chunks;
+            bounds[i] = Math.max(bounds[i - 1], lineStartAt(target));
+        }
+        bounds[chunks] = myLength;
+        return bounds;
+    }
+
+    /**
+     * Returns thePosition if a line starts there, or the start of the next
+     * line, or the end of the file.
+     */
+    private long lineStartAt(final long thePosition) throws IOException {
+        long position = thePosition - 1;
+        while (position < myLength) {
+            myProbe.clear();
+            final int read = myChannel.read(myProbe, position);
+            if (read <= 0) {
+                break;
+            }
+            final byte[] bytes = myProbe.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return myLength;
+    }
+
+    /**
+     * Maps the event lines from theStart to theEnd and sends them to
+     * theSink.
+     */
+    private void parse(final long theStart, final long theEnd,
+            final RaceSink theSink) throws IOException {
+        if (theEnd <= theStart) {
+            return;
+        }
+        if (theEnd - theStart > Integer.MAX_VALUE) {
+            throw new IOException(myFile + " has a line too long to map at "
+                    + "byte " + theStart);
+        }
+        final MappedByteBuffer bytes = myChannel.map(
+                FileChannel.MapMode.READ_ONLY, theStart, theEnd - theStart);
+        new ChunkParser(bytes, theStart, myParticipants).parse(theSink);
+    }
+
+    /**
+     * Reads the header lines, up to the first event.
+     */
+    private void readHeader() throws IOException {
+        final List<String> racers = new ArrayList<>();
+        int participants = -1;
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_SIZE * 16);
+        long position = 0;
+        int start = 0;
+        boolean ended = false;
+        myHeaderEnd = -1;
+        while (myHeaderEnd < 0) {
+            // Find the end of the line at start, reading more if need be
+            int end = -1;
+            final byte[] bytes = buffer.array();
+            for (int i = start; i < buffer.position(); i++) {
+                if (bytes[i] == '\n') {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0 && !ended) {
+                if (start == 0 && !buffer.hasRemaining()) {
+                    final ByteBuffer bigger = ByteBuffer.allocate(
+                            buffer.capacity() * 2);
+                    buffer.flip();
+                    bigger.put(buffer);
+                    buffer = bigger;
+                } else if (start > 0) {
+                    buffer.flip();
+                    buffer.position(start);
+                    buffer.compact();
+                    position += start;
+                    start = 0;
+                }
+                ended = myChannel.read(buffer, position + buffer.position())
+                        < 0;
+                continue;
+            }
+            if (end < 0) {
+                end = buffer.position();
+            }
+            if (start == end && ended) {
+                myHeaderEnd = position + start;
+                break;
+            }
+            if (bytes[start] == '$') {
+                myHeaderEnd = position + start;
+                break;
+            }
+            final String line = new String(bytes, start, end - start,
+                    StandardCharsets.UTF_8).trim();
+            start = Math.min(end + 1, buffer.position());
+            if (!line.startsWith("#")) {
+                throw new IOException(myFile + " isn't a text race file");
+            }
+            final int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            final String value = line.substring(colon + 1);
+            try {
+                switch (line.substring(1, colon)) {
+                    case "RACE":
+                        myRaceName = value;
+                        break;
+                    case "TRACK":
+                        myTrackName = value;
+                        break;
+                    case "WIDTH":
+                        myWidthRatio = Integer.parseInt(value);
+                        break;
+                    case "HEIGHT":
+                        myHeightRatio = Integer.parseInt(value);
+                        break;
+                    case "DISTANCE":
+                        myDistance = Integer.parseInt(value);
+                        break;
+                    case "TIME":
+                        myTime = Integer.parseInt(value);
+                        break;
+                    case "PARTICIPANTS":
+                        participants = Integer.parseInt(value);
+                        break;
+                    default:
+                        // #<id>:<name>:<start position>
+                        racers.add(line);
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException(myFile + " has a bad header line: "
+                        + line, e);
+            }
+        }
+        if (participants < 0 || myDistance <= 0) {
+            throw new IOException(myFile + " isn't a text race file");
+        }
+        myParticipants = participants;
+
+        final int size = racers.size();
+        myIDs = new int[size];
+        myNames = new String[size];
+        myStartPositions = new double[size];
+        for (int i = 0; i < size; i++) {
+            final String racer = racers.get(i);
+            final int first = racer.indexOf(':');
+            final int last = racer.lastIndexOf(':');
+            try {
+                myIDs[i] = Integer.parseInt(racer.substring(1, first));
+                myNames[i] = racer.substring(first + 1, last);
+                myStartPositions[i] = Double.parseDouble(
+                        racer.substring(last + 1));
+            } catch (NumberFormatException
+                    | StringIndexOutOfBoundsException e) {
+                throw new IOException(myFile + " has a bad racer line: "
+                        + racer, e);
+            }
+        }
+    }
+
+    /**
+     * What is done with one chunk, on the thread that parses it.
+     */
+    private interface ChunkTask {
+
+        void run(int theChunk) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Keeps the chunks parsed by {@link #readInOrder(int, RaceSink)} until
+     * they can be sent in order, and holds the parsing back while too many
+     * are waiting.
+     */
+    private static final class InOrder {
+
+        private final RaceColumns.Builder[] myParts;
+        private final boolean[] myParsed;
+        private final int myWindow;
+        private final RaceSink mySink;
+        /** The next chunk to send, guarded by this. */
+        private int myNext;
+
+        InOrder(final int theChunks, final int theWindow,
+                final RaceSink theSink) {
+            myParts = new RaceColumns.Builder[theChunks];
+            myParsed = new boolean[theChunks];
+            myWindow = theWindow;
+            mySink = theSink;
+        }
+
+        /**
+         * Waits until theChunk is within the window of the next chunk to
+         * send, and returns the columns to parse it into. The chunks before
+         * it have all been started, so the next one to send is being parsed
+         * and never waits here.
+         */
+        synchronized RaceColumns.Builder awaitRoom(final int theChunk)
+                throws InterruptedException {
+            while (theChunk - myNext >= myWindow) {
+                wait();
+            }
+            myParts[theChunk] = new RaceColumns.Builder();
+            return myParts[theChunk];
+        }
+
+        /**
+         * Notes that theChunk has been parsed, and sends it and any parsed
+         * chunks after it if every chunk before it has been sent.
+         */
+        synchronized void parsed(final int theChunk) throws IOException {
+            myParsed[theChunk] = true;
+            while (myNext < myParts.length && myParsed[myNext]) {
+                myParts[myNext].sendTo(mySink);
+                myParts[myNext] = null;
+                myNext++;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Parses the event lines of one mapped chunk.
+     */
+    private final class ChunkParser {
+
+        private final ByteBuffer myBytes;
+        private final long myOffset;
+        private final int myLimit;
+        private int[] myLeaderBoard;
+        private int myPosition;
+        private int myLineStart;
+        private boolean myLineEnded;
+
+        ChunkParser(final ByteBuffer theBytes, final long theOffset,
+                final int theParticipants) {
+            myBytes = theBytes;
+            myOffset = theOffset;
+            myLimit = theBytes.limit();
+            myLeaderBoard = new int[Math.max(theParticipants, 0)];
+        }
+
+        void parse(final RaceSink theSink) throws IOException {
+            while (myPosition < myLimit) {
+                myLineStart = myPosition;
+                if (myBytes.get(myPosition) == '\n') {
+                    // A blank line
+                    myPosition++;
+                    continue;
+                }
+                if (myLimit - myPosition < 4 || myBytes.get(myPosition) != '$'
+                        || myBytes.get(myPosition + 2) != ':') {
+                    throw bad();
+                }
+                final byte type = myBytes.get(myPosition + 1);
+                myPosition += 3;
+                final int time = parseField();
+                if (myLineEnded && type != 'L') {
+                    throw bad();
+                }
+                switch (type) {
+                    case 'T':
+                        final int id = parseInt();
+                        final long hundredths = parseHundredths();
+                        final int lap = parseLastInt();
+                        theSink.telemetry(time, id,
+                                FixedPoint.fromHundredths(hundredths), lap);
+                        break;
+                    case 'L':
+                        theSink.leaderBoard(time, parseIDs());
+                        break;
+                    case 'C':
+                        final int racer = parseInt();
+                        final int crossed = parseInt();
+                        theSink.crossing(time, racer, crossed, parseBoolean());
+                        break;
+                    default:
+                        throw bad();
+                }
+            }
+        }
+
+        /**
+         * Reads the IDs to the end of a $L line.
+         */
+        private int[] parseIDs() throws IOException {
+            int count = 0;
+            while (!myLineEnded) {
+                if (count == myLeaderBoard.length) {
+                    myLeaderBoard = Arrays.copyOf(myLeaderBoard,
+                            Math.max(16, count * 2));
+                }
+                myLeaderBoard[count++] = parseField();
+            }
+            return count == myLeaderBoard.length ? myLeaderBoard
+                    : Arrays.copyOf(myLeaderBoard, count);
+        }
+
+        /**
+         * Reads an int field followed by another.
+         */
+        private int parseInt() throws IOException {
+            final int value = parseField();
+            if (myLineEnded) {
+                throw bad();
+            }
+            return value;
+        }
+
+        /**
+         * Reads the int field that ends a line.
+         */
+        private int parseLastInt() throws IOException {
+            final int value = parseField();
+            if (!myLineEnded) {
+                throw bad();
+            }
+            return value;
+        }
+
+        /**
+         * Reads an int field and steps over the separator after it.
+         */
+        private int parseField() throws IOException {
+            int i = myPosition;
+            final boolean negative = i < myLimit && myBytes.get(i) == '-';
+            if (negative) {
+                i++;
+            }
+            final int digits = i;
+            long value = 0;
+            byte b = 0;
+            while (i < myLimit && (b = myBytes.get(i)) >= '0' && b <= '9') {
+                value = value * 10 + b - '0';
+                i++;
+            }
+            if (i == digits || i - digits > 10 || value > Integer.MAX_VALUE
+                    + (negative ? 1L : 0L)) {
+                throw bad();
+            }
+            myPosition = separator(i);
+            return (int) (negative ? -value : value);
+        }
+
+        /**
+         * Reads a field with up to two decimal places as hundredths, followed
+         * by another field.
+         */
+        private long parseHundredths() throws IOException {
+            int i = myPosition;
+            final boolean negative = i < myLimit && myBytes.get(i) == '-';
+            if (negative) {
+                i++;
+            }
+            final int digits = i;
+            long value = 0;
+            int decimals = -1;
+            for (; i < myLimit; i++) {
+                final byte b = myBytes.get(i);
+                if (b >= '0' && b <= '9') {
+                    if (value >= Long.MAX_VALUE / 10) {
+                        throw bad();
+                    }
+                    value = value * 10 + b - '0';
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else if (b == '.' && decimals < 0) {
+                    decimals = 0;
+                } else {
+                    break;
+                }
+            }
+            if (i == digits || decimals > 2) {
+                throw bad();
+            }
+            for (int d = Math.max(decimals, 0); d < 2; d++) {
+                if (value >= Long.MAX_VALUE / 10) {
+                    throw bad();
+                }
+                value *= 10;
+            }
+            myPosition = separator(i);
+            if (myLineEnded) {
+                throw bad();
+            }
+            if (negative) {
+                return value == 0 ? FixedPoint.NEGATIVE_ZERO : -value;
+            }
+            return value;
+        }
+
+        /**
+         * Reads a true or false field, the last on the line.
+         */
+        private boolean parseBoolean() throws IOException {
+            final boolean value;
+            int i = myPosition;
+            if (matches(i, "true")) {
+                value = true;
+                i += 4;
+            } else if (matches(i, "false")) {
+                value = false;
+                i += 5;
+            } else {
+                throw bad();
+            }
+            myPosition = separator(i);
+            if (!myLineEnded) {
+                throw bad();
+            }
+            return value;
+        }
+
+        private boolean matches(final int theIndex, final String theWord) {
+            if (theIndex + theWord.length() > myLimit) {
+                return false;
+            }
+            for (int i = 0; i < theWord.length(); i++) {
+                if (myBytes.get(theIndex + i) != theWord.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks that a field ends at theIndex, notes whether it ended the
+         * line, and returns where the next field or line starts. The last line
+         * of the file may have no newline.
+         */
+        private int separator(final int theIndex) throws IOException {
+            if (theIndex >= myLimit) {
+                myLineEnded = true;
+                return myLimit;
+            }
+            final byte b = myBytes.get(theIndex);
+            if (b == ':' || b == '\n') {
+                myLineEnded = b == '\n';
+                return theIndex + 1;
+            }
+            throw bad();
+        }
+
+        private IOException bad() {
+            return new IOException(myFile + " has a bad event line at byte "
+                    + (myOffset + myLineStart));
+        }
+    }
+
+    /**
+     * Names the parser threads and lets the JVM exit while they are idle.
+     */
+    private static final class ParserFactory implements ThreadFactory {
+
+        private final AtomicInteger myCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable theTask) {
+            final Thread thread = new Thread(theTask,
+                    "race-parser-" + myCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package output;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The events of a race held as primitive columns, one array per field, for
+ * analysing a race without an object per event. Made by
+ * {@link MappedRaceReader#readColumns(int)}.
+ *
+ * Each kind of event has its own columns, in the order the events happened,
+ * and {@link #getKinds()} records the order the kinds came in, so the whole
+ * race can be sent on to a sink with {@link #sendTo(RaceSink)}. The leader
+ * boards are stored end to end in one column, leader board i taking the IDs
+ * from {@code getLeaderBoardStarts()[i]} up to
+ * {@code getLeaderBoardStarts()[i + 1]}.
+ *
+ * The arrays returned are the columns themselves, exactly as long as the
+ * number of events, and must not be changed.
+ */
+public final class RaceColumns {
+
+    /** The kind of a telemetry event in {@link #getKinds()}. */
+    public static final byte TELEMETRY = 'T';
+
+    /** The kind of a leader board event in {@link #getKinds()}. */
+    public static final byte LEADER_BOARD = 'L';
+
+    /** The kind of a crossing event in {@link #getKinds()}. */
+    public static final byte CROSSING = 'C';
+
+    /** The columns, each exactly as long as its number of events. */
+    private final Builder myColumns;
+
+    /**
+     * Constructs RaceColumns by joining theParts end to end.
+     */
+    RaceColumns(final List<Builder> theParts) {
+        myColumns = Builder.join(theParts);
+    }
+
+    /**
+     * Returns the kind of every event, in the order they happened.
+     *
+     * @return {@link #TELEMETRY}, {@link #LEADER_BOARD} or {@link #CROSSING}
+     *         for each event.
+     */
+    public byte[] getKinds() {
+        return myColumns.myKinds;
+    }
+
+    public int getTelemetryCount() {
+        return myColumns.myTelemetryCount;
+    }
+
+    public int[] getTelemetryTimes() {
+        return myColumns.myTelemetryTimes;
+    }
+
+    public int[] getTelemetryIDs() {
+        return myColumns.myTelemetryIDs;
+    }
+
+    /**
+     * Returns the position of every telemetry event in hundredths, the way
+     * {@link FixedPoint} rounds them, so positions too big for an int and
+     * "-0.00" are kept exactly.
+     *
+     * @return The positions, see {@link FixedPoint#fromHundredths(long)}.
+     */
+    public long[] getTelemetryHundredths() {
+        return myColumns.myTelemetryHundredths;
+    }
+
+    public int[] getTelemetryLaps() {
+        return myColumns.myTelemetryLaps;
+    }
+
+    public int getLeaderBoardCount() {
+        return myColumns.myLeaderBoardCount;
+    }
+
+    public int[] getLeaderBoardTimes() {
+        return myColumns.myLeaderBoardTimes;
+    }
+
+    /**
+     * Returns where each leader board starts in
+     * {@link #getLeaderBoardIDs()}, with one more entry on the end for where
+     * the last one ends.
+     *
+     * @return The start of each leader board.
+     */
+    public int[] getLeaderBoardStarts() {
+        return myColumns.myLeaderBoardStarts;
+    }
+
+    /**
+     * Returns the racer IDs of every leader board, end to end, each from
+     * first to last.
+     *
+     * @return The IDs.
+     */
+    public int[] getLeaderBoardIDs() {
+        return myColumns.myLeaderBoardIDs;
+    }
+
+    public int getCrossingCount() {
+        return myColumns.myCrossingCount;
+    }
+
+    public int[] getCrossingTimes() {
+        return myColumns.myCrossingTimes;
+    }
+
+    public int[] getCrossingIDs() {
+        return myColumns.myCrossingIDs;
+    }
+
+    public int[] getCrossingLaps() {
+        return myColumns.myCrossingLaps;
+    }
+
+    public boolean[] getCrossingFinished() {
+        return myColumns.myCrossingFinished;
+    }
+
+    /**
+     * Sends every event to theSink in the order they happened. The header and
+     * finish aren't columns, see {@link MappedRaceReader#sendHeader(RaceSink)}.
+     *
+     * @param theSink The sink to send the events to.
+     * @throws IOException If the sink can't write.
+     */
+    public void sendTo(final RaceSink theSink) throws IOException {
+        myColumns.sendTo(theSink);
+    }
+
+    /**
+     * Collects the columns of part of a race, as a sink, with room to grow.
+     * The leader board starts always have the end of the last one on the end.
+     */
+    static final class Builder implements RaceSink {
+
+        private static final int INITIAL_SIZE = 1024;
+
+        private byte[] myKinds;
+        private int myKindCount;
+        private int[] myTelemetryTimes;
+        private int[] myTelemetryIDs;
+        private long[] myTelemetryHundredths;
+        private int[] myTelemetryLaps;
+        private int myTelemetryCount;
+        private int[] myLeaderBoardTimes;
+        private int[] myLeaderBoardStarts;
+        private int myLeaderBoardCount;
+        private int[] myLeaderBoardIDs;
+        private int myLeaderBoardIDCount;
+        private int[] myCrossingTimes;
+        private int[] myCrossingIDs;
+        private int[] myCrossingLaps;
+        private boolean[] myCrossingFinished;
+        private int myCrossingCount;
+
+        /**
+         * Constructs an empty Builder.
+         */
+        Builder() {
+            this(INITIAL_SIZE, INITIAL_SIZE, INITIAL_SIZE, INITIAL_SIZE,
+                    INITIAL_SIZE);
+        }
+
+        private Builder(final int theKinds, final int theTelemetry,
+                final int theLeaderBoards, final int theLeaderBoardIDs,
+                final int theCrossings) {
+            myKinds = new byte[theKinds];
+            myTelemetryTimes = new int[theTelemetry];
+            myTelemetryIDs = new int[theTelemetry];
+            myTelemetryHundredths = new long[theTelemetry];
+            myTelemetryLaps = new int[theTelemetry];
+            myLeaderBoardTimes = new int[theLeaderBoards];
+            myLeaderBoardStarts = new int[theLeaderBoards + 1];
+            myLeaderBoardIDs = new int[theLeaderBoardIDs];
+            myCrossingTimes = new int[theCrossings];
+            myCrossingIDs = new int[theCrossings];
+            myCrossingLaps = new int[theCrossings];
+            myCrossingFinished = new boolean[theCrossings];
+        }
+
+        /**
+         * Returns theParts joined end to end, in columns exactly as long as
+         * their number of events.
+         */
+        static Builder join(final List<Builder> theParts) {
+            int kinds = 0;
+            int telemetry = 0;
+            int leaderBoards = 0;
+            int leaderBoardIDs = 0;
+            int crossings = 0;
+            for (Builder part : theParts) {
+                kinds += part.myKindCount;
+                telemetry += part.myTelemetryCount;
+                leaderBoards += part.myLeaderBoardCount;
+                leaderBoardIDs += part.myLeaderBoardIDCount;
+                crossings += part.myCrossingCount;
+            }
+            final Builder joined = new Builder(kinds, telemetry, leaderBoards,
+                    leaderBoardIDs, crossings);
+            for (Builder part : theParts) {
+                joined.append(part);
+            }
+            return joined;
+        }
+
+        /**
+         * Sends the events collected to theSink in the order they came.
+         */
+        void sendTo(final RaceSink theSink) throws IOException {
+            int telemetry = 0;
+            int leaderBoard = 0;
+            int crossing = 0;
+            int[] ids = new int[0];
+            for (int i = 0; i < myKindCount; i++) {
+                final byte kind = myKinds[i];
+                if (kind == TELEMETRY) {
+                    theSink.telemetry(myTelemetryTimes[telemetry],
+                            myTelemetryIDs[telemetry],
+                            FixedPoint.fromHundredths(
+                                    myTelemetryHundredths[telemetry]),
+                            myTelemetryLaps[telemetry]);
+                    telemetry++;
+                } else if (kind == LEADER_BOARD) {
+                    final int start = myLeaderBoardStarts[leaderBoard];
+                    final int length = myLeaderBoardStarts[leaderBoard + 1]
+                            - start;
+                    if (ids.length != length) {
+                        ids = new int[length];
+                    }
+                    System.arraycopy(myLeaderBoardIDs, start, ids, 0, length);
+                    theSink.leaderBoard(myLeaderBoardTimes[leaderBoard], ids);
+                    leaderBoard++;
+                } else {
+                    theSink.crossing(myCrossingTimes[crossing],
+                            myCrossingIDs[crossing], myCrossingLaps[crossing],
+                            myCrossingFinished[crossing]);
+                    crossing++;
+                }
+            }
+        }
+
+        /**
+         * Copies the events of thePart onto the end, which must have room.
+         */
+        private void append(final Builder thePart) {
+            System.arraycopy(thePart.myKinds, 0, myKinds, myKindCount,
+                    thePart.myKindCount);
+            myKindCount += thePart.myKindCount;
+
+            final int telemetry = thePart.myTelemetryCount;
+            System.arraycopy(thePart.myTelemetryTimes, 0, myTelemetryTimes,
+                    myTelemetryCount, telemetry);
+            System.arraycopy(thePart.myTelemetryIDs, 0, myTelemetryIDs,
+                    myTelemetryCount, telemetry);
+            System.arraycopy(thePart.myTelemetryHundredths, 0,
+                    myTelemetryHundredths, myTelemetryCount, telemetry);
+            System.arraycopy(thePart.myTelemetryLaps, 0, myTelemetryLaps,
+                    myTelemetryCount, telemetry);
+            myTelemetryCount += telemetry;
+
+            System.arraycopy(thePart.myLeaderBoardTimes, 0, myLeaderBoardTimes,
+                    myLeaderBoardCount, thePart.myLeaderBoardCount);
+            for (int i = 1; i <= thePart.myLeaderBoardCount; i++) {
+                myLeaderBoardStarts[myLeaderBoardCount + i] =
+                        thePart.myLeaderBoardStarts[i] + myLeaderBoardIDCount;
+            }
+            myLeaderBoardCount += thePart.myLeaderBoardCount;
+            System.arraycopy(thePart.myLeaderBoardIDs, 0, myLeaderBoardIDs,
+                    myLeaderBoardIDCount, thePart.myLeaderBoardIDCount);
+            myLeaderBoardIDCount += thePart.myLeaderBoardIDCount;
+
+            final int crossings = thePart.myCrossingCount;
+            System.arraycopy(thePart.myCrossingTimes, 0, myCrossingTimes,
+                    myCrossingCount, crossings);
+            System.arraycopy(thePart.myCrossingIDs, 0, myCrossingIDs,
+                    myCrossingCount, crossings);
+            System.arraycopy(thePart.myCrossingLaps, 0, myCrossingLaps,
+                    myCrossingCount, crossings);
+            System.arraycopy(thePart.myCrossingFinished, 0,
+                    myCrossingFinished, myCrossingCount, crossings);
+            myCrossingCount += crossings;
+        }
+
+        @Override
+        public void raceHeader(final String theRaceName,
+                final String theTrackName, final int theWidthRatio,
+                final int theHeightRatio, final int theDistance,
+                final int theExpectedTime, final int theNumParticipants) {
+            // The header isn't a column
+        }
+
+        @Override
+        public void racer(final int theID, final String theName,
+                final double theStartPosition) {
+            // Neither are the racers
+        }
+
+        @Override
+        public void telemetry(final int theTime, final int theID,
+                final double thePosition, final int theLap) {
+            if (myTelemetryCount == myTelemetryTimes.length) {
+                final int size = myTelemetryCount * 2;
+                myTelemetryTimes = Arrays.copyOf(myTelemetryTimes, size);
+                myTelemetryIDs = Arrays.copyOf(myTelemetryIDs, size);
+                myTelemetryHundredths = Arrays.copyOf(myTelemetryHundredths,
+                        size);
+                myTelemetryLaps = Arrays.copyOf(myTelemetryLaps, size);
+            }
+            myTelemetryTimes[myTelemetryCount] = theTime;
+            myTelemetryIDs[myTelemetryCount] = theID;
+            myTelemetryHundredths[myTelemetryCount] =
+                    FixedPoint.toHundredths(thePosition);
+            myTelemetryLaps[myTelemetryCount] = theLap;
+            myTelemetryCount++;
+            addKind(TELEMETRY);
+        }
+
+        @Override
+        public void leaderBoard(final int theTime, final int[] theRacerIDs) {
+            if (myLeaderBoardCount == myLeaderBoardTimes.length) {
+                final int size = myLeaderBoardCount * 2;
+                myLeaderBoardTimes = Arrays.copyOf(myLeaderBoardTimes, size);
+                myLeaderBoardStarts = Arrays.copyOf(myLeaderBoardStarts,
+                        size + 1);
+            }
+            if (myLeaderBoardIDCount + theRacerIDs.length
+                    > myLeaderBoardIDs.length) {
+                myLeaderBoardIDs = Arrays.copyOf(myLeaderBoardIDs, Math.max(
+                        myLeaderBoardIDs.length * 2,
+                        myLeaderBoardIDCount + theRacerIDs.length));
+            }
+            myLeaderBoardTimes[myLeaderBoardCount] = theTime;
+            System.arraycopy(theRacerIDs, 0, myLeaderBoardIDs,
+                    myLeaderBoardIDCount, theRacerIDs.length);
+            myLeaderBoardIDCount += theRacerIDs.length;
+            myLeaderBoardCount++;
+            myLeaderBoardStarts[myLeaderBoardCount] = myLeaderBoardIDCount;
+            addKind(LEADER_BOARD);
+        }
+
+        @Override
+        public void crossing(final int theTime, final int theID,
+                final int theLap, final boolean theFinished) {
+            if (myCrossingCount == myCrossingTimes.length) {
+                final int size = myCrossingCount * 2;
+                myCrossingTimes = Arrays.copyOf(myCrossingTimes, size);
+                myCrossingIDs = Arrays.copyOf(myCrossingIDs, size);
+                myCrossingLaps = Arrays.copyOf(myCrossingLaps, size);
+                myCrossingFinished = Arrays.copyOf(myCrossingFinished, size);
+            }
+            myCrossingTimes[myCrossingCount] = theTime;
+            myCrossingIDs[myCrossingCount] = theID;
+            myCrossingLaps[myCrossingCount] = theLap;
+            myCrossingFinished[myCrossingCount] = theFinished;
+            myCrossingCount++;
+            addKind(CROSSING);
+        }
+
+        @Override
+        public void finish(final int theRaceTime) {
+            // Nor is the finish
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close
+        }
+
+        private void addKind(final byte theKind) {
+            if (myKindCount == myKinds.length) {
+                myKinds = Arrays.copyOf(myKinds, myKindCount * 2);
+            }
+            myKinds[myKindCount++] = theKind;
+        }
+    }
+}
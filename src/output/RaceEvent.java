@@ -0,0 +1,294 @@
+package output;
+
+import java.io.IOException;
+
+/**
+ * One event of a race as a value, for handing races between threads or
+ * holding on to them, where the calls of a {@link RaceSink} can't be used
+ * directly. Events are immutable, and any event can be sent on to a sink,
+ * so it is only encoded, as text, binary or anything else, by the sink at the
+ * end of the line.
+ *
+ * {@link RaceEventCollector} turns sink calls into events.
+ */
+public abstract class RaceEvent {
+
+    private RaceEvent() {
+    }
+
+    /**
+     * Returns the race time the event happened at, -1 for the header and
+     * racers.
+     *
+     * @return The race time in milliseconds.
+     */
+    public abstract int getTime();
+
+    /**
+     * Makes the {@link RaceSink} call this event stands for.
+     *
+     * @param theSink The sink to send the event to.
+     * @throws IOException If the sink can't write.
+     */
+    public abstract void sendTo(RaceSink theSink) throws IOException;
+
+    /**
+     * The race metadata, see
+     * {@link RaceSink#raceHeader(String, String, int, int, int, int, int)}.
+     */
+    public static final class Header extends RaceEvent {
+
+        private final String myRaceName;
+        private final String myTrackName;
+        private final int myWidthRatio;
+        private final int myHeightRatio;
+        private final int myDistance;
+        private final int myExpectedTime;
+        private final int myNumParticipants;
+
+        public Header(final String theRaceName, final String theTrackName,
+                final int theWidthRatio, final int theHeightRatio,
+                final int theDistance, final int theExpectedTime,
+                final int theNumParticipants) {
+            myRaceName = theRaceName;
+            myTrackName = theTrackName;
+            myWidthRatio = theWidthRatio;
+            myHeightRatio = theHeightRatio;
+            myDistance = theDistance;
+            myExpectedTime = theExpectedTime;
+            myNumParticipants = theNumParticipants;
+        }
+
+        @Override
+        public int getTime() {
+            return -1;
+        }
+
+        public String getRaceName() {
+            return myRaceName;
+        }
+
+        public String getTrackName() {
+            return myTrackName;
+        }
+
+        public int getWidthRatio() {
+            return myWidthRatio;
+        }
+
+        public int getHeightRatio() {
+            return myHeightRatio;
+        }
+
+        public int getDistance() {
+            return myDistance;
+        }
+
+        public int getExpectedTime() {
+            return myExpectedTime;
+        }
+
+        public int getNumParticipants() {
+            return myNumParticipants;
+        }
+
+        @Override
+        public void sendTo(final RaceSink theSink) throws IOException {
+            theSink.raceHeader(myRaceName, myTrackName, myWidthRatio,
+                    myHeightRatio, myDistance, myExpectedTime,
+                    myNumParticipants);
+        }
+    }
+
+    /**
+     * A racer on the start grid, see
+     * {@link RaceSink#racer(int, String, double)}.
+     */
+    public static final class Racer extends RaceEvent {
+
+        private final int myID;
+        private final String myName;
+        private final double myStartPosition;
+
+        public Racer(final int theID, final String theName,
+                final double theStartPosition) {
+            myID = theID;
+            myName = theName;
+            myStartPosition = theStartPosition;
+        }
+
+        @Override
+        public int getTime() {
+            return -1;
+        }
+
+        public int getID() {
+            return myID;
+        }
+
+        public String getName() {
+            return myName;
+        }
+
+        public double getStartPosition() {
+            return myStartPosition;
+        }
+
+        @Override
+        public void sendTo(final RaceSink theSink) throws IOException {
+            theSink.racer(myID, myName, myStartPosition);
+        }
+    }
+
+    /**
+     * A racer reporting where it is, see
+     * {@link RaceSink#telemetry(int, int, double, int)}.
+     */
+    public static final class Telemetry extends RaceEvent {
+
+        private final int myTime;
+        private final int myID;
+        private final double myPosition;
+        private final int myLap;
+
+        public Telemetry(final int theTime, final int theID,
+                final double thePosition, final int theLap) {
+            myTime = theTime;
+            myID = theID;
+            myPosition = thePosition;
+            myLap = theLap;
+        }
+
+        @Override
+        public int getTime() {
+            return myTime;
+        }
+
+        public int getID() {
+            return myID;
+        }
+
+        public double getPosition() {
+            return myPosition;
+        }
+
+        public int getLap() {
+            return myLap;
+        }
+
+        @Override
+        public void sendTo(final RaceSink theSink) throws IOException {
+            theSink.telemetry(myTime, myID, myPosition, myLap);
+        }
+    }
+
+    /**
+     * A new leader board, see {@link RaceSink#leaderBoard(int, int[])}.
+     */
+    public static final class LeaderBoard extends RaceEvent {
+
+        private final int myTime;
+        private final int[] myRacerIDs;
+
+        /**
+         * Constructs a LeaderBoard event, copying theRacerIDs.
+         *
+         * @param theTime     The race time in milliseconds.
+         * @param theRacerIDs The racer IDs in order from first to last.
+         */
+        public LeaderBoard(final int theTime, final int[] theRacerIDs) {
+            myTime = theTime;
+            myRacerIDs = theRacerIDs.clone();
+        }
+
+        @Override
+        public int getTime() {
+            return myTime;
+        }
+
+        /**
+         * Returns the racer IDs in order from first to last.
+         *
+         * @return A copy of the IDs.
+         */
+        public int[] getRacerIDs() {
+            return myRacerIDs.clone();
+        }
+
+        @Override
+        public void sendTo(final RaceSink theSink) throws IOException {
+            // Sinks only read the array, and only during the call.
+            theSink.leaderBoard(myTime, myRacerIDs);
+        }
+    }
+
+    /**
+     * A racer crossing the finish line, see
+     * {@link RaceSink#crossing(int, int, int, boolean)}.
+     */
+    public static final class Crossing extends RaceEvent {
+
+        private final int myTime;
+        private final int myID;
+        private final int myLap;
+        private final boolean myFinished;
+
+        public Crossing(final int theTime, final int theID, final int theLap,
+                final boolean theFinished) {
+            myTime = theTime;
+            myID = theID;
+            myLap = theLap;
+            myFinished = theFinished;
+        }
+
+        @Override
+        public int getTime() {
+            return myTime;
+        }
+
+        public int getID() {
+            return myID;
+        }
+
+        public int getLap() {
+            return myLap;
+        }
+
+        public boolean isFinished() {
+            return myFinished;
+        }
+
+        @Override
+        public void sendTo(final RaceSink theSink) throws IOException {
+            theSink.crossing(myTime, myID, myLap, myFinished);
+        }
+    }
+
+    /**
+     * The end of the race, see {@link RaceSink#finish(int)}.
+     */
+    public static final class Finish extends RaceEvent {
+
+        private final int myRaceTime;
+
+        public Finish(final int theRaceTime) {
+            myRaceTime = theRaceTime;
+        }
+
+        /**
+         * Returns the length of the race, the time the last racer finished
+         * plus one.
+         *
+         * @return The length of the race.
+         */
+        @Override
+        public int getTime() {
+            return myRaceTime;
+        }
+
+        @Override
+        public void sendTo(final RaceSink theSink) throws IOException {
+            theSink.finish(myRaceTime);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package output;
+
+import java.util.function.Consumer;
+
+/**
+ * A RaceSink that turns every call into a {@link RaceEvent} and hands it on,
+ * for example to a list or a queue.
+ */
+public class RaceEventCollector implements RaceSink {
+
+    private final Consumer<? super RaceEvent> myEvents;
+
+    /**
+     * Constructs a RaceEventCollector that hands every event to theEvents.
+     *
+     * @param theEvents Given each event as it happens.
+     */
+    public RaceEventCollector(final Consumer<? super RaceEvent> theEvents) {
+        myEvents = theEvents;
+    }
+
+    @Override
+    public void raceHeader(final String theRaceName, final String theTrackName,
+            final int theWidthRatio, final int theHeightRatio,
+            final int theDistance, final int theExpectedTime,
+            final int theNumParticipants) {
+        myEvents.accept(new RaceEvent.Header(theRaceName, theTrackName,
+                theWidthRatio, theHeightRatio, theDistance, theExpectedTime,
+                theNumParticipants));
+    }
+
+    @Override
+    public void racer(final int theID, final String theName,
+            final double theStartPosition) {
+        myEvents.accept(new RaceEvent.Racer(theID, theName, theStartPosition));
+    }
+
+    @Override
+    public void telemetry(final int theTime, final int theID,
+            final double thePosition, final int theLap) {
+        myEvents.accept(new RaceEvent.Telemetry(theTime, theID, thePosition,
+                theLap));
+    }
+
+    @Override
+    public void leaderBoard(final int theTime, final int[] theRacerIDs) {
+        myEvents.accept(new RaceEvent.LeaderBoard(theTime, theRacerIDs));
+    }
+
+    @Override
+    public void crossing(final int theTime, final int theID, final int theLap,
+            final boolean theFinished) {
+        myEvents.accept(new RaceEvent.Crossing(theTime, theID, theLap,
+                theFinished));
+    }
+
+    @Override
+    public void finish(final int theRaceTime) {
+        myEvents.accept(new RaceEvent.Finish(theRaceTime));
+    }
+
+    @Override
+    public void close() {
+    }
+}
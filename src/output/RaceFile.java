@@ -0,0 +1,39 @@
+package output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A RaceFile is where the bytes of a race end up. It is append only, except
+ * for {@link #patch(long, byte[])} which overwrites bytes that were already
+ * written, for example to fix up a fixed width header field.
+ */
+public interface RaceFile extends Closeable {
+
+    /**
+     * Appends the given bytes.
+     *
+     * @param theBytes  The bytes to write.
+     * @param theOffset The offset into theBytes to start at.
+     * @param theLength The number of bytes to write.
+     * @throws IOException If the bytes can't be written.
+     */
+    void write(byte[] theBytes, int theOffset, int theLength)
+            throws IOException;
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return The number of bytes written so far.
+     */
+    long position();
+
+    /**
+     * Overwrites already written bytes starting at the given position.
+     *
+     * @param thePosition The position to start overwriting at.
+     * @param theBytes    The new bytes.
+     * @throws IOException If the bytes can't be written.
+     */
+    void patch(long thePosition, byte[] theBytes) throws IOException;
+}
@@ -0,0 +1,57 @@
+package output;
+
+/**
+ * The encodings a race can be written in. Every format is a {@link RaceSink}
+ * that encodes the events it is sent into a {@link RaceFile}, so anything
+ * that produces a race can write it in any format, and a new format only
+ * needs a writer and a constant here.
+ */
+public enum RaceFormat {
+    /** One line of text per event, see {@link TextRaceWriter}. */
+    TEXT("rce") {
+        @Override
+        public RaceSink newWriter(final RaceFile theFile) {
+            return new TextRaceWriter(theFile);
+        }
+    },
+    /** Compact binary records, see {@link BinaryRaceFormat}. */
+    BINARY("rceb") {
+        @Override
+        public RaceSink newWriter(final RaceFile theFile) {
+            return new BinaryRaceWriter(theFile);
+        }
+    };
+
+    private final String myExtension;
+
+    RaceFormat(final String theExtension) {
+        myExtension = theExtension;
+    }
+
+    /**
+     * Returns a writer that encodes a race into theFile.
+     *
+     * @param theFile The file to write to, closed when the writer is closed.
+     * @return The writer.
+     */
+    public abstract RaceSink newWriter(RaceFile theFile);
+
+    /**
+     * Returns the usual file extension for the format, without the dot.
+     *
+     * @return The extension.
+     */
+    public String getExtension() {
+        return myExtension;
+    }
+
+    /**
+     * Returns the format with the given name, in any case.
+     *
+     * @param theName The name of the format.
+     * @return The format.
+     */
+    public static RaceFormat fromName(final String theName) {
+        return valueOf(theName.trim().toUpperCase());
+    }
+}
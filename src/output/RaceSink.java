@@ -0,0 +1,83 @@
+package output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A RaceSink receives the events of a race as they happen. Sinks are expected
+ * to write the events out as soon as they get them instead of holding on to
+ * the whole race, so the memory used stays flat however long the race is.
+ *
+ * Arrays passed to a sink are only valid for the duration of the call.
+ */
+public interface RaceSink extends Closeable {
+
+    /**
+     * Called once before anything else with the race metadata.
+     *
+     * @param theRaceName        The name of the race.
+     * @param theTrackName       The name of the track the race is run on.
+     * @param theWidthRatio      The width ratio of the track.
+     * @param theHeightRatio     The height ratio of the track.
+     * @param theDistance        The length of the track.
+     * @param theExpectedTime    The expected length of the race, this is
+     *                           replaced by {@link #finish(int)}.
+     * @param theNumParticipants The number of participants.
+     * @throws IOException If the sink can't write.
+     */
+    void raceHeader(String theRaceName, String theTrackName,
+            int theWidthRatio, int theHeightRatio, int theDistance,
+            int theExpectedTime, int theNumParticipants) throws IOException;
+
+    /**
+     * Called once per participant at the start of the race.
+     *
+     * @param theID            The racer's ID.
+     * @param theName          The racer's name.
+     * @param theStartPosition The racer's starting position.
+     * @throws IOException If the sink can't write.
+     */
+    void racer(int theID, String theName, double theStartPosition)
+            throws IOException;
+
+    /**
+     * Called when a racer reports telemetry.
+     *
+     * @param theTime     The race time in milliseconds.
+     * @param theID       The racer's ID.
+     * @param thePosition The racer's position on the current lap.
+     * @param theLap      The racer's lap.
+     * @throws IOException If the sink can't write.
+     */
+    void telemetry(int theTime, int theID, double thePosition, int theLap)
+            throws IOException;
+
+    /**
+     * Called when the leader board changes.
+     *
+     * @param theTime     The race time in milliseconds.
+     * @param theRacerIDs The racer IDs in order from first to last.
+     * @throws IOException If the sink can't write.
+     */
+    void leaderBoard(int theTime, int[] theRacerIDs) throws IOException;
+
+    /**
+     * Called when a racer crosses the finish line on its last lap.
+     *
+     * @param theTime     The race time in milliseconds.
+     * @param theID       The racer's ID.
+     * @param theLap      The lap the racer just completed.
+     * @param theFinished Whether the racer has finished the race.
+     * @throws IOException If the sink can't write.
+     */
+    void crossing(int theTime, int theID, int theLap, boolean theFinished)
+            throws IOException;
+
+    /**
+     * Called once after the last event with the actual length of the race.
+     *
+     * @param theRaceTime The time the last racer finished plus one.
+     * @throws IOException If the sink can't write.
+     */
+    void finish(int theRaceTime) throws IOException;
+}
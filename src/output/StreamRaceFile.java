@@ -0,0 +1,81 @@
+package output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A RaceFile that writes to a channel that can't go back, like standard
+ * output or a socket, through a buffer.
+ *
+ * Nothing already written can be patched, so patches are ignored and, for
+ * example, the #TIME header keeps the expected time of the race.
+ */
+public class StreamRaceFile implements RaceFile {
+
+    /** The size of the write buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel myChannel;
+    private final ByteBuffer myBuffer;
+    private long myFlushed;
+
+    /**
+     * Constructs a StreamRaceFile that writes to theChannel.
+     *
+     * @param theChannel The channel to write to, closed when this is closed.
+     */
+    public StreamRaceFile(final WritableByteChannel theChannel) {
+        myChannel = theChannel;
+        myBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(final byte[] theBytes, final int theOffset,
+            final int theLength) throws IOException {
+        if (theLength > myBuffer.remaining()) {
+            flush();
+            if (theLength > myBuffer.capacity()) {
+                writeFully(ByteBuffer.wrap(theBytes, theOffset, theLength));
+                return;
+            }
+        }
+        myBuffer.put(theBytes, theOffset, theLength);
+    }
+
+    @Override
+    public long position() {
+        return myFlushed + myBuffer.position();
+    }
+
+    @Override
+    public void patch(final long thePosition, final byte[] theBytes) {
+    }
+
+    /**
+     * Sends everything written so far on to the channel, for when the reader
+     * at the other end shouldn't have to wait for the buffer to fill.
+     *
+     * @throws IOException If the channel can't be written.
+     */
+    public void flush() throws IOException {
+        myBuffer.flip();
+        writeFully(myBuffer);
+        myBuffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            myChannel.close();
+        }
+    }
+
+    private void writeFully(final ByteBuffer theBuffer) throws IOException {
+        while (theBuffer.hasRemaining()) {
+            myFlushed += myChannel.write(theBuffer);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package output;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A RaceSink that sends every event to several other sinks, for example to
+ * write a text and a binary file from the same race.
+ */
+public class TeeSink implements RaceSink {
+
+    private final RaceSink[] mySinks;
+
+    /**
+     * Constructs a TeeSink that sends events to all of theSinks in order.
+     *
+     * @param theSinks The sinks, closed when this sink is closed.
+     */
+    public TeeSink(final RaceSink... theSinks) {
+        mySinks = theSinks.clone();
+    }
+
+    /**
+     * Constructs a TeeSink that sends events to all of theSinks in order.
+     *
+     * @param theSinks The sinks, closed when this sink is closed.
+     */
+    public TeeSink(final List<RaceSink> theSinks) {
+        mySinks = theSinks.toArray(new RaceSink[0]);
+    }
+
+    @Override
+    public void raceHeader(final String theRaceName, final String theTrackName,
+            final int theWidthRatio, final int theHeightRatio,
+            final int theDistance, final int theExpectedTime,
+            final int theNumParticipants) throws IOException {
+        for (RaceSink sink : mySinks) {
+            sink.raceHeader(theRaceName, theTrackName, theWidthRatio,
+                    theHeightRatio, theDistance, theExpectedTime,
+                    theNumParticipants);
+        }
+    }
+
+    @Override
+    public void racer(final int theID, final String theName,
+            final double theStartPosition) throws IOException {
+        for (RaceSink sink : mySinks) {
+            sink.racer(theID, theName, theStartPosition);
+        }
+    }
+
+    @Override
+    public void telemetry(final int theTime, final int theID,
+            final double thePosition, final int theLap) throws IOException {
+        for (RaceSink sink : mySinks) {
+            sink.telemetry(theTime, theID, thePosition, theLap);
+        }
+    }
+
+    @Override
+    public void leaderBoard(final int theTime, final int[] theRacerIDs)
+            throws IOException {
+        for (RaceSink sink : mySinks) {
+            sink.leaderBoard(theTime, theRacerIDs);
+        }
+    }
+
+    @Override
+    public void crossing(final int theTime, final int theID, final int theLap,
+            final boolean theFinished) throws IOException {
+        for (RaceSink sink : mySinks) {
+            sink.crossing(theTime, theID, theLap, theFinished);
+        }
+    }
+
+    @Override
+    public void finish(final int theRaceTime) throws IOException {
+        for (RaceSink sink : mySinks) {
+            sink.finish(theRaceTime);
+        }
+    }
+
+    /**
+     * Closes every sink, even if closing one of them fails.
+     */
+    @Override
+    public void close() throws IOException {
+        final List<IOException> failures = new ArrayList<>();
+        for (RaceSink sink : mySinks) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                failures.add(e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            final IOException first = failures.get(0);
+            failures.subList(1, failures.size()).forEach(first::addSuppressed);
+            throw first;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package output;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+import util.IntIntMap;
+
+/**
+ * Writes a race in the text race file format, one line per event, straight to
+ * a {@link RaceFile}.
+ *
+ * The #TIME header is written as a fixed width, zero padded field so it can be
+ * rewritten in place once the actual race time is known.
+ *
+ * The $T, $L and $C lines are written many times per tick, so they are
+ * encoded into a reused {@link LineBuffer} with the racer IDs encoded once up
+ * front. The bytes are the same as String.format in the root locale would
+ * give.
+ */
+public class TextRaceWriter implements RaceSink {
+
+    /** The width of the #TIME header value. */
+    public static final int TIME_FIELD_WIDTH = 10;
+
+    private static final byte[] TELEMETRY_PREFIX = ascii("$T:");
+    private static final byte[] LEADER_BOARD_PREFIX = ascii("$L:");
+    private static final byte[] CROSSING_PREFIX = ascii("$C:");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+
+    private final RaceFile myFile;
+    private final LineBuffer myLine;
+    private final IntIntMap myIDIndexes;
+    private byte[][] myEncodedIDs;
+    private long myTimeFieldPosition;
+
+    /**
+     * Constructs a TextRaceWriter that writes to theFile.
+     *
+     * @param theFile The file to write to, closed when this writer is closed.
+     */
+    public TextRaceWriter(final RaceFile theFile) {
+        myFile = theFile;
+        myLine = new LineBuffer();
+        myIDIndexes = new IntIntMap(16);
+        myEncodedIDs = new byte[16][];
+        myTimeFieldPosition = -1;
+    }
+
+    @Override
+    public void raceHeader(final String theRaceName, final String theTrackName,
+            final int theWidthRatio, final int theHeightRatio,
+            final int theDistance, final int theExpectedTime,
+            final int theNumParticipants) throws IOException {
+        writeLine("#RACE:" + theRaceName);
+        writeLine("#TRACK:" + theTrackName);
+        writeLine("#WIDTH:" + theWidthRatio);
+        writeLine("#HEIGHT:" + theHeightRatio);
+        writeLine("#DISTANCE:" + theDistance);
+        myTimeFieldPosition = myFile.position() + "#TIME:".length();
+        writeLine("#TIME:" + timeField(theExpectedTime));
+        writeLine("#PARTICIPANTS:" + theNumParticipants);
+    }
+
+    @Override
+    public void racer(final int theID, final String theName,
+            final double theStartPosition) throws IOException {
+        writeLine("#" + theID + ":" + theName + ":" + theStartPosition);
+        if (!myIDIndexes.containsKey(theID)) {
+            final int index = myIDIndexes.size();
+            if (index == myEncodedIDs.length) {
+                myEncodedIDs = Arrays.copyOf(myEncodedIDs, index * 2);
+            }
+            myEncodedIDs[index] = LineBuffer.encode(theID);
+            myIDIndexes.put(theID, index);
+        }
+    }
+
+    @Override
+    public void telemetry(final int theTime, final int theID,
+            final double thePosition, final int theLap) throws IOException {
+        myLine.clear();
+        myLine.append(TELEMETRY_PREFIX).append(theTime).append((byte) ':');
+        appendID(theID);
+        myLine.append((byte) ':').appendHundredths(thePosition)
+                .append((byte) ':').append(theLap).append((byte) '\n');
+        myLine.writeTo(myFile);
+    }
+
+    @Override
+    public void leaderBoard(final int theTime, final int[] theRacerIDs)
+            throws IOException {
+        myLine.clear();
+        myLine.append(LEADER_BOARD_PREFIX).append(theTime);
+        for (int id : theRacerIDs) {
+            myLine.append((byte) ':');
+            appendID(id);
+        }
+        myLine.append((byte) '\n');
+        myLine.writeTo(myFile);
+    }
+
+    @Override
+    public void crossing(final int theTime, final int theID, final int theLap,
+            final boolean theFinished) throws IOException {
+        myLine.clear();
+        myLine.append(CROSSING_PREFIX).append(theTime).append((byte) ':');
+        appendID(theID);
+        myLine.append((byte) ':').append(theLap).append((byte) ':')
+                .append(theFinished ? TRUE : FALSE).append((byte) '\n');
+        myLine.writeTo(myFile);
+    }
+
+    @Override
+    public void finish(final int theRaceTime) throws IOException {
+        if (myTimeFieldPosition >= 0) {
+            myFile.patch(myTimeFieldPosition, timeField(theRaceTime)
+                    .getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        myFile.close();
+    }
+
+    private void writeLine(final String theLine) throws IOException {
+        final byte[] bytes = (theLine + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        myFile.write(bytes, 0, bytes.length);
+    }
+
+    private void appendID(final int theID) {
+        final int index = myIDIndexes.get(theID);
+        if (index == IntIntMap.MISSING) {
+            myLine.append(theID);
+        } else {
+            myLine.append(myEncodedIDs[index]);
+        }
+    }
+
+    private static String timeField(final int theTime) {
+        return format(Locale.ROOT, "%0" + TIME_FIELD_WIDTH + "d", theTime);
+    }
+
+    private static byte[] ascii(final String theText) {
+        return theText.getBytes(StandardCharsets.US_ASCII);
+    }
+}
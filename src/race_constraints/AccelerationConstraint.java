@@ -7,10 +7,14 @@ import model.ParticipantSpeed;
  * acceleration. When applied to a Participant the participant will accelerate
  * or decelerate at the given acceleration until the constraint is removed.
  *
+ * Participants keep one AccelerationConstraint for their whole race and
+ * {@link #reset(double, double)} it each time they start accelerating, so the
+ * class is final to keep the call in Participant.step monomorphic.
+ *
  * @author Michael Osborne
  * @author Peter Bae
  */
-public class AccelerationConstraint implements ParticipantConstraint {
+public final class AccelerationConstraint implements ParticipantConstraint {
 
     private double myAcceleration;
     private double myCompoundingVelocity;
@@ -28,6 +32,19 @@ public class AccelerationConstraint implements ParticipantConstraint {
         myCompoundingVelocity = theStartingVelocity;
     }
 
+    /**
+     * Restarts this constraint with a new acceleration and starting velocity.
+     *
+     * @param theAcceleration     The acceleration to apply to the velocity
+     * @param theStartingVelocity The starting velocity of the participant for
+     *                            compounding velocity calculations.
+     */
+    public void reset(final double theAcceleration,
+            final double theStartingVelocity) {
+        myAcceleration = theAcceleration;
+        myCompoundingVelocity = theStartingVelocity;
+    }
+
     /**
      * Applies the acceleration constraint.
      */
@@ -48,4 +65,13 @@ public class AccelerationConstraint implements ParticipantConstraint {
         return myAcceleration;
     }
 
+    /**
+     * Returns the velocity compounded so far.
+     *
+     * @return The velocity compounded so far
+     */
+    public double getCompoundingVelocity() {
+        return myCompoundingVelocity;
+    }
+
 }
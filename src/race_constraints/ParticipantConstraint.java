@@ -8,6 +8,10 @@ import model.ParticipantSpeed;
  * current speed and the participants speed bracket, and then determines a new
  * speed the participant should be travelling and returns it.
  *
+ * The track and acceleration constraints are built into Participant, any
+ * other constraint can be added with Participant.addConstraint and is applied
+ * after them.
+ *
  * @author Michael Osborne
  */
 public interface ParticipantConstraint {
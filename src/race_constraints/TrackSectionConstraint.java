@@ -4,24 +4,46 @@ import model.ParticipantSpeed;
 import model.track.TrackSpeed;
 
 /**
- * A TrackSectionConstraint modifies the
+ * A TrackSectionConstraint modifies the velocity of a participant by the
+ * multiplier of the track section it is on. Participants keep one for their
+ * whole race and update its speed as they move between sections.
  *
  * @author Michael Osborne
  * @author Peter Bae
  */
-public class TrackSectionConstraint implements ParticipantConstraint {
+public final class TrackSectionConstraint implements ParticipantConstraint {
     private TrackSpeed mySpeed;
+    private double myMultiplier;
 
     public TrackSectionConstraint(TrackSpeed speed) {
-        mySpeed = speed;
+        this(speed, speed.getMultiplier());
+    }
+
+    /**
+     * Constructs a TrackSectionConstraint for a race whose multiplier for the
+     * given speed isn't the default.
+     *
+     * @param theSpeed      The speed of the track section.
+     * @param theMultiplier The multiplier to apply to the velocity.
+     */
+    public TrackSectionConstraint(final TrackSpeed theSpeed,
+            final double theMultiplier) {
+        mySpeed = theSpeed;
+        myMultiplier = theMultiplier;
     }
 
     public TrackSpeed getTracketSpeed() {
         return mySpeed;
     }
 
+    public void setTrackSpeed(final TrackSpeed theSpeed,
+            final double theMultiplier) {
+        mySpeed = theSpeed;
+        myMultiplier = theMultiplier;
+    }
+
     @Override
     public double applyConstraint(final double velocity, final ParticipantSpeed theSpeed) {
-        return velocity * mySpeed.getMultiplier();
+        return velocity * myMultiplier;
     }
 }
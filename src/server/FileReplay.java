@@ -0,0 +1,313 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import util.Pacer;
+
+/**
+ * Replays a race file that has already been generated. Every client gets the
+ * whole file from the start, on its own clock from when it connected.
+ *
+ * The bytes go from the file to the socket with {@link FileChannel#transferTo},
+ * so they are never copied through the JVM and every client shares the same
+ * page cache.
+ * Unpaced, the whole file is sent in one go. Paced, the file is indexed once
+ * up front by the time of each line, and every {@value #BATCH_MILLIS} ms each
+ * client is sent the lines that have come due since the last batch.
+ *
+ * A client's socket buffer is the only thing between it and the file, so a
+ * client that reads slower than the race is paced falls behind. Under
+ * {@link SlowConsumerPolicy#DISCONNECT} it is disconnected once it is more
+ * than {@value #MAX_LAG_MILLIS} ms behind, otherwise it catches up as fast as
+ * it can read. A client that stops reading leaves its thread blocked in the
+ * write, so the lag is checked from outside by a watchdog that closes the
+ * connection of any client still being written to too long after the bytes
+ * were due. Telemetry is never dropped from a file, that would mean reading
+ * it through the JVM.
+ */
+public final class FileReplay implements ReplaySource {
+
+    /** The wall clock time between batches sent to a client. */
+    private static final int BATCH_MILLIS = 10;
+
+    /** How far behind a client may fall before DISCONNECT drops it. */
+    private static final int MAX_LAG_MILLIS = 1000;
+
+    /** How often the watchdog looks for clients that have fallen behind. */
+    private static final int WATCHDOG_MILLIS = 100;
+
+    /** The size of the buffer the file is read through to index it. */
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+
+    private final File myFile;
+    private final double mySpeed;
+    private final SlowConsumerPolicy myPolicy;
+    private final Set<Lag> myLags;
+    private ScheduledExecutorService myWatchdog;
+    private FileChannel myChannel;
+    private long myLength;
+    private long myHeaderEnd;
+    private int[] myTimes;
+    private long[] myOffsets;
+    private int myTimeCount;
+
+    /**
+     * Constructs a FileReplay of theFile.
+     *
+     * @param theFile   The race file. Paced replays need the text format, an
+     *                  unpaced replay sends any file as it is.
+     * @param theSpeed  Race milliseconds per wall clock millisecond, 0 to send
+     *                  the file as fast as the client reads it.
+     * @param thePolicy What to do with clients that fall behind.
+     */
+    public FileReplay(final File theFile, final double theSpeed,
+            final SlowConsumerPolicy thePolicy) {
+        myFile = theFile;
+        mySpeed = theSpeed;
+        myPolicy = thePolicy;
+        myLags = ConcurrentHashMap.newKeySet();
+    }
+
+    @Override
+    public void start() throws IOException {
+        myChannel = FileChannel.open(myFile.toPath(), StandardOpenOption.READ);
+        myLength = myChannel.size();
+        myTimes = new int[1024];
+        myOffsets = new long[1024];
+        if (new Pacer(mySpeed).isPaced()) {
+            index();
+            if (myPolicy == SlowConsumerPolicy.DISCONNECT) {
+                myWatchdog = Executors.newSingleThreadScheduledExecutor(
+                        theTask -> {
+                            final Thread thread = new Thread(theTask,
+                                    "replay-watchdog");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                myWatchdog.scheduleWithFixedDelay(this::dropLagging,
+                        WATCHDOG_MILLIS, WATCHDOG_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+        } else {
+            myHeaderEnd = myLength;
+        }
+    }
+
+    @Override
+    public void serve(final SocketChannel theClient)
+            throws IOException, InterruptedException {
+        final Pacer pacer = new Pacer(mySpeed);
+        final Lag lag = new Lag(theClient);
+        if (myWatchdog != null) {
+            myLags.add(lag);
+        }
+        try {
+            send(pacer, lag);
+        } catch (IOException e) {
+            if (lag.myDropped) {
+                throw new IOException("client fell more than "
+                        + MAX_LAG_MILLIS + " ms behind", e);
+            }
+            throw e;
+        } finally {
+            myLags.remove(lag);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (myWatchdog != null) {
+            myWatchdog.shutdownNow();
+        }
+        if (myChannel != null) {
+            myChannel.close();
+        }
+    }
+
+    /**
+     * Sends the file to a client, in batches as they come due when paced.
+     */
+    private void send(final Pacer thePacer, final Lag theLag)
+            throws IOException, InterruptedException {
+        long sent = transfer(0, myHeaderEnd, theLag, thePacer.deadline(0));
+        int next = 0;
+        final long batch = Math.max(1, (long) (mySpeed * BATCH_MILLIS));
+        while (next < myTimeCount) {
+            final long due = thePacer.raceTimeNow();
+            final int end = firstAfter(due, next);
+            if (end > next) {
+                final long to = end < myTimeCount ? myOffsets[end] : myLength;
+                sent = transfer(sent, to, theLag,
+                        thePacer.deadline(myTimes[next]));
+                next = end;
+                if (myPolicy == SlowConsumerPolicy.DISCONNECT
+                        && next < myTimeCount && System.nanoTime()
+                                - thePacer.deadline(myTimes[next])
+                                > MAX_LAG_MILLIS * 1_000_000L) {
+                    throw new IOException("client fell more than "
+                            + MAX_LAG_MILLIS + " ms behind");
+                }
+            }
+            if (next < myTimeCount) {
+                thePacer.awaitRaceTime(Math.max(myTimes[next], due + batch));
+            }
+        }
+    }
+
+    /**
+     * Closes the connection of every client that is still being sent bytes
+     * that were due more than the lag allowed ago, which unblocks its write.
+     */
+    private void dropLagging() {
+        final long now = System.nanoTime();
+        for (Lag lag : myLags) {
+            if (lag.myLateAt != Long.MAX_VALUE && now - lag.myLateAt > 0) {
+                lag.myDropped = true;
+                try {
+                    // Closing alone doesn't wake a transferTo blocked in the
+                    // kernel, shutting the socket down does.
+                    lag.myClient.shutdownOutput();
+                    lag.myClient.close();
+                } catch (IOException e) {
+                    // It is being dropped either way.
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the bytes of the file from theFrom up to theTo, returning theTo.
+     * The first of them were due at theDeadline, on the System.nanoTime()
+     * clock, which the watchdog holds the client to until they are sent.
+     */
+    private long transfer(final long theFrom, final long theTo,
+            final Lag theLag, final long theDeadline) throws IOException {
+        theLag.myLateAt = theDeadline + MAX_LAG_MILLIS * 1_000_000L;
+        long position = theFrom;
+        try {
+            while (position < theTo) {
+                position += myChannel.transferTo(position, theTo - position,
+                        theLag.myClient);
+            }
+        } finally {
+            theLag.myLateAt = Long.MAX_VALUE;
+        }
+        return theTo;
+    }
+
+    /**
+     * Returns the index of the first indexed time after theTime, searching
+     * from theFrom.
+     */
+    private int firstAfter(final long theTime, final int theFrom) {
+        int low = theFrom;
+        int high = myTimeCount;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (myTimes[middle] <= theTime) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads through the file once, noting where the header ends and where the
+     * first line of each millisecond starts. Event lines start with $, a
+     * letter and a colon, then the time.
+     */
+    private void index() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(SCAN_BUFFER_SIZE);
+        myHeaderEnd = -1;
+        long lineStart = 0;
+        // How far into the current line, -1 once there is nothing more to read.
+        int column = 0;
+        int time = 0;
+        int lastTime = -1;
+        long position = 0;
+        while (myChannel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final byte b = buffer.get();
+                if (b == '\n') {
+                    lineStart = position + buffer.position();
+                    column = 0;
+                    continue;
+                }
+                if (column < 0) {
+                    continue;
+                }
+                if (column == 0) {
+                    if (b != '$') {
+                        if (myHeaderEnd < 0 && lineStart == 0 && b != '#') {
+                            throw new IOException(myFile
+                                    + " isn't a text race file, so it can "
+                                    + "only be replayed unpaced");
+                        }
+                        column = -1;
+                        continue;
+                    }
+                    if (myHeaderEnd < 0) {
+                        myHeaderEnd = lineStart;
+                    }
+                    time = 0;
+                    column++;
+                } else if (column < 3) {
+                    column++;
+                } else if (b >= '0' && b <= '9') {
+                    time = time * 10 + (b - '0');
+                } else {
+                    if (time > lastTime) {
+                        addTime(time, lineStart);
+                        lastTime = time;
+                    }
+                    column = -1;
+                }
+            }
+            position += buffer.limit();
+            buffer.clear();
+        }
+        if (myHeaderEnd < 0) {
+            myHeaderEnd = myLength;
+        }
+    }
+
+    private void addTime(final int theTime, final long theOffset) {
+        if (myTimeCount == myTimes.length) {
+            myTimes = Arrays.copyOf(myTimes, myTimeCount * 2);
+            myOffsets = Arrays.copyOf(myOffsets, myTimeCount * 2);
+        }
+        myTimes[myTimeCount] = theTime;
+        myOffsets[myTimeCount] = theOffset;
+        myTimeCount++;
+    }
+
+    /**
+     * A client being served, and when it will have fallen too far behind if
+     * it is still being written to.
+     */
+    private static final class Lag {
+
+        private final SocketChannel myClient;
+        private volatile long myLateAt;
+        private volatile boolean myDropped;
+
+        Lag(final SocketChannel theClient) {
+            myClient = theClient;
+            myLateAt = Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import generator.RaceGenerator;
+import generator.RaceSpec;
+import output.RaceFile;
+import output.RaceSink;
+import output.TextRaceWriter;
+import util.Pacer;
+
+/**
+ * Generates a race while it is being sent, so a replay can be as long as
+ * wanted without a file behind it. The race is generated once on a thread of
+ * its own and broadcast to every client connected at the time. Nothing is
+ * generated until the given number of clients have connected, so an unpaced
+ * race can't be over before anyone is there to read it. A client that connects
+ * part way through gets the header and racers and then the race from where it
+ * has got to, and one that connects after the end is turned away.
+ *
+ * The race is written in the text format into frames of up to
+ * {@value #FRAME_SIZE} bytes, each either all telemetry or none, and every
+ * client has a queue of frames of its own that its thread writes out. The
+ * frames themselves are shared, so a hundred clients cost a hundred queues
+ * rather than a hundred copies of the race. When a client's queue is full its
+ * {@link SlowConsumerPolicy} decides what happens. Paced, the frames are cut
+ * every {@value #BATCH_MILLIS} ms of wall clock time and sent when the newest
+ * event in them is due.
+ *
+ * The #TIME header is the expected time of the race, the actual time isn't
+ * known until the end, by when every client has had the header.
+ */
+public final class LiveReplay implements ReplaySource {
+
+    /** The most bytes put in one frame. */
+    private static final int FRAME_SIZE = 1 << 14;
+
+    /** The most frames a client thread writes in one go. */
+    private static final int FRAMES_PER_WRITE = 16;
+
+    /** The wall clock time between frames being cut when paced. */
+    private static final int BATCH_MILLIS = 10;
+
+    /** How often a blocked broadcast checks whether its client has gone. */
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    /** Sent to a client's queue after the last frame of the race. */
+    private static final Frame END = new Frame(new byte[0], 0, false);
+
+    private final RaceSpec mySpec;
+    private final Pacer myPacer;
+    private final SlowConsumerPolicy myPolicy;
+    private final int myBufferFrames;
+    private final int myStartClients;
+    /** The clients being sent the race, also guards the header. */
+    private final List<Client> myClients;
+    /** The clients waiting for the header, guarded by myClients. */
+    private final List<Client> myWaiting;
+    private final AtomicLong myDroppedFrames;
+    private final AtomicLong myDisconnected;
+    private byte[] myHeader;
+    private int myHeaderLength;
+    private boolean myHeaderDone;
+    private boolean myFinished;
+    private Thread myGenerator;
+    private volatile Exception myFailure;
+
+    /**
+     * Constructs a LiveReplay of the race described by theSpec that starts
+     * generating when the first client connects.
+     *
+     * @param theSpec         The race to generate.
+     * @param theSpeed        Race milliseconds per wall clock millisecond, 0
+     *                        to generate as fast as the clients read.
+     * @param thePolicy       What to do with clients whose buffer is full.
+     * @param theBufferFrames How many frames each client can have waiting.
+     */
+    public LiveReplay(final RaceSpec theSpec, final double theSpeed,
+            final SlowConsumerPolicy thePolicy, final int theBufferFrames) {
+        this(theSpec, theSpeed, thePolicy, theBufferFrames, 1);
+    }
+
+    /**
+     * Constructs a LiveReplay of the race described by theSpec that starts
+     * generating once theStartClients clients have connected.
+     *
+     * @param theSpec         The race to generate.
+     * @param theSpeed        Race milliseconds per wall clock millisecond, 0
+     *                        to generate as fast as the clients read.
+     * @param thePolicy       What to do with clients whose buffer is full.
+     * @param theBufferFrames How many frames each client can have waiting.
+     * @param theStartClients How many clients to wait for, 0 to start
+     *                        straight away.
+     */
+    public LiveReplay(final RaceSpec theSpec, final double theSpeed,
+            final SlowConsumerPolicy thePolicy, final int theBufferFrames,
+            final int theStartClients) {
+        if (theBufferFrames < 1) {
+            throw new IllegalArgumentException(
+                    "the buffer must hold at least 1 frame");
+        }
+        if (theStartClients < 0) {
+            throw new IllegalArgumentException(
+                    "the number of clients can't be negative");
+        }
+        theSpec.validate();
+        mySpec = theSpec;
+        myPacer = new Pacer(theSpeed);
+        myPolicy = thePolicy;
+        myBufferFrames = theBufferFrames;
+        myStartClients = theStartClients;
+        myClients = new ArrayList<>();
+        myWaiting = new ArrayList<>();
+        myDroppedFrames = new AtomicLong();
+        myDisconnected = new AtomicLong();
+        myHeader = new byte[1 << 12];
+    }
+
+    @Override
+    public void start() {
+        myGenerator = new Thread(this::generate, "replay-live");
+        myGenerator.setDaemon(true);
+        myGenerator.start();
+    }
+
+    @Override
+    public void serve(final SocketChannel theClient)
+            throws IOException, InterruptedException {
+        final Client client = new Client(theClient, myBufferFrames);
+        synchronized (myClients) {
+            if (myFinished) {
+                throw new IOException("the race is already over");
+            }
+            if (myHeaderDone) {
+                client.myQueue.add(headerFrame());
+                myClients.add(client);
+            } else {
+                // Joined with the header, before the first event is sent.
+                myWaiting.add(client);
+                myClients.notifyAll();
+            }
+        }
+        try {
+            client.writeFrames();
+        } finally {
+            // Unblocks a broadcast waiting for room before taking the lock.
+            client.myClosed = true;
+            client.myQueue.clear();
+            synchronized (myClients) {
+                myClients.remove(client);
+                myWaiting.remove(client);
+            }
+        }
+    }
+
+    /**
+     * Waits for the race to finish generating.
+     *
+     * @throws IOException If the race failed.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void awaitFinished() throws IOException, InterruptedException {
+        myGenerator.join();
+        if (myFailure instanceof IOException) {
+            throw (IOException) myFailure;
+        }
+        if (myFailure != null) {
+            throw new IOException("could not generate the race", myFailure);
+        }
+    }
+
+    /**
+     * Returns the number of telemetry frames thrown away under
+     * {@link SlowConsumerPolicy#DROP_TELEMETRY}, counting once per client.
+     *
+     * @return The number of frames dropped.
+     */
+    public long getDroppedFrames() {
+        return myDroppedFrames.get();
+    }
+
+    /**
+     * Returns the number of clients disconnected under
+     * {@link SlowConsumerPolicy#DISCONNECT}.
+     *
+     * @return The number of clients disconnected.
+     */
+    public long getDisconnectedCount() {
+        return myDisconnected.get();
+    }
+
+    @Override
+    public void close() {
+        if (myGenerator != null) {
+            myGenerator.interrupt();
+        }
+    }
+
+    private void generate() {
+        final BroadcastFile file = new BroadcastFile();
+        boolean ended = false;
+        try {
+            synchronized (myClients) {
+                while (myWaiting.size() < myStartClients) {
+                    myClients.wait();
+                }
+            }
+            myPacer.restart();
+            RaceGenerator.generate(mySpec,
+                    new PacingSink(new TextRaceWriter(file), file), null);
+            file.flush();
+            broadcast(END);
+            ended = true;
+        } catch (IOException | RuntimeException e) {
+            myFailure = e;
+        } catch (InterruptedException e) {
+            myFailure = new InterruptedIOException("replay was stopped");
+        } finally {
+            synchronized (myClients) {
+                myFinished = true;
+                myClients.notifyAll();
+                if (!ended) {
+                    // The race is cut short, so whatever is waiting is
+                    // dropped rather than hold up the end.
+                    myClients.addAll(myWaiting);
+                    for (Client client : myClients) {
+                        client.myQueue.clear();
+                        client.myQueue.offer(END);
+                    }
+                }
+                myClients.clear();
+                myWaiting.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends a frame to every client, applying the slow consumer policy to
+     * the ones that have no room for it.
+     */
+    private void broadcast(final Frame theFrame) throws IOException {
+        synchronized (myClients) {
+            final Iterator<Client> clients = myClients.iterator();
+            while (clients.hasNext()) {
+                final Client client = clients.next();
+                if (client.myQueue.offer(theFrame)) {
+                    continue;
+                }
+                if (myPolicy == SlowConsumerPolicy.DISCONNECT) {
+                    clients.remove();
+                    client.disconnect();
+                    myDisconnected.incrementAndGet();
+                } else if (myPolicy == SlowConsumerPolicy.DROP_TELEMETRY
+                        && theFrame.myTelemetry) {
+                    myDroppedFrames.incrementAndGet();
+                } else {
+                    waitForRoom(client, theFrame);
+                }
+            }
+        }
+    }
+
+    private static void waitForRoom(final Client theClient,
+            final Frame theFrame) throws IOException {
+        try {
+            while (!theClient.myClosed && !theClient.myQueue.offer(theFrame,
+                    OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                // Still full, check the client is still there and wait again.
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("replay was stopped");
+        }
+    }
+
+    /**
+     * Returns the header as it is now, for a client that is joining.
+     */
+    private Frame headerFrame() {
+        return new Frame(Arrays.copyOf(myHeader, myHeaderLength),
+                myHeaderLength, false);
+    }
+
+    /**
+     * A piece of the race, shared by every client it is sent to and never
+     * changed.
+     */
+    private static final class Frame {
+
+        private final byte[] myBytes;
+        private final int myLength;
+        private final boolean myTelemetry;
+
+        Frame(final byte[] theBytes, final int theLength,
+                final boolean theTelemetry) {
+            myBytes = theBytes;
+            myLength = theLength;
+            myTelemetry = theTelemetry;
+        }
+    }
+
+    /**
+     * One connected client and the frames waiting to be written to it.
+     */
+    private static final class Client {
+
+        private final SocketChannel myChannel;
+        private final BlockingQueue<Frame> myQueue;
+        private final List<Frame> myBatch;
+        private final ByteBuffer[] myBuffers;
+        private volatile boolean myClosed;
+
+        Client(final SocketChannel theChannel, final int theBufferFrames) {
+            myChannel = theChannel;
+            // One more than the buffer for the header.
+            myQueue = new ArrayBlockingQueue<>(theBufferFrames + 1);
+            myBatch = new ArrayList<>(FRAMES_PER_WRITE);
+            myBuffers = new ByteBuffer[FRAMES_PER_WRITE];
+        }
+
+        /**
+         * Writes frames to the client until the end of the race, several at a
+         * time when they have queued up.
+         */
+        void writeFrames() throws IOException, InterruptedException {
+            while (true) {
+                myBatch.add(myQueue.take());
+                myQueue.drainTo(myBatch, FRAMES_PER_WRITE - 1);
+                int count = 0;
+                boolean end = false;
+                long remaining = 0;
+                for (Frame frame : myBatch) {
+                    if (frame == END) {
+                        end = true;
+                        break;
+                    }
+                    myBuffers[count++] = ByteBuffer.wrap(frame.myBytes, 0,
+                            frame.myLength);
+                    remaining += frame.myLength;
+                }
+                myBatch.clear();
+                while (remaining > 0) {
+                    remaining -= myChannel.write(myBuffers, 0, count);
+                }
+                Arrays.fill(myBuffers, null);
+                if (end) {
+                    return;
+                }
+            }
+        }
+
+        void disconnect() {
+            myClosed = true;
+            try {
+                myChannel.close();
+            } catch (IOException e) {
+                // It is being dropped either way.
+            }
+        }
+    }
+
+    /**
+     * Collects the lines the {@link TextRaceWriter} writes into frames. Each
+     * write is one whole line. The lines before the first event are the
+     * header, which is kept to send to each client as it connects rather than
+     * broadcast.
+     */
+    private final class BroadcastFile implements RaceFile {
+
+        private byte[] myFrame = new byte[FRAME_SIZE];
+        private int myLength;
+        private boolean myTelemetry;
+        private long myPosition;
+
+        @Override
+        public void write(final byte[] theBytes, final int theOffset,
+                final int theLength) throws IOException {
+            final boolean event = theLength > 0 && theBytes[theOffset] == '$';
+            final boolean telemetry = event && theLength > 1
+                    && theBytes[theOffset + 1] == 'T';
+            myPosition += theLength;
+            if (!myHeaderDone) {
+                if (!event) {
+                    appendHeader(theBytes, theOffset, theLength);
+                    return;
+                }
+                synchronized (myClients) {
+                    myHeaderDone = true;
+                    final Frame header = headerFrame();
+                    for (Client client : myWaiting) {
+                        client.myQueue.add(header);
+                        myClients.add(client);
+                    }
+                    myWaiting.clear();
+                }
+            }
+            if (myLength > 0 && (telemetry != myTelemetry
+                    || myLength + theLength > myFrame.length)) {
+                flush();
+            }
+            if (theLength > myFrame.length) {
+                broadcast(new Frame(Arrays.copyOfRange(theBytes, theOffset,
+                        theOffset + theLength), theLength, telemetry));
+            } else {
+                System.arraycopy(theBytes, theOffset, myFrame, myLength,
+                        theLength);
+                myLength += theLength;
+                myTelemetry = telemetry;
+            }
+        }
+
+        @Override
+        public long position() {
+            return myPosition;
+        }
+
+        /**
+         * Does nothing, the header is only patched at the end of the race and
+         * by then every client has had it.
+         */
+        @Override
+        public void patch(final long thePosition, final byte[] theBytes) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * Sends the frame collected so far to every client.
+         */
+        void flush() throws IOException {
+            if (myLength == 0) {
+                return;
+            }
+            final Frame frame = new Frame(myFrame, myLength, myTelemetry);
+            myFrame = new byte[FRAME_SIZE];
+            myLength = 0;
+            broadcast(frame);
+        }
+
+        private void appendHeader(final byte[] theBytes, final int theOffset,
+                final int theLength) {
+            synchronized (myClients) {
+                if (myHeaderLength + theLength > myHeader.length) {
+                    myHeader = Arrays.copyOf(myHeader, Math.max(
+                            myHeader.length * 2, myHeaderLength + theLength));
+                }
+                System.arraycopy(theBytes, theOffset, myHeader,
+                        myHeaderLength, theLength);
+                myHeaderLength += theLength;
+            }
+        }
+    }
+
+    /**
+     * Holds the race back to the pacer's clock, cutting a frame whenever an
+     * event is at least a batch after the last cut and sending it once the
+     * newest event in it is due.
+     */
+    private final class PacingSink implements RaceSink {
+
+        private final RaceSink mySink;
+        private final BroadcastFile myFile;
+        private final long myBatch;
+        private long myNextCut;
+        private long myLastTime;
+
+        PacingSink(final RaceSink theSink, final BroadcastFile theFile) {
+            mySink = theSink;
+            myFile = theFile;
+            myBatch = Math.max(1, (long) (myPacer.getSpeed() * BATCH_MILLIS));
+        }
+
+        @Override
+        public void raceHeader(final String theRaceName,
+                final String theTrackName, final int theWidthRatio,
+                final int theHeightRatio, final int theDistance,
+                final int theExpectedTime, final int theNumParticipants)
+                throws IOException {
+            mySink.raceHeader(theRaceName, theTrackName, theWidthRatio,
+                    theHeightRatio, theDistance, theExpectedTime,
+                    theNumParticipants);
+        }
+
+        @Override
+        public void racer(final int theID, final String theName,
+                final double theStartPosition) throws IOException {
+            mySink.racer(theID, theName, theStartPosition);
+        }
+
+        @Override
+        public void telemetry(final int theTime, final int theID,
+                final double thePosition, final int theLap)
+                throws IOException {
+            pace(theTime);
+            mySink.telemetry(theTime, theID, thePosition, theLap);
+        }
+
+        @Override
+        public void leaderBoard(final int theTime, final int[] theRacerIDs)
+                throws IOException {
+            pace(theTime);
+            mySink.leaderBoard(theTime, theRacerIDs);
+        }
+
+        @Override
+        public void crossing(final int theTime, final int theID,
+                final int theLap, final boolean theFinished)
+                throws IOException {
+            pace(theTime);
+            mySink.crossing(theTime, theID, theLap, theFinished);
+        }
+
+        @Override
+        public void finish(final int theRaceTime) throws IOException {
+            pace(Long.MAX_VALUE);
+            mySink.finish(theRaceTime);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mySink.close();
+        }
+
+        private void pace(final long theTime) throws IOException {
+            if (!myPacer.isPaced() || theTime < myNextCut) {
+                myLastTime = theTime;
+                return;
+            }
+            try {
+                myPacer.awaitRaceTime(myLastTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("replay was stopped");
+            }
+            myFile.flush();
+            myNextCut = theTime + myBatch;
+            myLastTime = theTime;
+        }
+    }
+}
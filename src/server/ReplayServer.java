@@ -0,0 +1,216 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves a race over TCP to any number of clients at once, for load testing
+ * whatever reads race files downstream. Each client that connects is sent the
+ * race from its {@link ReplaySource}, either a finished race file
+ * ({@link FileReplay}) or a race being generated as it is sent
+ * ({@link LiveReplay}), in the text race file format.
+ *
+ * Every client gets a thread of its own that does nothing but write to it.
+ * On Java 21 and later these are virtual threads, so thousands of clients cost
+ * next to nothing, before that they are ordinary daemon threads, which is
+ * still fine for hundreds.
+ */
+public final class ReplayServer implements Closeable {
+
+    /** How long to wait after an accept fails before trying again. */
+    private static final int ACCEPT_BACKOFF_MILLIS = 50;
+
+    private final ServerSocketChannel myChannel;
+    private final ReplaySource mySource;
+    private final ThreadFactory myConnections;
+    private final Set<SocketChannel> myClients;
+    private final AtomicLong myServed;
+    private final AtomicLong myFailed;
+    private Thread myAcceptor;
+
+    /**
+     * Binds a server to theAddress that replays theSource. Nothing is accepted
+     * until {@link #start()}.
+     *
+     * @param theAddress The address to listen on, port 0 picks a free port.
+     * @param theSource  The race to send every client, closed with the server.
+     * @throws IOException If the address can't be bound.
+     */
+    public ReplayServer(final InetSocketAddress theAddress,
+            final ReplaySource theSource) throws IOException {
+        myChannel = ServerSocketChannel.open();
+        myChannel.bind(theAddress, 1024);
+        mySource = theSource;
+        myConnections = connectionThreads();
+        myClients = ConcurrentHashMap.newKeySet();
+        myServed = new AtomicLong();
+        myFailed = new AtomicLong();
+    }
+
+    /**
+     * Starts the source and starts accepting clients.
+     *
+     * @throws IOException If the source can't be started.
+     */
+    public void start() throws IOException {
+        mySource.start();
+        myAcceptor = new Thread(this::acceptClients, "replay-accept");
+        myAcceptor.setDaemon(true);
+        myAcceptor.start();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress) myChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the number of clients connected right now.
+     *
+     * @return The number of clients.
+     */
+    public int getClientCount() {
+        return myClients.size();
+    }
+
+    /**
+     * Returns the number of clients that were sent the whole race.
+     *
+     * @return The number of clients served.
+     */
+    public long getServedCount() {
+        return myServed.get();
+    }
+
+    /**
+     * Returns the number of clients that went away or were disconnected
+     * before the end of the race.
+     *
+     * @return The number of clients that failed.
+     */
+    public long getFailedCount() {
+        return myFailed.get();
+    }
+
+    /**
+     * Stops accepting clients, disconnects the ones still connected and
+     * closes the source.
+     *
+     * @throws IOException If the source can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            myChannel.close();
+            for (SocketChannel client : myClients) {
+                closeQuietly(client);
+            }
+        } finally {
+            mySource.close();
+        }
+    }
+
+    private void acceptClients() {
+        while (myChannel.isOpen()) {
+            final SocketChannel client;
+            try {
+                client = myChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                // Usually out of file descriptors, the clients already
+                // connected carry on. Trying again straight away would only
+                // spin until one of them finishes.
+                try {
+                    Thread.sleep(ACCEPT_BACKOFF_MILLIS);
+                } catch (InterruptedException stop) {
+                    return;
+                }
+                continue;
+            }
+            myClients.add(client);
+            myConnections.newThread(() -> serve(client)).start();
+        }
+    }
+
+    private void serve(final SocketChannel theClient) {
+        try {
+            theClient.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            mySource.serve(theClient);
+            myServed.incrementAndGet();
+        } catch (IOException e) {
+            // The client went away or was disconnected for being too slow.
+            myFailed.incrementAndGet();
+        } catch (InterruptedException e) {
+            myFailed.incrementAndGet();
+            Thread.currentThread().interrupt();
+        } finally {
+            myClients.remove(theClient);
+            closeQuietly(theClient);
+        }
+    }
+
+    private static void closeQuietly(final SocketChannel theClient) {
+        try {
+            theClient.close();
+        } catch (IOException e) {
+            // Nothing more can be sent to it either way.
+        }
+    }
+
+    /**
+     * Returns a factory of virtual threads if the JVM has them (Java 21 and
+     * later), and of daemon platform threads if not. They are looked up
+     * reflectively so the code still builds for Java 11.
+     */
+    private static ThreadFactory connectionThreads() {
+        try {
+            final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            final Object builder = ofVirtual.invoke(null);
+            final Class<?> builderClass = Class
+                    .forName("java.lang.Thread$Builder");
+            builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "replay-client-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory")
+                    .invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new ClientFactory();
+        }
+    }
+
+    /**
+     * Names the client threads and makes them daemons so a client that never
+     * reads can't keep the JVM alive.
+     */
+    private static final class ClientFactory implements ThreadFactory {
+
+        private final AtomicInteger myCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable theTask) {
+            final Thread thread = new Thread(theTask,
+                    "replay-client-" + myCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
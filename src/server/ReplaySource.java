@@ -0,0 +1,30 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Where a {@link ReplayServer} gets the race it sends to each client.
+ */
+public interface ReplaySource extends Closeable {
+
+    /**
+     * Called once before the server accepts its first client.
+     *
+     * @throws IOException If the race can't be opened.
+     */
+    void start() throws IOException;
+
+    /**
+     * Sends the race to one client, on a thread of its own, returning once the
+     * client has had all of it or should be disconnected. The server closes
+     * the channel afterwards.
+     *
+     * @param theClient The client's connection, in blocking mode.
+     * @throws IOException If the client can't be written to.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    void serve(SocketChannel theClient)
+            throws IOException, InterruptedException;
+}
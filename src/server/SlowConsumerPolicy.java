@@ -0,0 +1,34 @@
+package server;
+
+/**
+ * What a replay does with a client that can't read as fast as the race is
+ * sent.
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * Waits for the client, which holds up the race for every other client
+     * too. Nothing is ever lost.
+     */
+    BLOCK,
+    /**
+     * Throws away telemetry the client has no room for, but still waits to
+     * send it leader board and crossing lines, so the results it sees are
+     * complete.
+     */
+    DROP_TELEMETRY,
+    /**
+     * Disconnects the client, so one slow client can't hold up the rest.
+     */
+    DISCONNECT;
+
+    /**
+     * Returns the policy with the given name, written either like the
+     * constant or in lower case with dashes, for example drop-telemetry.
+     *
+     * @param theName The name of the policy.
+     * @return The policy.
+     */
+    public static SlowConsumerPolicy fromName(final String theName) {
+        return valueOf(theName.trim().toUpperCase().replace('-', '_'));
+    }
+}
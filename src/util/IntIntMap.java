@@ -0,0 +1,130 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A map from int keys to non-negative int values that doesn't box, used for
+ * things like looking up a racer's slot from its ID on every event.
+ *
+ * Uses open addressing with linear probing and grows when it is half full.
+ */
+public class IntIntMap {
+
+    /** Returned by {@link #get(int)} when the key isn't in the map. */
+    public static final int MISSING = -1;
+
+    private int[] myKeys;
+    private int[] myValues;
+    private int mySize;
+    private int myMask;
+
+    /**
+     * Constructs a map sized for the expected number of keys.
+     *
+     * @param theExpectedSize The number of keys expected in the map.
+     */
+    public IntIntMap(final int theExpectedSize) {
+        int capacity = 16;
+        while (capacity < theExpectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Returns the value for the given key, or {@link #MISSING}.
+     *
+     * @param theKey The key to look up.
+     * @return The value or {@link #MISSING}.
+     */
+    public int get(final int theKey) {
+        int i = hash(theKey) & myMask;
+        while (myValues[i] != MISSING) {
+            if (myKeys[i] == theKey) {
+                return myValues[i];
+            }
+            i = (i + 1) & myMask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * Returns true if the map contains the given key.
+     *
+     * @param theKey The key to look for.
+     * @return True if the key is in the map.
+     */
+    public boolean containsKey(final int theKey) {
+        return get(theKey) != MISSING;
+    }
+
+    /**
+     * Associates theValue with theKey, replacing any previous value.
+     *
+     * @param theKey   The key.
+     * @param theValue The value, must not be negative.
+     * @return The previous value or {@link #MISSING}.
+     */
+    public int put(final int theKey, final int theValue) {
+        if (theValue < 0) {
+            throw new IllegalArgumentException("values must not be negative");
+        }
+        int i = hash(theKey) & myMask;
+        while (myValues[i] != MISSING) {
+            if (myKeys[i] == theKey) {
+                final int previous = myValues[i];
+                myValues[i] = theValue;
+                return previous;
+            }
+            i = (i + 1) & myMask;
+        }
+        myKeys[i] = theKey;
+        myValues[i] = theValue;
+        mySize++;
+        if (mySize * 2 > myKeys.length) {
+            grow();
+        }
+        return MISSING;
+    }
+
+    /**
+     * Returns the number of keys in the map.
+     *
+     * @return The number of keys in the map.
+     */
+    public int size() {
+        return mySize;
+    }
+
+    /**
+     * Removes every key from the map.
+     */
+    public void clear() {
+        Arrays.fill(myValues, MISSING);
+        mySize = 0;
+    }
+
+    private void grow() {
+        final int[] keys = myKeys;
+        final int[] values = myValues;
+        allocate(keys.length << 1);
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != MISSING) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+
+    private void allocate(final int theCapacity) {
+        myKeys = new int[theCapacity];
+        myValues = new int[theCapacity];
+        Arrays.fill(myValues, MISSING);
+        myMask = theCapacity - 1;
+        mySize = 0;
+    }
+
+    private static int hash(final int theKey) {
+        final int h = theKey * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
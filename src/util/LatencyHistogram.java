@@ -0,0 +1,150 @@
+package util;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in nanoseconds into buckets that are about 3% wide at any
+ * size, from single nanoseconds up to centuries, in a fixed 15 KB of memory.
+ * Recording is a couple of shifts and an atomic increment, so it can be done
+ * on every tick, from any number of threads at once.
+ *
+ * Values under {@value #SUB_BUCKETS} are counted exactly. Above that every
+ * power of two is split into {@value #SUB_BUCKETS} equal buckets, and the
+ * percentiles reported are the top of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    /** log2 of the number of buckets in each power of two. */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray myCounts;
+    private final AtomicLong myCount;
+    private final AtomicLong myTotal;
+    private final AtomicLong myMax;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        myCounts = new AtomicLongArray(BUCKETS);
+        myCount = new AtomicLong();
+        myTotal = new AtomicLong();
+        myMax = new AtomicLong();
+    }
+
+    /**
+     * Counts one duration. Negative durations are counted as 0.
+     *
+     * @param theNanos The duration in nanoseconds.
+     */
+    public void record(final long theNanos) {
+        final long value = Math.max(0, theNanos);
+        myCounts.incrementAndGet(bucket(value));
+        myCount.incrementAndGet();
+        myTotal.addAndGet(value);
+        long max = myMax.get();
+        while (value > max && !myMax.compareAndSet(max, value)) {
+            max = myMax.get();
+        }
+    }
+
+    public long getCount() {
+        return myCount.get();
+    }
+
+    public long getMax() {
+        return myMax.get();
+    }
+
+    /**
+     * Returns the mean of the durations counted, 0 if there are none.
+     *
+     * @return The mean in nanoseconds.
+     */
+    public double getMean() {
+        final long count = myCount.get();
+        return count == 0 ? 0 : (double) myTotal.get() / count;
+    }
+
+    /**
+     * Returns the duration that the given percentage of the durations counted
+     * are no longer than, to within a bucket, 0 if there are none.
+     *
+     * @param thePercentile The percentage, from 0 to 100.
+     * @return The duration in nanoseconds.
+     */
+    public long getValueAtPercentile(final double thePercentile) {
+        final long count = myCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1,
+                (long) Math.ceil(count * thePercentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += myCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestIn(i), myMax.get());
+            }
+        }
+        return myMax.get();
+    }
+
+    /**
+     * Empties the histogram. Durations recorded at the same time may or may
+     * not be counted.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            myCounts.set(i, 0);
+        }
+        myCount.set(0);
+        myTotal.set(0);
+        myMax.set(0);
+    }
+
+    /**
+     * Returns the count, mean, the usual percentiles and max in microseconds,
+     * on one line.
+     *
+     * @return The summary.
+     */
+    public String summary() {
+        return String.format(Locale.ROOT, "n=%d mean=%.1fus p50=%.1fus "
+                + "p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", getCount(),
+                getMean() / 1e3, getValueAtPercentile(50) / 1e3,
+                getValueAtPercentile(90) / 1e3,
+                getValueAtPercentile(99) / 1e3,
+                getValueAtPercentile(99.9) / 1e3, getMax() / 1e3);
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    private static int bucket(final long theValue) {
+        if (theValue < SUB_BUCKETS) {
+            return (int) theValue;
+        }
+        final int shift = 63 - Long.numberOfLeadingZeros(theValue)
+                - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS)
+                + (int) (theValue >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long highestIn(final int theBucket) {
+        if (theBucket < SUB_BUCKETS) {
+            return theBucket;
+        }
+        final int shift = (theBucket >>> SUB_BUCKET_BITS) - 1;
+        final long mantissa = (theBucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
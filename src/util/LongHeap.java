@@ -0,0 +1,98 @@
+package util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of longs that doesn't box, used as the event queue of the
+ * event driven race engine where events are packed into a single long.
+ */
+public class LongHeap {
+
+    private long[] myValues;
+    private int mySize;
+
+    /**
+     * Constructs a heap sized for the expected number of values.
+     *
+     * @param theExpectedSize The number of values expected in the heap.
+     */
+    public LongHeap(final int theExpectedSize) {
+        myValues = new long[Math.max(16, theExpectedSize)];
+    }
+
+    /**
+     * Adds a value to the heap.
+     *
+     * @param theValue The value to add.
+     */
+    public void add(final long theValue) {
+        if (mySize == myValues.length) {
+            myValues = Arrays.copyOf(myValues, mySize << 1);
+        }
+        int i = mySize++;
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (myValues[parent] <= theValue) {
+                break;
+            }
+            myValues[i] = myValues[parent];
+            i = parent;
+        }
+        myValues[i] = theValue;
+    }
+
+    /**
+     * Returns the smallest value without removing it.
+     *
+     * @return The smallest value.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public long peek() {
+        if (mySize == 0) {
+            throw new NoSuchElementException();
+        }
+        return myValues[0];
+    }
+
+    /**
+     * Removes and returns the smallest value.
+     *
+     * @return The smallest value.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public long poll() {
+        final long result = peek();
+        final long last = myValues[--mySize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= mySize) {
+                break;
+            }
+            if (child + 1 < mySize && myValues[child + 1] < myValues[child]) {
+                child++;
+            }
+            if (last <= myValues[child]) {
+                break;
+            }
+            myValues[i] = myValues[child];
+            i = child;
+        }
+        myValues[i] = last;
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return mySize == 0;
+    }
+
+    /**
+     * Returns the number of values in the heap.
+     *
+     * @return The number of values in the heap.
+     */
+    public int size() {
+        return mySize;
+    }
+}
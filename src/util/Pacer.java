@@ -0,0 +1,144 @@
+package util;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Maps race time onto wall clock time at a fixed speed, so a race can be sent
+ * out as it would have happened: at speed 1 the events of millisecond t go out
+ * t milliseconds after the start, at speed 10 ten times as fast.
+ *
+ * Every deadline is measured from the start rather than from the previous
+ * one, so oversleeping or a slow step only delays the events it hits and
+ * never adds up over a long race. A speed of 0 or less means no pacing.
+ *
+ * Parking a thread usually oversleeps by tens of microseconds. A precise
+ * pacer learns by how much and parks that much short of each deadline, then
+ * spins for the rest, which costs some CPU for wake ups within a few
+ * microseconds.
+ */
+public class Pacer {
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /** The first guess at how far parking oversleeps. */
+    private static final long INITIAL_OVERSLEEP_NANOS = 50_000;
+
+    /** The most a precise pacer will spin for. */
+    private static final long MAX_SPIN_NANOS = 1_000_000;
+
+    private final double mySpeed;
+    private boolean myPrecise;
+    private long myOversleep;
+    private long myStart;
+
+    /**
+     * Constructs a Pacer, started now.
+     *
+     * @param theSpeed Race milliseconds per wall clock millisecond, 0 for as
+     *                 fast as possible.
+     */
+    public Pacer(final double theSpeed) {
+        if (Double.isNaN(theSpeed) || Double.isInfinite(theSpeed)) {
+            throw new IllegalArgumentException(
+                    "the speed must be a number but was " + theSpeed);
+        }
+        mySpeed = theSpeed;
+        myOversleep = INITIAL_OVERSLEEP_NANOS;
+        myStart = System.nanoTime();
+    }
+
+    /**
+     * Sets whether to spin the last part of each wait, see the class
+     * comment. Off by default.
+     *
+     * @param thePrecise True to spin.
+     */
+    public void setPrecise(final boolean thePrecise) {
+        myPrecise = thePrecise;
+    }
+
+    /**
+     * Makes race time 0 now.
+     */
+    public void restart() {
+        myStart = System.nanoTime();
+    }
+
+    /**
+     * Returns true if this pacer waits at all.
+     *
+     * @return False if it runs as fast as possible.
+     */
+    public boolean isPaced() {
+        return mySpeed > 0;
+    }
+
+    public double getSpeed() {
+        return mySpeed;
+    }
+
+    /**
+     * Returns the wall clock time, on the {@link System#nanoTime()} clock, that
+     * the given race time is due.
+     *
+     * @param theRaceTime The race time in milliseconds.
+     * @return When it is due.
+     */
+    public long deadline(final long theRaceTime) {
+        return myStart + (long) (theRaceTime * NANOS_PER_MILLI / mySpeed);
+    }
+
+    /**
+     * Returns the race time that is due now, the latest millisecond whose
+     * events should already have gone out. Unpaced it is always the end of
+     * time.
+     *
+     * @return The race time due now.
+     */
+    public long raceTimeNow() {
+        if (!isPaced()) {
+            return Long.MAX_VALUE;
+        }
+        return (long) ((System.nanoTime() - myStart) * mySpeed
+                / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Waits until the given race time is due, returning straight away if it
+     * already is or if this pacer isn't paced.
+     *
+     * @param theRaceTime The race time in milliseconds.
+     * @return How late the call returned, in nanoseconds after the deadline,
+     *         0 when unpaced.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public long awaitRaceTime(final long theRaceTime)
+            throws InterruptedException {
+        if (!isPaced()) {
+            return 0;
+        }
+        final long deadline = deadline(theRaceTime);
+        final long early = myPrecise ? myOversleep : 0;
+        long now = System.nanoTime();
+        while (deadline - now > early) {
+            final long requested = deadline - now - early;
+            LockSupport.parkNanos(requested);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            final long woke = System.nanoTime();
+            if (myPrecise) {
+                // Moves an eighth of the way towards the latest oversleep.
+                final long oversleep = woke - now - requested;
+                myOversleep = Math.min(MAX_SPIN_NANOS, Math.max(0,
+                        myOversleep + (oversleep - myOversleep) / 8));
+            }
+            now = woke;
+        }
+        while (now < deadline) {
+            Thread.yield();
+            now = System.nanoTime();
+        }
+        return now - deadline;
+    }
+}
@@ -2,13 +2,18 @@ package view;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import generator.RaceGenerator;
+import generator.RaceSpec;
+import generator.RaceSpec.RacerSpec;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -19,6 +24,7 @@ import javafx.geometry.HPos;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.ProgressBar;
@@ -33,9 +39,8 @@ import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
-import model.Participant;
+import metrics.RaceMetrics;
 import model.ParticipantSpeed;
-import model.Race;
 import model.track.OvalTrack;
 import model.track.Track;
 import model.track.TrackSpeed;
@@ -94,9 +99,10 @@ public class Controller extends BorderPane {
     public ProgressBar progressBar;
     private File outputFile;
     private Track myTrack;
-    private List<String> linesToWrite;
     private List<ParticipantSpeed> speedBracketList;
     private Map<ParticipantSpeed, Text> estimateTimes;
+    private Map<ParticipantSpeed, Double> bracketVelocities;
+    private Map<ParticipantSpeed, Double> bracketRanges;
 
     /**
      * This is called when Controller.fxml is loaded by javafx, its essentially
@@ -173,9 +179,14 @@ public class Controller extends BorderPane {
 
         // Instantiation
         numLaps = 1;
-        linesToWrite = new ArrayList<>();
         participantDisplays = new ArrayList<>();
         estimateTimes = new HashMap<>();
+        bracketVelocities = new HashMap<>();
+        bracketRanges = new HashMap<>();
+        for (ParticipantSpeed speed : ParticipantSpeed.values()) {
+            bracketVelocities.put(speed, speed.getVelocity());
+            bracketRanges.put(speed, speed.getRange());
+        }
         configPane = new FlowPane(Orientation.VERTICAL);
         generationControlPane = new FlowPane(Orientation.VERTICAL);
         trackSpeedMultiplierFields = new ArrayList<TextField>();
@@ -361,7 +372,9 @@ public class Controller extends BorderPane {
                     + ParticipantSpeed.values()[i]
                     + " racer to complete a lap: "
                     + String.format("%.2f", myTrack.getTrackLength()
-                            / ParticipantSpeed.values()[i].getVelocity() / 1000)
+                            / bracketVelocities
+                                    .get(ParticipantSpeed.values()[i])
+                            / 1000)
                     + " seconds");
             estimateTimes.put(ParticipantSpeed.values()[i], estimate);
             estTimePane.add(estimate, 0, i);
@@ -404,8 +417,8 @@ public class Controller extends BorderPane {
      */
     private void updateSpeedBracket(final ParticipantSpeed speedBracket,
             final double newSpeed, final double newRange) {
-        speedBracket.setVelocity(newSpeed);
-        speedBracket.setRange(newRange);
+        bracketVelocities.put(speedBracket, newSpeed);
+        bracketRanges.put(speedBracket, newRange);
         updateEstimate(speedBracket);
     }
 
@@ -420,7 +433,8 @@ public class Controller extends BorderPane {
                 + speedBracket + " racer to complete a lap: " + String
                         .format("%.2f",
                                 myTrack.getTrackLength()
-                                        / speedBracket.getVelocity() / 1000)
+                                        / bracketVelocities.get(speedBracket)
+                                        / 1000)
                 + " seconds");
     }
 
@@ -494,37 +508,17 @@ public class Controller extends BorderPane {
         SimTask task = new SimTask();
         progressBar.progressProperty().bind(task.progressProperty());
         task.setOnSucceeded(wse -> progressBar.setVisible(false));
+        task.setOnFailed(wse -> {
+            progressBar.setVisible(false);
+            final Alert alert = new Alert(Alert.AlertType.ERROR,
+                    "Could not generate race: "
+                            + task.getException().getMessage());
+            alert.showAndWait();
+        });
         new Thread(task).start();
     }
 
 
-    /**
-     * This is a fix for the randomness (variability) causing the last racer
-     * to actually finish after the specified time, this method is a hack to
-     * change the entire race time to the time that the last racer passes the
-     * finish line.
-     */
-    private void adjustForLastRacer() {
-
-        // Start at the end of the array and look back until we find when
-        // the last racer crossed the finish line.
-        int i = linesToWrite.size() - 1;
-        while (!linesToWrite.get(i).contains("$C")) {
-            i--;
-        }
-
-        // Extract the millisecond from the string
-        int raceActuallyOver = (int) Double
-                .parseDouble(linesToWrite.get(i).split(":")[1]);
-
-        // Because this is technically an index, add one to get the length
-        raceActuallyOver++;
-
-        // Modify the time to be this new value
-        linesToWrite.set(5, "#TIME:" + raceActuallyOver);
-
-    }
-
     /**
      * This class is a ChangeListener that updates time estimates for racers
      * based on changes in fields so users can get an semi-intuitive idea of
@@ -579,21 +573,27 @@ public class Controller extends BorderPane {
      */
     private class SimTask extends Task<Void> {
 
+        /** How often the progress bar is updated, in milliseconds. */
+        private static final long PROGRESS_INTERVAL = 100;
+
         @Override
         protected Void call() throws Exception {
+            // The roster rejects duplicate names and names a race file can't
+            // hold, and that fails the task so the user is told.
+            final RaceSpec spec = new RaceSpec();
+            for (ParticipantDisplay pd : participantDisplays) {
+                spec.addRacer(new RacerSpec(pd.getID(), pd.getName(),
+                        pd.getSpeed()));
+            }
+
             try {
-                int telemetryInterval = (int) telemetryIntervalSlider
-                        .getValue();
-                List<Participant> participants = new ArrayList<>();
-
-                double start = 0;
-                for (ParticipantDisplay pd : participantDisplays) {
-                    Participant p = new Participant(pd.getID(), pd.getName(),
-                            start, myTrack.getTrackLength(), pd.getSpeed());
-                    p.calculateNextVelocity();
-                    participants.add(p);
-                    start -= myTrack.getTrackLength() * 0.01;
-                }
+                spec.setName(raceNameField.getText());
+                spec.setTrackLength(myTrack.getTrackLength());
+                spec.setXRatio(myTrack.getWidthRatio());
+                spec.setYRatio(myTrack.getHeightRatio());
+                spec.setLaps(numLaps);
+                spec.setTelemetryInterval(
+                        (int) telemetryIntervalSlider.getValue());
 
                 // Get speeds from combo boxes
                 List<TrackSpeed> trackSpeeds = new ArrayList<>();
@@ -601,61 +601,47 @@ public class Controller extends BorderPane {
                     trackSpeeds.add(myTrackSectionComboBoxes.get(i)
                             .getSelectionModel().getSelectedItem());
                 }
-                myTrack.setSections(trackSpeeds);
+                spec.setSections(trackSpeeds);
+
+                for (ParticipantSpeed speed : ParticipantSpeed.values()) {
+                    spec.setBracket(speed, bracketVelocities.get(speed),
+                            bracketRanges.get(speed));
+                }
 
                 // Get multipliers from TextFields
                 // This is bad, program will do nothing on submit if these
                 // fields are wrong.
-                TrackSpeed.SLOW.setMultiplier(
+                spec.setMultiplier(TrackSpeed.SLOW,
                         Double.parseDouble(trackSpeedMultiplierFields.get(0)
                                 .textProperty().get()));
-                TrackSpeed.MEDIUM.setMultiplier(
+                spec.setMultiplier(TrackSpeed.MEDIUM,
                         Double.parseDouble(trackSpeedMultiplierFields.get(1)
                                 .textProperty().get()));
-                TrackSpeed.FAST.setMultiplier(
+                spec.setMultiplier(TrackSpeed.FAST,
                         Double.parseDouble(trackSpeedMultiplierFields.get(2)
                                 .textProperty().get()));
 
-                // The expected time is roughly the speed of the slowest
-                // participant.
-                int expectedTime = myTrack.getTrackLength()
-                        / (int) ParticipantSpeed.SLOW.getVelocity();
-                linesToWrite.clear();
-
-                int currentTime = 0;
-                linesToWrite.add("#RACE:" + raceNameField.getText());
-                linesToWrite.add("#TRACK:" + myTrack.getTrackName());
-
-                // TODO These are hard coded values, make things in the UI to
-                // change this.
-                linesToWrite.add("#WIDTH:" + myTrack.getWidthRatio());
-                linesToWrite.add("#HEIGHT:" + myTrack.getHeightRatio());
-
-                linesToWrite.add("#DISTANCE:" + myTrack.getTrackLength());
-                linesToWrite.add("#TIME:" + expectedTime);
-                linesToWrite.add("#PARTICIPANTS:" + numRacers);
-
-                Race race = new Race(myTrack, numLaps, telemetryInterval,
-                        participants);
-                while (race.stillGoing()) {
-//					System.out.println("going");
-                    race.stepRace().forEach(linesToWrite::add);
-                    currentTime++;
-                    updateProgress(currentTime, expectedTime);
-
-                }
-
-                adjustForLastRacer();
-
-//				System.out.println("Right before writing file");
-                try (PrintWriter pw = new PrintWriter(outputFile)) {
-                    for (int i = 0; i < linesToWrite.size(); i++) {
-                        pw.println(linesToWrite.get(i));
+                // The race is streamed straight to the output file. Progress
+                // is read from the race's metrics every so often rather than
+                // sent from every tick.
+                final RaceMetrics metrics = new RaceMetrics(spec.getName());
+                final ScheduledExecutorService progress = Executors
+                        .newSingleThreadScheduledExecutor();
+                progress.scheduleAtFixedRate(() -> {
+                    // Nothing to show until the header is out
+                    if (metrics.getExpectedTime() > 0) {
+                        updateProgress(Math.max(0, metrics.getRaceTime()),
+                                metrics.getExpectedTime());
                     }
-                    pw.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
+                }, 0, PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                metrics.register();
+                try {
+                    RaceGenerator.generate(spec, outputFile, null, metrics);
+                } finally {
+                    progress.shutdown();
+                    metrics.unregister();
                 }
+                updateProgress(1, 1);
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -1,9 +1,11 @@
 package view;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
+import generator.Roster;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -22,9 +24,9 @@ public class ParticipantDisplay extends GridPane {
 
     private static final Random myRandom = new Random();
 
-    private static final List<String> USED_NAMES = new ArrayList<>();
+    private static final Set<String> USED_NAMES = new HashSet<>();
 
-    private static final List<Integer> USED_IDS = new ArrayList<>();
+    private static final Set<Integer> USED_IDS = new HashSet<>();
 
     /** The lower bound for random Participant IDs (inclusive). */
     private static final int DEFAULT_ID_LOWER = 1;
@@ -33,15 +35,7 @@ public class ParticipantDisplay extends GridPane {
     private static final int DEFAULT_ID_UPPER = 99;
 
     /** The default names to choose from when generating racers. */
-    private static final String[] DEFAULT_NAMES = {"Rebecka", "Lexie",
-            "Betsey", "Elane", "Miss", "Daniele", "Angele", "Aja", "Floretta",
-            "Patrice", "Jamison", "Myles", "Sally", "Viola", "Delicia", "Dwain",
-            "Alfredia", "Mina", "Charlena", "Catheryn", "Bud", "Suellen",
-            "Herbert", "Adelaida", "Carmine", "Sylvie", "Fawn", "Nathanial",
-            "Gertrudis", "Marcellus", "Catrina", "Emelia", "Aliza", "Julieann",
-            "Ronni", "Michael", "Bridgett", "Shira", "Evia", "Lorine",
-            "Blanche", "Carita", "Perry", "Isela", "Yelena", "Florrie",
-            "Angelica", "Kiyoko", "Kelli", "Stacie" };
+    private static final List<String> DEFAULT_NAMES = Roster.DEFAULT_NAMES;
 
     private TextField myRacerIDField;
     private TextField myNameTextField;
@@ -56,11 +50,12 @@ public class ParticipantDisplay extends GridPane {
         // duplicate names or ID's)
 
         // Generate new unique name and ID
-        String name = DEFAULT_NAMES[myRandom.nextInt(DEFAULT_NAMES.length)];
+        String name = DEFAULT_NAMES.get(
+                myRandom.nextInt(DEFAULT_NAMES.size()));
         int id = myRandom.nextInt(DEFAULT_ID_UPPER - 1) + DEFAULT_ID_LOWER;
 
         while (USED_NAMES.contains(name)) {
-            name = DEFAULT_NAMES[myRandom.nextInt(DEFAULT_NAMES.length)];
+            name = DEFAULT_NAMES.get(myRandom.nextInt(DEFAULT_NAMES.size()));
         }
         while (USED_IDS.contains(id)) {
             id = myRandom.nextInt(DEFAULT_ID_UPPER - 1) + DEFAULT_ID_LOWER;
@@ -0,0 +1,599 @@
+package view.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import util.IntIntMap;
+
+/**
+ * A text race file opened for replay. A replay can be moved to any
+ * millisecond of the race without reading the file up to it, so races of any
+ * size open and seek straight away.
+ *
+ * Opening reads only the header and the end of the file. Event lines are in
+ * time order, so {@link #seek(int)} finds the first line of a millisecond with
+ * a binary search over byte offsets, reading a few KB at each step, and then
+ * replays from far enough before it that every racer has reported where it
+ * is and the leader board has been sent. {@link #advanceTo(int)} reads on
+ * from there, which is all playing back needs. Lines are parsed straight
+ * from the bytes read, without making Strings.
+ *
+ * Racers are numbered by their slot, the order they are listed in the
+ * header. A racer is where its last telemetry put it, or on the start grid
+ * until then.
+ */
+public final class RaceReplay implements Closeable {
+
+    /** The size of the window event lines are read through. */
+    private static final int WINDOW_SIZE = 1 << 16;
+
+    /** How much is read at each step of a binary search. */
+    private static final int PROBE_SIZE = 1 << 12;
+
+    /** How far before a seek to start replaying the first time. */
+    private static final int INITIAL_LOOKBACK = 256;
+
+    private final File myFile;
+    private final FileChannel myChannel;
+    private final long myLength;
+
+    private String myRaceName;
+    private String myTrackName;
+    private int myWidthRatio;
+    private int myHeightRatio;
+    private int myDistance;
+    private int myEndTime;
+    private long myHeaderEnd;
+    private int[] myIDs;
+    private String[] myNames;
+    private double[] myStartPositions;
+    private IntIntMap mySlots;
+
+    private double[] myPositions;
+    private int[] myLaps;
+    private int[] myLeaderBoard;
+    private boolean[] mySeen;
+    private int myUnseen;
+    private boolean myLeaderBoardSeen;
+    private int myTime;
+    private int myLookback;
+
+    private ByteBuffer myWindow;
+    private long myWindowStart;
+    private long myCursor;
+    private int myField;
+    private final ByteBuffer myProbe;
+
+    private RaceReplay(final File theFile, final FileChannel theChannel)
+            throws IOException {
+        myFile = theFile;
+        myChannel = theChannel;
+        myLength = theChannel.size();
+        myWindow = ByteBuffer.allocate(WINDOW_SIZE);
+        myWindow.flip();
+        myProbe = ByteBuffer.allocate(PROBE_SIZE);
+        myLookback = INITIAL_LOOKBACK;
+    }
+
+    /**
+     * Opens theFile at the start of the race.
+     *
+     * @param theFile A race file in the text format.
+     * @return The replay, which must be closed.
+     * @throws IOException If the file can't be read or isn't a text race.
+     */
+    public static RaceReplay open(final File theFile) throws IOException {
+        final FileChannel channel = FileChannel.open(theFile.toPath(),
+                StandardOpenOption.READ);
+        try {
+            final RaceReplay replay = new RaceReplay(theFile, channel);
+            replay.readHeader();
+            replay.findEnd();
+            replay.seek(0);
+            return replay;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String getRaceName() {
+        return myRaceName;
+    }
+
+    public String getTrackName() {
+        return myTrackName;
+    }
+
+    public int getWidthRatio() {
+        return myWidthRatio;
+    }
+
+    public int getHeightRatio() {
+        return myHeightRatio;
+    }
+
+    /**
+     * Returns the length of a lap.
+     *
+     * @return The distance around the track.
+     */
+    public int getDistance() {
+        return myDistance;
+    }
+
+    /**
+     * Returns the time of the last event in the file.
+     *
+     * @return The race time in milliseconds.
+     */
+    public int getEndTime() {
+        return myEndTime;
+    }
+
+    /**
+     * Returns the millisecond the racers are shown at.
+     *
+     * @return The race time in milliseconds.
+     */
+    public int getTime() {
+        return myTime;
+    }
+
+    public int getRacerCount() {
+        return myIDs.length;
+    }
+
+    public int getID(final int theSlot) {
+        return myIDs[theSlot];
+    }
+
+    public String getName(final int theSlot) {
+        return myNames[theSlot];
+    }
+
+    /**
+     * Returns how far round its lap a racer is, negative before it reaches
+     * the start line.
+     *
+     * @param theSlot The racer's slot.
+     * @return The racer's position.
+     */
+    public double getPosition(final int theSlot) {
+        return myPositions[theSlot];
+    }
+
+    public int getLap(final int theSlot) {
+        return myLaps[theSlot];
+    }
+
+    /**
+     * Copies every racer's position into thePositions, by slot.
+     *
+     * @param thePositions The array to fill, at least
+     *                     {@link #getRacerCount()} long.
+     */
+    public void copyPositions(final double[] thePositions) {
+        System.arraycopy(myPositions, 0, thePositions, 0, myPositions.length);
+    }
+
+    /**
+     * Returns the slot of the racer at theRank on the leader board.
+     *
+     * @param theRank The rank, 0 for the leader.
+     * @return The racer's slot.
+     */
+    public int getSlotAt(final int theRank) {
+        return myLeaderBoard[theRank];
+    }
+
+    /**
+     * Moves the replay to theTime, going back or jumping forward as far as
+     * needed. Only the end of the race before theTime is read.
+     *
+     * @param theTime The race time, kept between 0 and the end time.
+     * @throws IOException If the file can't be read.
+     */
+    public void seek(final int theTime) throws IOException {
+        final int time = Math.max(0, Math.min(theTime, myEndTime));
+        int lookback = myLookback;
+        while (true) {
+            final int from = time - lookback;
+            reset();
+            myCursor = from <= 0 ? myHeaderEnd : offsetOf(from);
+            read(time);
+            if (from <= 0 || myUnseen == 0 && myLeaderBoardSeen) {
+                break;
+            }
+            // Something hasn't been sent since then, look further back
+            lookback *= 2;
+        }
+        // The next seek probably needs about as long
+        myLookback = lookback;
+        myTime = time;
+    }
+
+    /**
+     * Moves the replay on to theTime by reading the events up to it, or
+     * seeks if theTime is in the past or far enough ahead that seeking is
+     * quicker.
+     *
+     * @param theTime The race time, kept between 0 and the end time.
+     * @throws IOException If the file can't be read.
+     */
+    public void advanceTo(final int theTime) throws IOException {
+        final int time = Math.max(0, Math.min(theTime, myEndTime));
+        if (time < myTime || time - myTime > 2 * myLookback) {
+            seek(time);
+            return;
+        }
+        read(time);
+        myTime = time;
+    }
+
+    @Override
+    public void close() throws IOException {
+        myChannel.close();
+    }
+
+    /**
+     * Puts every racer back on the start grid, as if nothing had been read.
+     */
+    private void reset() {
+        System.arraycopy(myStartPositions, 0, myPositions, 0,
+                myPositions.length);
+        Arrays.fill(myLaps, 0);
+        Arrays.fill(mySeen, false);
+        myUnseen = myIDs.length;
+        for (int slot = 0; slot < myLeaderBoard.length; slot++) {
+            myLeaderBoard[slot] = slot;
+        }
+        myLeaderBoardSeen = false;
+    }
+
+    /**
+     * Applies every event from the cursor up to and including theTime.
+     */
+    private void read(final int theTime) throws IOException {
+        while (true) {
+            final int end = lineEnd();
+            if (end < 0) {
+                return;
+            }
+            final byte[] bytes = myWindow.array();
+            final int start = (int) (myCursor - myWindowStart);
+            myField = start + 3;
+            if (end - start < 3 || bytes[start] != '$'
+                    || parseInt(bytes) > theTime) {
+                return;
+            }
+            switch (bytes[start + 1]) {
+                case 'T':
+                    telemetry(bytes);
+                    break;
+                case 'L':
+                    leaderBoard(bytes, end);
+                    break;
+                default:
+                    // Crossings don't move anyone
+                    break;
+            }
+            myCursor = myWindowStart + end + 1;
+        }
+    }
+
+    private void telemetry(final byte[] theBytes) {
+        final int slot = mySlots.get(parseInt(theBytes));
+        if (slot == IntIntMap.MISSING) {
+            return;
+        }
+        myPositions[slot] = parseDouble(theBytes);
+        myLaps[slot] = parseInt(theBytes);
+        if (!mySeen[slot]) {
+            mySeen[slot] = true;
+            myUnseen--;
+        }
+    }
+
+    private void leaderBoard(final byte[] theBytes, final int theEnd) {
+        int rank = 0;
+        while (myField < theEnd && rank < myLeaderBoard.length) {
+            final int slot = mySlots.get(parseInt(theBytes));
+            if (slot != IntIntMap.MISSING) {
+                myLeaderBoard[rank++] = slot;
+            }
+        }
+        myLeaderBoardSeen = true;
+    }
+
+    /**
+     * Reads an int field and steps over the colon after it.
+     */
+    private int parseInt(final byte[] theBytes) {
+        int i = myField;
+        final boolean negative = theBytes[i] == '-';
+        if (negative) {
+            i++;
+        }
+        int value = 0;
+        while (theBytes[i] >= '0' && theBytes[i] <= '9') {
+            value = value * 10 + theBytes[i++] - '0';
+        }
+        myField = i + 1;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Reads a decimal field and steps over the colon after it.
+     */
+    private double parseDouble(final byte[] theBytes) {
+        int i = myField;
+        final boolean negative = theBytes[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long digits = 0;
+        long scale = 1;
+        boolean fraction = false;
+        for (;; i++) {
+            final byte b = theBytes[i];
+            if (b >= '0' && b <= '9') {
+                digits = digits * 10 + b - '0';
+                if (fraction) {
+                    scale *= 10;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        myField = i + 1;
+        final double value = (double) digits / scale;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Makes sure the whole line at the cursor is in the window, and returns
+     * where it ends in the window, or -1 at the end of the file.
+     */
+    private int lineEnd() throws IOException {
+        if (myCursor >= myLength) {
+            return -1;
+        }
+        if (myCursor < myWindowStart
+                || myCursor >= myWindowStart + myWindow.limit()) {
+            fill(myCursor);
+        }
+        int scanned = (int) (myCursor - myWindowStart);
+        while (true) {
+            final byte[] bytes = myWindow.array();
+            for (int i = scanned; i < myWindow.limit(); i++) {
+                if (bytes[i] == '\n') {
+                    return i;
+                }
+            }
+            if (myWindowStart + myWindow.limit() >= myLength) {
+                // The last line has no newline
+                return myWindow.limit();
+            }
+            // The line runs past the window, so start the window at the line,
+            // making it bigger if the line won't fit in it.
+            final int start = (int) (myCursor - myWindowStart);
+            scanned = myWindow.limit() - start;
+            if (start == 0) {
+                myWindow = ByteBuffer.allocate(myWindow.capacity() * 2);
+            }
+            fill(myCursor);
+        }
+    }
+
+    /**
+     * Reads the window full from thePosition, or up to the end of the file.
+     * The window has a spare byte on the end, so a last line without a
+     * newline can still be parsed up to its end.
+     */
+    private void fill(final long thePosition) throws IOException {
+        myWindow.clear();
+        myWindow.limit(myWindow.capacity() - 1);
+        while (myWindow.hasRemaining() && myChannel.read(myWindow,
+                thePosition + myWindow.position()) > 0) {
+            continue;
+        }
+        myWindow.flip();
+        myWindow.array()[myWindow.limit()] = '\n';
+        myWindowStart = thePosition;
+    }
+
+    /**
+     * Returns the offset of the first event line at or after theTime, or the
+     * end of the file if there is none.
+     */
+    private long offsetOf(final int theTime) throws IOException {
+        // low is the header end or a line before theTime, high is the end of
+        // the file or a line at or after it.
+        long low = myHeaderEnd;
+        long high = myLength;
+        while (low < high) {
+            final long middle = lineStartAfter((low + high) >>> 1);
+            if (middle >= high) {
+                break;
+            }
+            if (timeAt(middle) < theTime) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        // Few lines start between low and high, so walk them.
+        long line = low;
+        while (line < high && timeAt(line) < theTime) {
+            line = lineStartAfter(line);
+        }
+        return Math.min(line, high);
+    }
+
+    /**
+     * Returns the start of the first line after thePosition, or the end of
+     * the file.
+     */
+    private long lineStartAfter(final long thePosition) throws IOException {
+        long position = thePosition;
+        while (position < myLength) {
+            myProbe.clear();
+            final int read = myChannel.read(myProbe, position);
+            if (read <= 0) {
+                break;
+            }
+            final byte[] bytes = myProbe.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return myLength;
+    }
+
+    /**
+     * Returns the time of the event line starting at theOffset.
+     */
+    private int timeAt(final long theOffset) throws IOException {
+        myProbe.clear();
+        myProbe.limit(32);
+        final int read = myChannel.read(myProbe, theOffset);
+        final byte[] bytes = myProbe.array();
+        if (read < 4 || bytes[0] != '$') {
+            throw new IOException(myFile + " has a line that isn't an event "
+                    + "at byte " + theOffset);
+        }
+        int time = 0;
+        for (int i = 3; i < read && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+            time = time * 10 + bytes[i] - '0';
+        }
+        return time;
+    }
+
+    /**
+     * Reads the header lines, up to the first event.
+     */
+    private void readHeader() throws IOException {
+        final List<String> racers = new ArrayList<>();
+        int participants = -1;
+        myCursor = 0;
+        while (true) {
+            final int end = lineEnd();
+            final int start = (int) (myCursor - myWindowStart);
+            if (end < 0 || myWindow.array()[start] == '$') {
+                break;
+            }
+            final String line = new String(myWindow.array(), start,
+                    end - start, StandardCharsets.UTF_8).trim();
+            myCursor = myWindowStart + end + 1;
+            if (!line.startsWith("#")) {
+                throw new IOException(myFile + " isn't a text race file");
+            }
+            final int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            final String key = line.substring(1, colon);
+            final String value = line.substring(colon + 1);
+            try {
+                switch (key) {
+                    case "RACE":
+                        myRaceName = value;
+                        break;
+                    case "TRACK":
+                        myTrackName = value;
+                        break;
+                    case "WIDTH":
+                        myWidthRatio = Integer.parseInt(value);
+                        break;
+                    case "HEIGHT":
+                        myHeightRatio = Integer.parseInt(value);
+                        break;
+                    case "DISTANCE":
+                        myDistance = Integer.parseInt(value);
+                        break;
+                    case "TIME":
+                        myEndTime = Integer.parseInt(value);
+                        break;
+                    case "PARTICIPANTS":
+                        participants = Integer.parseInt(value);
+                        break;
+                    default:
+                        // #<id>:<name>:<start position>
+                        racers.add(line);
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException(myFile + " has a bad header line: "
+                        + line, e);
+            }
+        }
+        myHeaderEnd = myCursor;
+        if (participants < 0 || myDistance <= 0) {
+            throw new IOException(myFile + " isn't a text race file");
+        }
+
+        final int size = racers.size();
+        myIDs = new int[size];
+        myNames = new String[size];
+        myStartPositions = new double[size];
+        mySlots = new IntIntMap(size);
+        for (int slot = 0; slot < size; slot++) {
+            final String racer = racers.get(slot);
+            final int first = racer.indexOf(':');
+            final int last = racer.lastIndexOf(':');
+            try {
+                myIDs[slot] = Integer.parseInt(racer.substring(1, first));
+                myNames[slot] = racer.substring(first + 1, last);
+                myStartPositions[slot] = Double.parseDouble(
+                        racer.substring(last + 1));
+            } catch (NumberFormatException
+                    | StringIndexOutOfBoundsException e) {
+                throw new IOException(myFile + " has a bad racer line: "
+                        + racer, e);
+            }
+            mySlots.put(myIDs[slot], slot);
+        }
+        myPositions = new double[size];
+        myLaps = new int[size];
+        myLeaderBoard = new int[size];
+        mySeen = new boolean[size];
+    }
+
+    /**
+     * Takes the end time from the last line of the file, in case the header
+     * only has the expected time.
+     */
+    private void findEnd() throws IOException {
+        // Step back from the end, further each time, until a whole line is in
+        // view
+        long from = myLength;
+        long last = myLength;
+        long step = PROBE_SIZE;
+        while (from > myHeaderEnd && last >= myLength) {
+            from = Math.max(myHeaderEnd, from - step);
+            step *= 2;
+            long line = from == myHeaderEnd ? from : lineStartAfter(from);
+            while (line < myLength) {
+                last = line;
+                line = lineStartAfter(line);
+            }
+        }
+        if (last < myLength) {
+            myEndTime = timeAt(last);
+        }
+    }
+}
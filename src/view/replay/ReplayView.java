@@ -0,0 +1,271 @@
+package view.replay;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+
+import javafx.animation.AnimationTimer;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import view.track.VisibleRaceTrack;
+
+/**
+ * Plays back a {@link RaceReplay} on a Canvas, with play, pause, a choice of
+ * speeds and a timeline that can be dragged to any millisecond of the race.
+ *
+ * Frames are drawn by an {@link AnimationTimer}, so at the screen's refresh
+ * rate, and each frame reads only the events since the last one. Every racer
+ * is added to one path that is filled in a single call, and only the leader
+ * and the first few names on the leader board are drawn on their own.
+ */
+public class ReplayView extends BorderPane {
+
+    /** The speeds that can be chosen, in race time per wall clock time. */
+    private static final Double[] SPEEDS = {0.5, 1.0, 2.0, 5.0, 10.0, 25.0,
+        100.0};
+
+    /** The space around the track, in pixels. */
+    private static final int MARGIN = 40;
+
+    /** The width kept for the leader board, in pixels. */
+    private static final int LEADER_BOARD_WIDTH = 180;
+
+    /** The number of racers listed on the leader board. */
+    private static final int LEADER_BOARD_ROWS = 10;
+
+    /** The most racers that get their ID drawn next to them. */
+    private static final int MAX_LABELLED_RACERS = 50;
+
+    /** The radius of a racer's dot, in pixels. */
+    private static final double RACER_RADIUS = 4;
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final RaceReplay myReplay;
+    private final Canvas myCanvas;
+    private final Slider myTimeline;
+    private final Text myTimeText;
+    private final Button myPlayButton;
+    private final ComboBox<Double> mySpeedBox;
+    private final AnimationTimer myTimer;
+    private final double[] myDistances;
+    private final double[] myX;
+    private final double[] myY;
+    private VisibleRaceTrack myTrack;
+    private boolean myPlaying;
+    private boolean myMovingTimeline;
+    private double myRaceTime;
+    private long myLastFrame;
+
+    /**
+     * Constructs a ReplayView of theReplay, paused at the start of the race.
+     *
+     * @param theReplay The race to play back, closed by {@link #close()}.
+     */
+    public ReplayView(final RaceReplay theReplay) {
+        myReplay = theReplay;
+        myDistances = new double[theReplay.getRacerCount()];
+        myX = new double[theReplay.getRacerCount()];
+        myY = new double[theReplay.getRacerCount()];
+
+        myCanvas = new Canvas();
+        final Pane canvasPane = new Pane(myCanvas);
+        canvasPane.setPrefSize(960, 540);
+        myCanvas.widthProperty().bind(canvasPane.widthProperty());
+        myCanvas.heightProperty().bind(canvasPane.heightProperty());
+        myCanvas.widthProperty().addListener((o, oldValue, newValue) -> {
+            buildTrack();
+            draw();
+        });
+        myCanvas.heightProperty().addListener((o, oldValue, newValue) -> {
+            buildTrack();
+            draw();
+        });
+        setCenter(canvasPane);
+
+        myPlayButton = new Button("Play");
+        myPlayButton.setOnAction(e -> setPlaying(!myPlaying));
+
+        mySpeedBox = new ComboBox<>(FXCollections.observableArrayList(SPEEDS));
+        mySpeedBox.setValue(1.0);
+
+        myTimeline = new Slider(0, theReplay.getEndTime(), 0);
+        HBox.setHgrow(myTimeline, Priority.ALWAYS);
+        myTimeline.valueProperty().addListener((o, oldValue, newValue) -> {
+            if (!myMovingTimeline) {
+                moveTo(newValue.doubleValue());
+            }
+        });
+
+        myTimeText = new Text();
+        myTimeText.setFont(Font.font("Monospaced", 12));
+
+        final HBox controls = new HBox(10, myPlayButton, mySpeedBox,
+                myTimeline, myTimeText);
+        controls.setAlignment(Pos.CENTER_LEFT);
+        controls.setPadding(new Insets(8));
+        setBottom(controls);
+
+        myTimer = new AnimationTimer() {
+            @Override
+            public void handle(final long theNow) {
+                frame(theNow);
+            }
+        };
+        myTimer.start();
+    }
+
+    /**
+     * Stops playing and closes the replay.
+     *
+     * @throws IOException If the replay can't be closed.
+     */
+    public void close() throws IOException {
+        myTimer.stop();
+        myReplay.close();
+    }
+
+    private void setPlaying(final boolean thePlaying) {
+        if (thePlaying && myRaceTime >= myReplay.getEndTime()) {
+            // Play from the start again
+            moveTo(0);
+        }
+        myPlaying = thePlaying;
+        myLastFrame = 0;
+        myPlayButton.setText(thePlaying ? "Pause" : "Play");
+    }
+
+    /**
+     * Moves on by the time since the last frame, when playing, and draws.
+     */
+    private void frame(final long theNow) {
+        if (!myPlaying || myTimeline.isValueChanging()) {
+            // Carry on from wherever the timeline is let go
+            myLastFrame = 0;
+            return;
+        }
+        if (myLastFrame != 0) {
+            myRaceTime += (theNow - myLastFrame) / NANOS_PER_MILLI
+                    * mySpeedBox.getValue();
+        }
+        myLastFrame = theNow;
+        if (myRaceTime >= myReplay.getEndTime()) {
+            myRaceTime = myReplay.getEndTime();
+            setPlaying(false);
+        }
+        advance();
+        myMovingTimeline = true;
+        myTimeline.setValue(myRaceTime);
+        myMovingTimeline = false;
+        draw();
+    }
+
+    /**
+     * Jumps to theTime, for the timeline and replaying.
+     */
+    private void moveTo(final double theTime) {
+        myRaceTime = theTime;
+        advance();
+        draw();
+    }
+
+    private void advance() {
+        try {
+            myReplay.advanceTo((int) myRaceTime);
+        } catch (IOException e) {
+            myTimer.stop();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Fits the track to the canvas, keeping the race's width to height ratio
+     * and leaving room for the leader board.
+     */
+    private void buildTrack() {
+        final double width = myCanvas.getWidth() - 2 * MARGIN
+                - LEADER_BOARD_WIDTH;
+        final double height = myCanvas.getHeight() - 2 * MARGIN;
+        final double ratio = Math.max(1, (double) myReplay.getWidthRatio()
+                / Math.max(1, myReplay.getHeightRatio()));
+        final int trackWidth = (int) Math.min(width, height * ratio);
+        final int trackHeight = (int) (trackWidth / ratio);
+        if (trackWidth <= 0 || trackHeight <= 0) {
+            myTrack = null;
+            return;
+        }
+        myTrack = new VisibleRaceTrack(MARGIN, MARGIN, trackWidth, trackHeight,
+                myReplay.getDistance());
+    }
+
+    private void draw() {
+        final GraphicsContext gc = myCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, myCanvas.getWidth(), myCanvas.getHeight());
+        myTimeText.setText(String.format(Locale.ROOT, "%9.3f / %.3f s",
+                myReplay.getTime() / 1e3, myReplay.getEndTime() / 1e3));
+        if (myTrack == null) {
+            return;
+        }
+
+        gc.setStroke(Color.GRAY);
+        gc.setLineWidth(2);
+        gc.strokeRoundRect(myTrack.getX(), myTrack.getY(), myTrack.getWidth(),
+                myTrack.getHeight(), myTrack.getArcWidth(),
+                myTrack.getArcHeight());
+
+        final int racers = myReplay.getRacerCount();
+        myReplay.copyPositions(myDistances);
+        myTrack.getPointsAtDistances(myDistances, racers, myX, myY);
+
+        // Every racer in one path, filled at once
+        gc.setFill(Color.STEELBLUE);
+        gc.beginPath();
+        for (int slot = 0; slot < racers; slot++) {
+            gc.moveTo(myX[slot] + RACER_RADIUS, myY[slot]);
+            gc.arc(myX[slot], myY[slot], RACER_RADIUS, RACER_RADIUS, 0, 360);
+        }
+        gc.fill();
+
+        if (racers == 0) {
+            return;
+        }
+        final int leader = myReplay.getSlotAt(0);
+        gc.setFill(Color.ORANGERED);
+        gc.fillOval(myX[leader] - RACER_RADIUS * 1.5,
+                myY[leader] - RACER_RADIUS * 1.5, RACER_RADIUS * 3,
+                RACER_RADIUS * 3);
+
+        gc.setFill(Color.BLACK);
+        gc.setFont(Font.font(11));
+        if (racers <= MAX_LABELLED_RACERS) {
+            for (int slot = 0; slot < racers; slot++) {
+                gc.fillText(Integer.toString(myReplay.getID(slot)),
+                        myX[slot] + RACER_RADIUS + 2, myY[slot] - 2);
+            }
+        }
+
+        final double left = myCanvas.getWidth() - LEADER_BOARD_WIDTH;
+        gc.setFont(Font.font(13));
+        gc.fillText(myReplay.getRaceName(), left, MARGIN);
+        for (int rank = 0; rank < Math.min(racers, LEADER_BOARD_ROWS);
+                rank++) {
+            final int slot = myReplay.getSlotAt(rank);
+            gc.fillText((rank + 1) + ". " + myReplay.getName(slot) + " (lap "
+                    + myReplay.getLap(slot) + ")", left,
+                    MARGIN + 20 * (rank + 1));
+        }
+    }
+}
@@ -8,6 +8,14 @@ import java.awt.geom.Point2D;
 import java.awt.geom.RoundRectangle2D;
 
 /**
+ * A race track shape that can be drawn, and that maps distances along the
+ * track to points on it.
+ *
+ * Distances are spread along the track by arc length, so a racer moving at a
+ * steady speed moves steadily on screen through the turns too. The track is
+ * traced once when it is made into a table of points an equal arc length
+ * apart, about a pixel apart, and every lookup after that is an
+ * interpolation between two neighbouring points of the table.
  *
  * @author Michael Osborne
  */
@@ -16,11 +24,11 @@ public class VisibleRaceTrack extends RoundRectangle2D.Double {
     /** The serialization ID. */
     private static final long serialVersionUID = 7813589334818900395L;
 
-    /** The amount of points on the straight track sections. */
-    private double myPointsOnStraight;
+    /** The number of steps each turn is traced in. */
+    private static final int STEPS_PER_TURN = 256;
 
-    /** The amount of points on the turns. */
-    private double myPointsOnTurns;
+    /** The fewest points in the arc length table. */
+    private static final int MIN_TABLE_SIZE = 256;
 
     /** The curve representing the first turn. */
     private CubicCurve2D.Double myFirstTurn;
@@ -43,6 +51,15 @@ public class VisibleRaceTrack extends RoundRectangle2D.Double {
     /** The length of the track (number of subdivisions). */
     private final int myLength;
 
+    /**
+     * The x coordinates of points an equal arc length apart, from distance 0
+     * all the way round and back to it.
+     */
+    private double[] myTableX;
+
+    /** The y coordinates of the points in myTableX. */
+    private double[] myTableY;
+
     /**
      * Creates a new RaceTrackRoundRect at the given (x, y) coordinate with the
      * given width and height and the given length. The length is how many
@@ -70,7 +87,7 @@ public class VisibleRaceTrack extends RoundRectangle2D.Double {
         }
 
         calculateCurvesAndStraights();
-        calculateDivisions();
+        calculateArcLengthTable();
     }
 
     /**
@@ -83,16 +100,55 @@ public class VisibleRaceTrack extends RoundRectangle2D.Double {
     }
 
     /**
-     * Calculates how many 'points' should fall on each section of track based
-     * on the size of the track and myLength.
+     * Traces the track finely, in the order distances run along it, and then
+     * resamples the trace into myTableX and myTableY at equal arc lengths.
      */
-    private void calculateDivisions() {
-        final double allPoints = (getHeight() * Math.PI)
-                + (getWidth() - getHeight()) * 2;
-        myPointsOnTurns = (((getHeight() * Math.PI) / 4) / allPoints)
-                * myLength;
-        myPointsOnStraight = ((getWidth() - getHeight()) / allPoints)
-                * myLength;
+    private void calculateArcLengthTable() {
+        final Shape[] sections = {myFirstTurn, mySecondTurn, myBottomStraight,
+            myThirdTurn, myFourthTurn, myTopStraight};
+        final int tracePoints = 4 * STEPS_PER_TURN + 2 + 1;
+        final double[] traceX = new double[tracePoints];
+        final double[] traceY = new double[tracePoints];
+        final double[] traceLength = new double[tracePoints];
+        final double[] point = new double[2];
+
+        // Every section starts where the last one ended
+        pointOn(myFirstTurn, 0, point);
+        traceX[0] = point[0];
+        traceY[0] = point[1];
+        int count = 1;
+        for (Shape section : sections) {
+            final int steps = section instanceof Line2D ? 1 : STEPS_PER_TURN;
+            for (int step = 1; step <= steps; step++) {
+                pointOn(section, (double) step / steps, point);
+                final double dx = point[0] - traceX[count - 1];
+                final double dy = point[1] - traceY[count - 1];
+                traceX[count] = point[0];
+                traceY[count] = point[1];
+                traceLength[count] = traceLength[count - 1]
+                        + Math.sqrt(dx * dx + dy * dy);
+                count++;
+            }
+        }
+
+        final double perimeter = traceLength[count - 1];
+        final int size = Math.max(MIN_TABLE_SIZE, (int) Math.ceil(perimeter));
+        myTableX = new double[size + 1];
+        myTableY = new double[size + 1];
+        int next = 1;
+        for (int i = 0; i <= size; i++) {
+            final double arcLength = perimeter * i / size;
+            while (next < count - 1 && traceLength[next] < arcLength) {
+                next++;
+            }
+            final double span = traceLength[next] - traceLength[next - 1];
+            final double fraction = span > 0
+                    ? (arcLength - traceLength[next - 1]) / span : 0;
+            myTableX[i] = traceX[next - 1]
+                    + fraction * (traceX[next] - traceX[next - 1]);
+            myTableY[i] = traceY[next - 1]
+                    + fraction * (traceY[next] - traceY[next - 1]);
+        }
     }
 
     /**
@@ -108,9 +164,6 @@ public class VisibleRaceTrack extends RoundRectangle2D.Double {
         pathIterator.currentSegment(startingCoords);
         Point2D.Double lastStartingPoint = new Point2D.Double(startingCoords[0],
                 startingCoords[1]);
-        for (int i = 0; i < startingCoords.length; i++) {
-            System.out.print(startingCoords[i] + " ");
-        }
 
         // Calculate and store the curves
         // Extra nexts are to skip over lines we don't need in the rounded
@@ -190,98 +243,83 @@ public class VisibleRaceTrack extends RoundRectangle2D.Double {
      * @return The Point2D.Double at the given distance around the race track.
      */
     public Point2D.Double getPointAtDistance(final double theDistance) {
-        double correctedDistance = theDistance;
-        while (correctedDistance < 0) {
-            correctedDistance += myLength;
-        }
-        while (correctedDistance > myLength) {
-            correctedDistance -= myLength;
-        }
-        System.out.println(correctedDistance);
-
-        final double firstTurnDistance = myPointsOnTurns;
-        final double secondTurnDistance = myPointsOnTurns * 2;
-        final double firstStraightDistance = secondTurnDistance
-                + myPointsOnStraight;
-        final double thirdTurnDistance = myPointsOnTurns * 3
-                + myPointsOnStraight;
-        final double fourthTurnDistance = myPointsOnTurns * 4
-                + myPointsOnStraight;
-        final double secondStraightDistance = fourthTurnDistance
-                + myPointsOnStraight;
-
-        Shape specificShape = new Line2D.Double(0, 0, 0, 0);
-        double t = 0.0;
-
-        if (correctedDistance < firstTurnDistance) {
-            // Lands on first turn
-            t = correctedDistance / firstTurnDistance;
-            specificShape = myFirstTurn;
-        } else if (correctedDistance < secondTurnDistance) {
-            // Lands on second turn
-            t = (correctedDistance - firstTurnDistance) / myPointsOnTurns;
-            specificShape = mySecondTurn;
-        } else if (correctedDistance < firstStraightDistance) {
-            // Lands on bottom straight
-            t = (correctedDistance - secondTurnDistance) / myPointsOnStraight;
-            specificShape = myBottomStraight;
-        } else if (correctedDistance < thirdTurnDistance) {
-            // Lands on third turn
-            t = (correctedDistance - firstStraightDistance) / myPointsOnTurns;
-            specificShape = myThirdTurn;
-        } else if (correctedDistance < fourthTurnDistance) {
-            // Lands on fourth turn
-            t = (correctedDistance - thirdTurnDistance) / myPointsOnTurns;
-            specificShape = myFourthTurn;
-        } else if (correctedDistance < secondStraightDistance) {
-            // Lands on top straight
-            t = (correctedDistance - fourthTurnDistance) / myPointsOnStraight;
-            specificShape = myTopStraight;
+        final double index = tableIndex(theDistance);
+        final int low = (int) index;
+        final double fraction = index - low;
+        return new Point2D.Double(
+                myTableX[low] + fraction * (myTableX[low + 1] - myTableX[low]),
+                myTableY[low] + fraction * (myTableY[low + 1] - myTableY[low]));
+    }
+
+    /**
+     * Finds the points at many distances on the race track at once, without
+     * allocating anything, for placing a whole field of racers every frame.
+     * The same as calling {@link #getPointAtDistance(double)} for each
+     * distance.
+     *
+     * @param theDistances The distances around the race track to find.
+     * @param theCount     How many of theDistances to find.
+     * @param theXs        Filled with the x coordinate of each point.
+     * @param theYs        Filled with the y coordinate of each point.
+     */
+    public void getPointsAtDistances(final double[] theDistances,
+            final int theCount, final double[] theXs, final double[] theYs) {
+        for (int i = 0; i < theCount; i++) {
+            final double index = tableIndex(theDistances[i]);
+            final int low = (int) index;
+            final double fraction = index - low;
+            theXs[i] = myTableX[low]
+                    + fraction * (myTableX[low + 1] - myTableX[low]);
+            theYs[i] = myTableY[low]
+                    + fraction * (myTableY[low + 1] - myTableY[low]);
         }
+    }
 
-        return parametricSolver(specificShape, t);
+    /**
+     * Returns where theDistance falls in the arc length table, wrapping it
+     * onto the track. The whole part is always below the last index.
+     */
+    private double tableIndex(final double theDistance) {
+        double correctedDistance = theDistance % myLength;
+        if (correctedDistance < 0) {
+            correctedDistance += myLength;
+        }
+        final int last = myTableX.length - 1;
+        return Math.min(correctedDistance * last / myLength,
+                Math.nextDown((double) last));
     }
 
     /**
-     * Solves the given Shape (as long as its a Line2D or a CubicCurve2D) for
-     * the point at the given parameter.
+     * Puts the point at the given parameter of theShape, which must be a
+     * Line2D or a CubicCurve2D, into thePoint as x then y.
      *
-     * @param theShape  The Shape to solve, must be a Line2D or a CubicCurve2D.
+     * @param theShape  The Shape to solve.
      * @param theTValue The parameter (between 0 and 1 inclusive)
-     * @return The Point2D.Double on theShape at theTValue.
+     * @param thePoint  Where to put the point.
      */
-    private Point2D.Double parametricSolver(final Shape theShape,
-            final double theTValue) {
-        final Point2D.Double returnPoint = new Point2D.Double(0, 0);
-
+    private static void pointOn(final Shape theShape, final double theTValue,
+            final double[] thePoint) {
         if (theShape instanceof Line2D) {
             final Line2D.Double line = (Line2D.Double) theShape;
 
             // The parametric expression for a line.
-            returnPoint.x = line.getX1()
+            thePoint[0] = line.getX1()
                     + theTValue * (line.getX2() - line.getX1());
-            returnPoint.y = line.getY1()
+            thePoint[1] = line.getY1()
                     + theTValue * (line.getY2() - line.getY1());
         } else {
             final CubicCurve2D.Double curve = (CubicCurve2D.Double) theShape;
 
-            final int cubed = 3;
-            final int squared = 2;
-
-            // The parametric expression for a cubic Bezier curve.
-            returnPoint.x = Math.pow(1 - theTValue, cubed) * curve.x1
-                    + cubed * theTValue * Math.pow(1 - theTValue, squared)
-                            * curve.ctrlx1
-                    + cubed * Math.pow(theTValue, squared) * (1 - theTValue)
-                            * curve.ctrlx2
-                    + Math.pow(theTValue, cubed) * curve.x2;
-            returnPoint.y = Math.pow(1 - theTValue, cubed) * curve.y1
-                    + cubed * theTValue * Math.pow(1 - theTValue, squared)
-                            * curve.ctrly1
-                    + cubed * Math.pow(theTValue, squared) * (1 - theTValue)
-                            * curve.ctrly2
-                    + Math.pow(theTValue, cubed) * curve.y2;
+            // The Bernstein form of a cubic Bezier curve.
+            final double u = 1 - theTValue;
+            final double b0 = u * u * u;
+            final double b1 = 3 * theTValue * u * u;
+            final double b2 = 3 * theTValue * theTValue * u;
+            final double b3 = theTValue * theTValue * theTValue;
+            thePoint[0] = b0 * curve.x1 + b1 * curve.ctrlx1
+                    + b2 * curve.ctrlx2 + b3 * curve.x2;
+            thePoint[1] = b0 * curve.y1 + b1 * curve.ctrly1
+                    + b2 * curve.ctrly2 + b3 * curve.y2;
         }
-        return returnPoint;
     }
 }